@@ -0,0 +1,27 @@
+package com.parker.david;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the whole nested run from Main, a high level swarm tuning low level swarms on the eggholder function
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NestedBenchmark {
+	@Param({"1", "4"})
+	private int threads;
+
+	@Benchmark
+	public double tune() {
+		SwarmTuner tuner = new SwarmTuner(new StandardObjectives.Eggholder(), 50, new double[]{-512.0, -512.0}, new double[]{+512.0, +512.0}, 0.3, threads);
+		Swarm highLevelSwarm = tuner.tune(10, new double[]{-50.0, -10.0, -10.0, 1.0}, new double[]{+50.0, +10.0, +10.0, 100.0}, 1, 25);
+		tuner.shutdown();
+		return highLevelSwarm.getBestFitness();
+	}
+}
@@ -0,0 +1,50 @@
+package com.parker.david;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures a single particle update, with and without scoring the new position
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticleBenchmark {
+	@Param({"2", "30", "1000"})
+	private int dimensions;
+
+	@Param({"Sphere", "Rastrigin"})
+	private String function;
+
+	private Particle particle;
+
+	private double[] neighbourhoodBest;
+
+	@Setup
+	public void setup() {
+		StandardObjectives.TestFunction objective = StandardObjectives.byName(function);
+		SwarmState state = new SwarmState(1, objective.minConstraints(dimensions), objective.maxConstraints(dimensions));
+		RandomSource random = new RandomSource(42);
+		for (int i = 0; i < dimensions; i++) {
+			state.positions[i] = random.nextDouble(-objective.bound, objective.bound);
+			state.velocities[i] = random.nextDouble(-objective.bound, objective.bound) * 0.3;
+		}
+		particle = new Particle(1.5, 1.5, 0.7, state, 0, objective, random.split());
+		particle.reset(objective.getFitness(state.positions));
+		neighbourhoodBest = new double[dimensions];
+	}
+
+	@Benchmark
+	public boolean update() {
+		return particle.update(neighbourhoodBest, 0);
+	}
+
+	@Benchmark
+	public void move() {
+		particle.move(neighbourhoodBest, 0);
+	}
+}
@@ -0,0 +1,83 @@
+package com.parker.david;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures a single update cycle of a swarm, and a whole optimisation run, across swarm sizes and dimensions
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SwarmBenchmark {
+	@Param({"10", "50", "1000"})
+	private int particleCount;
+
+	@Param({"2", "30", "1000"})
+	private int dimensions;
+
+	@Param({"Sphere", "Rastrigin", "Rosenbrock"})
+	private String function;
+
+	private StandardObjectives.TestFunction objective;
+
+	@Setup
+	public void setup() {
+		objective = StandardObjectives.byName(function);
+	}
+
+	private Swarm newSwarm() {
+		return new Swarm(objective, particleCount, 1.5, 1.5, 0.7, objective.minConstraints(dimensions), objective.maxConstraints(dimensions), 0.3, Initialiser.uniform(), 42);
+	}
+
+	/**
+	 * the number of update cycles timed in each iteration of the update benchmark
+	 */
+	private static final int BATCH = 32;
+
+	/**
+	 * a fresh swarm for every update, a swarm updated over and over for a whole trial collapses onto one point and the
+	 * cycle stops doing the work it does during a real run. a batch of swarms is built before each iteration, untimed,
+	 * so the timer runs around a whole batch of updates rather than a single sub microsecond one
+	 */
+	@State(Scope.Thread)
+	public static class FreshSwarms {
+		private final Swarm[] swarms = new Swarm[BATCH];
+
+		@Setup(Level.Iteration)
+		public void setup(SwarmBenchmark benchmark) {
+			for (int swarm = 0; swarm < BATCH; swarm++) {
+				swarms[swarm] = benchmark.newSwarm();
+			}
+		}
+	}
+
+	/**
+	 * one update cycle of each swarm in the batch, many warmup iterations since each one is a single call
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 100)
+	@Measurement(iterations = 20)
+	@OperationsPerInvocation(BATCH)
+	public void update(FreshSwarms fresh) {
+		for (Swarm swarm : fresh.swarms) {
+			swarm.update();
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 5)
+	@Measurement(iterations = 10)
+	public double optimise() {
+		Swarm run = newSwarm();
+		run.optimise(10);
+		return run.getBestFitness();
+	}
+}
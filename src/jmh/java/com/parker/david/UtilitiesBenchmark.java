@@ -0,0 +1,62 @@
+package com.parker.david;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the bounce back constraint for values inside and outside the search space, and copying lists
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilitiesBenchmark {
+	@Param({"2", "30", "1000"})
+	private int size;
+
+	private double[] inside;
+
+	private double[] outside;
+
+	private ArrayList<Double> list;
+
+	@Setup
+	public void setup() {
+		inside = new double[size];
+		outside = new double[size];
+		list = new ArrayList<>();
+		RandomSource random = new RandomSource(42);
+		for (int i = 0; i < size; i++) {
+			inside[i] = random.nextDouble(-512, 512);
+			outside[i] = random.nextDouble(512, 5000) * (i % 2 == 0 ? 1 : -1);
+			list.add(inside[i]);
+		}
+	}
+
+	@Benchmark
+	public double constrainInside() {
+		double sum = 0;
+		for (double value : inside) {
+			sum += Utilities.constrainDouble(value, -512, 512);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double constrainOutside() {
+		double sum = 0;
+		for (double value : outside) {
+			sum += Utilities.constrainDouble(value, -512, 512);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public ArrayList<Double> deepCopy() {
+		return Utilities.deepCopy(list);
+	}
+}
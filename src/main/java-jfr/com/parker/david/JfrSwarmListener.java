@@ -0,0 +1,107 @@
+package com.parker.david;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * a listener that emits java flight recorder events for every update cycle and every improvement of a swarm,
+ * so runs can be inspected alongside gc and cpu data in a flight recording. only built on jdk 11 or later, by the jfr
+ * profile. the listener reuses one event of each kind, filled in only while a recording has them enabled, so use one
+ * listener per swarm
+ */
+public class JfrSwarmListener implements SwarmListener {
+	/**
+	 * the metrics of the swarm, if any, whose evaluation counts are attached to each iteration event
+	 */
+	private final SwarmMetrics metrics;
+
+	/**
+	 * the event for the update cycle in progress, begun again when the previous cycle ended
+	 */
+	private final IterationEvent iterationEvent = new IterationEvent();
+
+	/**
+	 * the event for an improvement, begun afresh for each one
+	 */
+	private final ImprovementEvent improvementEvent = new ImprovementEvent();
+
+	/**
+	 * the evaluation count when the previous cycle ended
+	 */
+	private long previousEvaluations;
+
+	/**
+	 * constructor
+	 *
+	 * @param metrics the metrics set on the swarm, or null to leave evaluation counts out of the events
+	 */
+	public JfrSwarmListener(SwarmMetrics metrics) {
+		this.metrics = metrics;
+		iterationEvent.begin();
+	}
+
+	@Override
+	public void onIteration(Swarm swarm, long iteration, boolean improved) {
+		IterationEvent event = iterationEvent;
+		long evaluations = metrics == null ? 0 : metrics.getEvaluations();
+		if (event.shouldCommit()) {
+			event.end();
+			event.iteration = iteration;
+			event.improved = improved;
+			event.bestFitness = swarm.getBestFitness();
+			event.iterationsSinceImprovement = swarm.getIterationsSinceImprovement();
+			event.evaluations = evaluations - previousEvaluations;
+			event.commit();
+		}
+		previousEvaluations = evaluations;
+		event.begin();
+	}
+
+	@Override
+	public void onImprovement(Swarm swarm, long iteration, double bestFitness) {
+		ImprovementEvent event = improvementEvent;
+		if (event.isEnabled()) {
+			//a reused event must be begun again, or it would be stamped with the time of the first
+			event.begin();
+			event.iteration = iteration;
+			event.bestFitness = bestFitness;
+			event.commit();
+		}
+	}
+
+	@Name("com.parker.david.SwarmIteration")
+	@Label("Swarm Iteration")
+	@Category("PSO")
+	@Description("a single update cycle of a swarm")
+	static class IterationEvent extends Event {
+		@Label("Iteration")
+		long iteration;
+
+		@Label("Improved")
+		boolean improved;
+
+		@Label("Best Fitness")
+		double bestFitness;
+
+		@Label("Iterations Since Improvement")
+		int iterationsSinceImprovement;
+
+		@Label("Evaluations")
+		long evaluations;
+	}
+
+	@Name("com.parker.david.SwarmImprovement")
+	@Label("Swarm Improvement")
+	@Category("PSO")
+	@Description("a swarm found a new global best")
+	static class ImprovementEvent extends Event {
+		@Label("Iteration")
+		long iteration;
+
+		@Label("Best Fitness")
+		double bestFitness;
+	}
+}
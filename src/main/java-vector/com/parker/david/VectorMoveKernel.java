@@ -0,0 +1,66 @@
+package com.parker.david;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * the move kernel on the vector api, as many dimensions at a time as the cpu's widest vectors hold.
+ * it does the same operations in the same order as the scalar kernel, so the results are identical bit for bit.
+ * the bounce back is done with masks: while a position is within twice the range of the search space of zero, the
+ * remainder in Utilities.constrainDouble leaves it unchanged, so the reflections alone give the same answer. the rare lanes
+ * that have gone further than that are redone one at a time with Utilities.constrainDouble
+ */
+final class VectorMoveKernel extends MoveKernel {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	void move(double[] position, double[] velocity, double[] bestPosition, int offset, double[] neighbourhoodBest, int neighbourhoodOffset,
+			  double[] minConstraints, double[] maxConstraints, int dimensions, double weight, double rhoPersonal, double cPersonal, double rhoNeighbour, double cNeighbourhood) {
+		int bound = SPECIES.loopBound(dimensions);
+		int d = 0;
+		for (; d < bound; d += SPECIES.length()) {
+			int i = offset + d;
+			DoubleVector p = DoubleVector.fromArray(SPECIES, position, i);
+			DoubleVector v = DoubleVector.fromArray(SPECIES, velocity, i);
+			DoubleVector b = DoubleVector.fromArray(SPECIES, bestPosition, i);
+			DoubleVector n = DoubleVector.fromArray(SPECIES, neighbourhoodBest, neighbourhoodOffset + d);
+			DoubleVector min = DoubleVector.fromArray(SPECIES, minConstraints, d);
+			DoubleVector max = DoubleVector.fromArray(SPECIES, maxConstraints, d);
+
+			//the theoretical new velocity and position
+			DoubleVector theoreticalNewVelocity = v.mul(weight)
+					.add(b.sub(p).mul(rhoPersonal).mul(cPersonal))
+					.add(n.sub(p).mul(rhoNeighbour).mul(cNeighbourhood));
+			DoubleVector theoreticalNewPosition = p.add(theoreticalNewVelocity);
+
+			//bounce off each side twice, as the scalar version does
+			DoubleVector twiceMin = min.mul(2);
+			DoubleVector twiceMax = max.mul(2);
+			DoubleVector x = theoreticalNewPosition;
+			x = x.blend(twiceMin.sub(x), x.compare(VectorOperators.LT, min));
+			x = x.blend(twiceMax.sub(x), x.compare(VectorOperators.GT, max));
+			x = x.blend(twiceMin.sub(x), x.compare(VectorOperators.LT, min));
+			x = x.blend(twiceMax.sub(x), x.compare(VectorOperators.GT, max));
+
+			x.intoArray(position, i);
+			x.sub(p).intoArray(velocity, i);
+
+			//lanes outside the search space and too far from zero for the remainder to be a no-op
+			VectorMask<Double> outside = theoreticalNewPosition.compare(VectorOperators.LT, min).or(theoreticalNewPosition.compare(VectorOperators.GT, max));
+			VectorMask<Double> far = outside.and(theoreticalNewPosition.abs().compare(VectorOperators.GE, max.sub(min).mul(2)));
+			if (far.anyTrue()) {
+				for (int lane = 0; lane < SPECIES.length(); lane++) {
+					if (far.laneIsSet(lane)) {
+						double realNewPosition = Utilities.constrainDouble(theoreticalNewPosition.lane(lane), minConstraints[d + lane], maxConstraints[d + lane]);
+						velocity[i + lane] = realNewPosition - p.lane(lane);
+						position[i + lane] = realNewPosition;
+					}
+				}
+			}
+		}
+		moveScalar(position, velocity, bestPosition, offset, neighbourhoodBest, neighbourhoodOffset, minConstraints, maxConstraints, d, dimensions,
+				weight, rhoPersonal, cPersonal, rhoNeighbour, cNeighbourhood);
+	}
+}
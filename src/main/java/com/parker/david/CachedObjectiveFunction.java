@@ -0,0 +1,335 @@
+package com.parker.david;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * an objective function that remembers the fitness of points it has already scored, and only calls the wrapped
+ * objective function for points it has not seen.
+ * points may be matched exactly, or by rounding every parameter to a multiple of a quantum so that points close together
+ * share a fitness. the cache holds a bounded number of points, evicting either the least recently used or the cheapest to
+ * recompute. safe to use from many threads at once
+ */
+public class CachedObjectiveFunction extends ObjectiveFunction {
+	/**
+	 * the objective function whose fitnesses are cached
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * the size of the grid points are rounded to before lookup, 0 to match points exactly, never negative
+	 */
+	private final double quantum;
+
+	/**
+	 * the maximum number of points held
+	 */
+	private final int capacity;
+
+	/**
+	 * which point to forget when the cache is full
+	 */
+	private final EvictionPolicy evictionPolicy;
+
+	/**
+	 * the cached points, in least to most recently used order. guarded by itself
+	 */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * the cached points ordered by priority, only used by the cost aware policy. guarded by entries
+	 */
+	private final TreeSet<Entry> priorities = new TreeSet<>();
+
+	/**
+	 * the priority of the last point evicted by the cost aware policy, which every new priority is built on
+	 * so that points which have not been used in a while age out. guarded by entries
+	 */
+	private double inflation;
+
+	/**
+	 * a counter used to order entries of equal priority. guarded by entries
+	 */
+	private long sequence;
+
+	/**
+	 * the number of lookups answered from the cache
+	 */
+	private final AtomicLong hits = new AtomicLong();
+
+	/**
+	 * the number of lookups passed on to the wrapped objective function
+	 */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * the number of points forgotten to make room for new points
+	 */
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * constructor
+	 *
+	 * @param objectiveFunction the objective function whose fitnesses are cached
+	 * @param quantum           the size of the grid points are rounded to before lookup, 0 to match points exactly, never negative
+	 * @param capacity          the maximum number of points held, at least 1
+	 * @param evictionPolicy    which point to forget when the cache is full
+	 */
+	public CachedObjectiveFunction(ObjectiveFunction objectiveFunction, double quantum, int capacity, EvictionPolicy evictionPolicy) {
+		super(objectiveFunction.objectiveType);
+		if (capacity <= 0)
+			throw new IllegalArgumentException("the cache must hold at least one point");
+		if (!(quantum >= 0))
+			throw new IllegalArgumentException("the grid size must be 0 or more");
+		this.objectiveFunction = objectiveFunction;
+		this.quantum = quantum;
+		this.capacity = capacity;
+		this.evictionPolicy = evictionPolicy;
+	}
+
+	/**
+	 * get the fitness of a point from the cache, or from the wrapped objective function if it has not been seen
+	 */
+	@Override
+	public double getFitness(double[] parameters) {
+		Key key = new Key(parameters, quantum);
+		synchronized (entries) {
+			Entry entry = lookup(key);
+			if (entry != null)
+				return entry.fitness;
+		}
+
+		//evaluate outside the lock so other threads may carry on with their own lookups
+		long start = System.nanoTime();
+		double fitness = objectiveFunction.getFitness(parameters);
+		store(key, fitness, System.nanoTime() - start);
+		return fitness;
+	}
+
+	/**
+	 * get the fitnesses of a population, answering what it can from the cache and passing the remaining points on to the
+	 * wrapped objective function as a single smaller batch
+	 */
+	@Override
+	public void getFitnesses(double[] population, int dimensions, int from, int to, double[] fitnesses) {
+		Key[] keys = new Key[to - from];
+		int[] missed = new int[to - from];
+		int missCount = 0;
+		synchronized (entries) {
+			for (int point = from; point < to; point++) {
+				Key key = new Key(Arrays.copyOfRange(population, point * dimensions, (point + 1) * dimensions), quantum);
+				Entry entry = lookup(key);
+				if (entry != null) {
+					fitnesses[point] = entry.fitness;
+				} else {
+					keys[missCount] = key;
+					missed[missCount++] = point;
+				}
+			}
+		}
+		if (missCount == 0)
+			return;
+
+		//gather the points we have not seen into a population of their own and score it in one call
+		double[] missedPopulation = new double[missCount * dimensions];
+		double[] missedFitnesses = new double[missCount];
+		for (int i = 0; i < missCount; i++) {
+			System.arraycopy(population, missed[i] * dimensions, missedPopulation, i * dimensions, dimensions);
+		}
+		long start = System.nanoTime();
+		objectiveFunction.getFitnesses(missedPopulation, dimensions, 0, missCount, missedFitnesses);
+		long costPerPoint = (System.nanoTime() - start) / missCount;
+
+		for (int i = 0; i < missCount; i++) {
+			fitnesses[missed[i]] = missedFitnesses[i];
+			store(keys[i], missedFitnesses[i], costPerPoint);
+		}
+	}
+
+	/**
+	 * find a point in the cache, counting the hit or miss and marking the point as used. must hold the lock on entries
+	 */
+	private Entry lookup(Key key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		if (evictionPolicy == EvictionPolicy.CostAware) {
+			priorities.remove(entry);
+			entry.priority = inflation + entry.cost;
+			entry.sequence = sequence++;
+			priorities.add(entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * add a newly scored point to the cache, evicting a point if it is full
+	 */
+	private void store(Key key, double fitness, long cost) {
+		synchronized (entries) {
+			//another thread may have scored the same point while we were scoring it
+			if (entries.containsKey(key))
+				return;
+
+			if (entries.size() >= capacity)
+				evict();
+
+			Entry entry = new Entry(key, fitness, cost);
+			entries.put(key, entry);
+			if (evictionPolicy == EvictionPolicy.CostAware) {
+				entry.priority = inflation + cost;
+				entry.sequence = sequence++;
+				priorities.add(entry);
+			}
+		}
+	}
+
+	/**
+	 * forget a single point according to the eviction policy. must hold the lock on entries
+	 */
+	private void evict() {
+		if (entries.isEmpty())
+			return;
+		if (evictionPolicy == EvictionPolicy.CostAware) {
+			Entry cheapest = priorities.pollFirst();
+			inflation = cheapest.priority;
+			entries.remove(cheapest.key);
+		} else {
+			Iterator<Map.Entry<Key, Entry>> leastRecentlyUsed = entries.entrySet().iterator();
+			leastRecentlyUsed.next();
+			leastRecentlyUsed.remove();
+		}
+		evictions.incrementAndGet();
+	}
+
+	/**
+	 * forget every cached point, the statistics are kept
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			priorities.clear();
+			inflation = 0;
+		}
+	}
+
+	/**
+	 * get the number of lookups answered from the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * get the number of lookups passed on to the wrapped objective function
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * get the number of points forgotten to make room for new points
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * get the fraction of lookups answered from the cache, 0 if there have been none
+	 */
+	public double getHitRate() {
+		long hitCount = hits.get();
+		long total = hitCount + misses.get();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	/**
+	 * get the number of points currently held
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * a summary of the cache statistics
+	 */
+	@Override
+	public String toString() {
+		return "hits = " + getHits() +
+				"\nmisses = " + getMisses() +
+				"\nevictions = " + getEvictions() +
+				"\nhit rate = " + getHitRate();
+	}
+
+	/**
+	 * which point a full cache forgets to make room for a new one
+	 */
+	public enum EvictionPolicy {
+		/**
+		 * the point that was looked up least recently
+		 */
+		LeastRecentlyUsed,
+		/**
+		 * the point that was quickest to score, aged so that expensive points that are never used again still leave eventually
+		 */
+		CostAware
+	}
+
+	/**
+	 * the lookup key of a point, either its exact bit pattern or its grid cell
+	 */
+	private static final class Key {
+		private final long[] coordinates;
+		private final int hash;
+
+		Key(double[] parameters, double quantum) {
+			coordinates = new long[parameters.length];
+			for (int i = 0; i < parameters.length; i++) {
+				coordinates[i] = quantum > 0 ? Math.round(parameters[i] / quantum) : Double.doubleToLongBits(parameters[i]);
+			}
+			hash = Arrays.hashCode(coordinates);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key && Arrays.equals(coordinates, ((Key) other).coordinates);
+		}
+	}
+
+	/**
+	 * a cached fitness along with the bookkeeping for the cost aware policy
+	 */
+	private static final class Entry implements Comparable<Entry> {
+		private final Key key;
+		private final double fitness;
+		private final long cost;
+		private double priority;
+		private long sequence;
+
+		Entry(Key key, double fitness, long cost) {
+			this.key = key;
+			this.fitness = fitness;
+			this.cost = cost;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int byPriority = Double.compare(priority, other.priority);
+			return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+		}
+	}
+}
@@ -0,0 +1,420 @@
+package com.parker.david;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * runs a grid of experiments, every combination of objective, swarm size, w, c1 and c2, for every seed and repeat, as
+ * single threaded swarms spread over the cores of one jvm. each run is written out as it completes, and once all are done
+ * a summary of every configuration, the mean, median, standard deviation and best of the best fitnesses and the fraction
+ * of runs that reached the objective's target
+ */
+public class Campaign {
+	/**
+	 * the header of the runs file
+	 */
+	static final String RUNS_HEADER = "objective,particles,w,c1,c2,seed,repeat,best fitness,success,iterations,evaluations,millis";
+
+	/**
+	 * the header of the summary file
+	 */
+	static final String SUMMARY_HEADER = "objective,particles,w,c1,c2,runs,mean,median,std,best,success rate,mean evaluations,mean millis";
+
+	/**
+	 * the objectives to run, with their search spaces and targets
+	 */
+	private final List<Objective> objectives = new ArrayList<>();
+
+	private int[] particleCounts = {50};
+	private double[] weights = {0.729};
+	private double[] cPersonals = {1.49445};
+	private double[] cNeighbours = {1.49445};
+	private long[] seeds = {1};
+	private int repeats = 1;
+
+	/**
+	 * the stopping criteria of every run, 0 for no limit on evaluations
+	 */
+	private int maxIterationsWithoutImprovement = 100;
+	private long maxEvaluations;
+
+	/**
+	 * initial velocity factor for every swarm
+	 */
+	private double initialVelocityFactor = 0.3;
+
+	/**
+	 * the number of runs to do at once
+	 */
+	private final int threads;
+
+	/**
+	 * constructor
+	 *
+	 * @param threads the number of runs to do at once
+	 */
+	public Campaign(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * add an objective to the grid
+	 *
+	 * @param name           the name of the objective in the output
+	 * @param objective      the objective function
+	 * @param minConstraints the constraint on the minimum values for the search space
+	 * @param maxConstraints the constraint on the maximum values for the search space
+	 * @param target         the best fitness of the objective
+	 * @param tolerance      how close to the target a run must get to count as a success
+	 * @throws IllegalArgumentException if the grid already has an objective by that name
+	 */
+	public void addObjective(String name, ObjectiveFunction objective, double[] minConstraints, double[] maxConstraints, double target, double tolerance) {
+		for (Objective added : objectives) {
+			if (added.name.equals(name))
+				throw new IllegalArgumentException("the campaign already has an objective named " + name);
+		}
+		objectives.add(new Objective(name, objective, minConstraints.clone(), maxConstraints.clone(), target, tolerance));
+	}
+
+	/**
+	 * set the swarm sizes to try
+	 */
+	public void setParticleCounts(int... particleCounts) {
+		this.particleCounts = particleCounts.clone();
+	}
+
+	/**
+	 * set the inertia weights to try
+	 */
+	public void setWeights(double... weights) {
+		this.weights = weights.clone();
+	}
+
+	/**
+	 * set the personal best coefficients to try
+	 */
+	public void setCPersonals(double... cPersonals) {
+		this.cPersonals = cPersonals.clone();
+	}
+
+	/**
+	 * set the neighbourhood best coefficients to try
+	 */
+	public void setCNeighbours(double... cNeighbours) {
+		this.cNeighbours = cNeighbours.clone();
+	}
+
+	/**
+	 * set the seeds and the number of runs per seed. each repeat of a seed runs with its own seed derived from both, so
+	 * the whole campaign is reproducible
+	 */
+	public void setSeeds(int repeats, long... seeds) {
+		if (repeats < 1)
+			throw new IllegalArgumentException("every seed must run at least once");
+		if (seeds.length == 0)
+			throw new IllegalArgumentException("at least one seed is needed");
+		this.repeats = repeats;
+		this.seeds = seeds.clone();
+	}
+
+	/**
+	 * set when every run stops
+	 *
+	 * @param maxIterationsWithoutImprovement the most update cycles without a new best
+	 * @param maxEvaluations                  the most positions scored, 0 for no limit
+	 */
+	public void setStopping(int maxIterationsWithoutImprovement, long maxEvaluations) {
+		this.maxIterationsWithoutImprovement = maxIterationsWithoutImprovement;
+		this.maxEvaluations = maxEvaluations;
+	}
+
+	/**
+	 * set the initial velocity factor of every swarm
+	 */
+	public void setInitialVelocityFactor(double initialVelocityFactor) {
+		this.initialVelocityFactor = initialVelocityFactor;
+	}
+
+	/**
+	 * do every run of the grid
+	 *
+	 * @param runs    receives a csv line per run as each completes, in no particular order
+	 * @param summary receives a csv line per configuration once every run is done
+	 * @return the summary of every configuration, in grid order
+	 */
+	public List<Summary> run(Writer runs, Writer summary) throws IOException {
+		List<Configuration> configurations = new ArrayList<>();
+		for (Objective objective : objectives)
+			for (int particleCount : particleCounts)
+				for (double weight : weights)
+					for (double cPersonal : cPersonals)
+						for (double cNeighbour : cNeighbours)
+							configurations.add(new Configuration(objective, particleCount, weight, cPersonal, cNeighbour));
+
+		int runsPerConfiguration = seeds.length * repeats;
+		double[][] bestFitnesses = new double[configurations.size()][runsPerConfiguration];
+		long[][] evaluations = new long[configurations.size()][runsPerConfiguration];
+		long[][] nanos = new long[configurations.size()][runsPerConfiguration];
+
+		runs.write(RUNS_HEADER + "\n");
+		runs.flush();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			ParallelLoop.forEach(pool, configurations.size() * runsPerConfiguration, task -> {
+				Configuration configuration = configurations.get(task / runsPerConfiguration);
+				int run = task % runsPerConfiguration;
+				long seed = seeds[run / repeats];
+				int repeat = run % repeats;
+
+				long start = System.nanoTime();
+				Swarm swarm = configuration.swarm(RandomSource.derive(seed, repeat));
+				if (maxEvaluations > 0)
+					swarm.optimise(StoppingCriterion.maxIterationsWithoutImprovement(maxIterationsWithoutImprovement), StoppingCriterion.maxEvaluations(maxEvaluations));
+				else
+					swarm.optimise(StoppingCriterion.maxIterationsWithoutImprovement(maxIterationsWithoutImprovement));
+				long elapsed = System.nanoTime() - start;
+
+				int index = task / runsPerConfiguration;
+				bestFitnesses[index][run] = swarm.getBestFitness();
+				evaluations[index][run] = swarm.getEvaluations();
+				nanos[index][run] = elapsed;
+
+				String line = configuration + "," + seed + "," + repeat + "," + swarm.getBestFitness() + "," + configuration.objective.succeeded(swarm.getBestFitness())
+						+ "," + swarm.getIterations() + "," + swarm.getEvaluations() + "," + elapsed / 1_000_000 + "\n";
+				try {
+					synchronized (runs) {
+						runs.write(line);
+						runs.flush();
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdown();
+		}
+
+		List<Summary> summaries = new ArrayList<>();
+		summary.write(SUMMARY_HEADER + "\n");
+		for (int i = 0; i < configurations.size(); i++) {
+			Summary configurationSummary = new Summary(configurations.get(i), bestFitnesses[i], evaluations[i], nanos[i]);
+			summaries.add(configurationSummary);
+			summary.write(configurationSummary + "\n");
+		}
+		summary.flush();
+		return summaries;
+	}
+
+	/**
+	 * run a campaign described by a properties file, writing runs.csv and summary.csv to its output directory. see
+	 * campaigns/example.properties for the keys
+	 *
+	 * @param args the campaign file
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("usage: Campaign <campaign file>");
+			System.exit(2);
+		}
+		Path path = Paths.get(args[0]);
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+
+		int threads = Integer.parseInt(properties.getProperty("threads", "0").trim());
+		Campaign campaign = new Campaign(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+		double tolerance = Double.parseDouble(properties.getProperty("tolerance", "1e-3").trim());
+		for (String name : split(properties.getProperty("objectives", "eggholder"))) {
+			if (name.endsWith(".properties")) {
+				//an expression objective, which carries its own search space
+				Path objectivePath = path.resolveSibling(name);
+				if (!Files.exists(objectivePath))
+					objectivePath = Paths.get(name);
+				ExpressionObjective objective = ExpressionObjective.load(objectivePath);
+				if (objective.getMinConstraints() == null)
+					throw new IOException(name + " must give the search space as min and max");
+				String shortName = objectivePath.getFileName().toString().replace(".properties", "");
+				campaign.addObjective(shortName, objective, objective.getMinConstraints(), objective.getMaxConstraints(),
+						Double.parseDouble(required(properties, "target." + shortName)), tolerance);
+			} else {
+				StandardObjectives.TestFunction objective = StandardObjectives.byName(name);
+				int dimensions = Integer.parseInt(properties.getProperty("dimensions." + name, properties.getProperty("dimensions", "2")).trim());
+				double[] min = new double[dimensions];
+				double[] max = new double[dimensions];
+				Arrays.fill(min, -objective.bound);
+				Arrays.fill(max, objective.bound);
+				campaign.addObjective(name, objective, min, max, Double.parseDouble(required(properties, "target." + name)), tolerance);
+			}
+		}
+		campaign.setParticleCounts(split(properties.getProperty("particles", "50")).stream().mapToInt(Integer::parseInt).toArray());
+		campaign.setWeights(doubles(properties.getProperty("w", "0.729")));
+		campaign.setCPersonals(doubles(properties.getProperty("c1", "1.49445")));
+		campaign.setCNeighbours(doubles(properties.getProperty("c2", "1.49445")));
+		campaign.setSeeds(Integer.parseInt(properties.getProperty("repeats", "1").trim()),
+				split(properties.getProperty("seeds", "1")).stream().mapToLong(Long::parseLong).toArray());
+		campaign.setStopping(Integer.parseInt(properties.getProperty("maxIterationsWithoutImprovement", "100").trim()),
+				Long.parseLong(properties.getProperty("maxEvaluations", "0").trim()));
+		campaign.setInitialVelocityFactor(Double.parseDouble(properties.getProperty("initialVelocityFactor", "0.3").trim()));
+
+		Path output = Paths.get(properties.getProperty("output", "output/campaign").trim());
+		Files.createDirectories(output);
+		try (BufferedWriter runs = Files.newBufferedWriter(output.resolve("runs.csv"), StandardCharsets.UTF_8);
+			 BufferedWriter summary = Files.newBufferedWriter(output.resolve("summary.csv"), StandardCharsets.UTF_8)) {
+			for (Summary configurationSummary : campaign.run(runs, summary)) {
+				System.out.println(configurationSummary);
+			}
+		}
+	}
+
+	private static String required(Properties properties, String key) throws IOException {
+		String value = properties.getProperty(key);
+		if (value == null)
+			throw new IOException("the campaign has no " + key);
+		return value.trim();
+	}
+
+	private static List<String> split(String value) {
+		List<String> parts = new ArrayList<>();
+		for (String part : value.split(",")) {
+			if (!part.trim().isEmpty())
+				parts.add(part.trim());
+		}
+		return parts;
+	}
+
+	private static double[] doubles(String value) {
+		return split(value).stream().mapToDouble(Double::parseDouble).toArray();
+	}
+
+	/**
+	 * an objective of the grid
+	 */
+	private static final class Objective {
+		final String name;
+		final ObjectiveFunction function;
+		final double[] minConstraints;
+		final double[] maxConstraints;
+		final double target;
+		final double tolerance;
+
+		Objective(String name, ObjectiveFunction function, double[] minConstraints, double[] maxConstraints, double target, double tolerance) {
+			this.name = name;
+			this.function = function;
+			this.minConstraints = minConstraints;
+			this.maxConstraints = maxConstraints;
+			this.target = target;
+			this.tolerance = tolerance;
+		}
+
+		boolean succeeded(double fitness) {
+			return Math.abs(fitness - target) <= tolerance;
+		}
+	}
+
+	/**
+	 * a point of the grid
+	 */
+	private final class Configuration {
+		final Objective objective;
+		final int particleCount;
+		final double weight;
+		final double cPersonal;
+		final double cNeighbour;
+
+		Configuration(Objective objective, int particleCount, double weight, double cPersonal, double cNeighbour) {
+			this.objective = objective;
+			this.particleCount = particleCount;
+			this.weight = weight;
+			this.cPersonal = cPersonal;
+			this.cNeighbour = cNeighbour;
+		}
+
+		Swarm swarm(long seed) {
+			return new Swarm(objective.function, particleCount, cNeighbour, cPersonal, weight, objective.minConstraints, objective.maxConstraints,
+					initialVelocityFactor, Initialiser.uniform(), seed);
+		}
+
+		@Override
+		public String toString() {
+			return objective.name + "," + particleCount + "," + weight + "," + cPersonal + "," + cNeighbour;
+		}
+	}
+
+	/**
+	 * the statistics of every run of one configuration
+	 */
+	public static final class Summary {
+		private final String configuration;
+		private final int runs;
+		private final double mean;
+		private final double median;
+		private final double standardDeviation;
+		private final double best;
+		private final double successRate;
+		private final double meanEvaluations;
+		private final double meanMillis;
+
+		Summary(Configuration configuration, double[] bestFitnesses, long[] evaluations, long[] nanos) {
+			this.configuration = configuration.toString();
+			this.runs = bestFitnesses.length;
+			double[] sorted = bestFitnesses.clone();
+			Arrays.sort(sorted);
+			this.median = runs % 2 == 1 ? sorted[runs / 2] : (sorted[runs / 2 - 1] + sorted[runs / 2]) / 2;
+			this.mean = Arrays.stream(bestFitnesses).average().orElse(Double.NaN);
+			double squares = 0;
+			for (double fitness : bestFitnesses) {
+				squares += (fitness - mean) * (fitness - mean);
+			}
+			this.standardDeviation = runs > 1 ? Math.sqrt(squares / (runs - 1)) : 0;
+			this.best = configuration.objective.function.objectiveType == ObjectiveFunction.Type.Minimisation ? sorted[0] : sorted[runs - 1];
+			this.successRate = Arrays.stream(bestFitnesses).filter(configuration.objective::succeeded).count() / (double) runs;
+			this.meanEvaluations = Arrays.stream(evaluations).average().orElse(Double.NaN);
+			this.meanMillis = Arrays.stream(nanos).average().orElse(Double.NaN) / 1e6;
+		}
+
+		public double getMean() {
+			return mean;
+		}
+
+		public double getMedian() {
+			return median;
+		}
+
+		public double getStandardDeviation() {
+			return standardDeviation;
+		}
+
+		public double getBest() {
+			return best;
+		}
+
+		public double getSuccessRate() {
+			return successRate;
+		}
+
+		/**
+		 * the configuration and its statistics as a csv line
+		 */
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%s,%d,%s,%s,%s,%s,%.3f,%.1f,%.1f",
+					configuration, runs, mean, median, standardDeviation, best, successRate, meanEvaluations, meanMillis);
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package com.parker.david;
+
+/**
+ * a flag that asks a running optimisation to stop at the end of its current update cycle, may be set from any thread
+ */
+public class CancellationToken {
+	/**
+	 * set once cancelled
+	 */
+	private volatile boolean cancelled;
+
+	/**
+	 * ask whatever is watching this token to stop
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * whether cancel has been called
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
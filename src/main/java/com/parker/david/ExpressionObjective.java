@@ -0,0 +1,596 @@
+package com.parker.david;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * an objective function defined by a mathematical expression over the parameters, so a new objective needs no rebuild.
+ * the expression is parsed once and compiled into a tree of method handles, which the jit compiles like ordinary code,
+ * rather than being walked by an interpreter on every evaluation.
+ * <p>
+ * the parameters are x[0], x[1], ... and n is their number. an index may be any expression, and is truncated to an int.
+ * the operators are + - * / % and ^ for powers, with the usual precedence and ^ binding to the right, and the constants
+ * pi and e. the functions of one argument are sin cos tan asin acos atan sinh cosh tanh exp log log10 sqrt cbrt abs
+ * floor ceil and signum, and of two min max pow and atan2. sum(i, from, to, body) adds up the body for every integer i
+ * from from to to inclusive, and may be nested up to 4 deep with different index names, so rastrigin is written
+ * 10 * n + sum(i, 0, n - 1, x[i] ^ 2 - 10 * cos(2 * pi * x[i]))
+ */
+public class ExpressionObjective extends ObjectiveFunction {
+	/**
+	 * the most sums that may be nested inside each other
+	 */
+	static final int MAX_SUM_DEPTH = 4;
+
+	/**
+	 * the type every compiled node has, the parameters and the index of each enclosing sum
+	 */
+	static final MethodType NODE_TYPE = MethodType.methodType(double.class, double[].class, int.class, int.class, int.class, int.class);
+
+	/**
+	 * the expression as written
+	 */
+	private final String expression;
+
+	/**
+	 * the compiled expression
+	 */
+	private final MethodHandle handle;
+
+	/**
+	 * the constraints given alongside the expression in a definition file, null if none were given
+	 */
+	private double[] minConstraints;
+	private double[] maxConstraints;
+
+	/**
+	 * constructor, parses and compiles the expression
+	 *
+	 * @param expression    the expression
+	 * @param objectiveType whether to minimise or maximise the expression
+	 */
+	private ExpressionObjective(String expression, Type objectiveType) {
+		super(objectiveType);
+		this.expression = expression;
+		this.handle = new Parser(expression).parse();
+	}
+
+	/**
+	 * an objective function that minimises an expression
+	 *
+	 * @param expression the expression
+	 * @throws IllegalArgumentException if the expression cannot be parsed
+	 */
+	public static ExpressionObjective minimise(String expression) {
+		return new ExpressionObjective(expression, Type.Minimisation);
+	}
+
+	/**
+	 * an objective function that maximises an expression
+	 *
+	 * @param expression the expression
+	 * @throws IllegalArgumentException if the expression cannot be parsed
+	 */
+	public static ExpressionObjective maximise(String expression) {
+		return new ExpressionObjective(expression, Type.Maximisation);
+	}
+
+	/**
+	 * read an objective function from a properties file, holding the expression as objective, optionally
+	 * type = minimise or maximise (minimise by default), and optionally the search space as dimensions, min and max, where
+	 * min and max are either a single bound for every dimension or a comma separated bound per dimension
+	 *
+	 * @param path the file
+	 */
+	public static ExpressionObjective load(Path path) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		return load(properties, path.toString());
+	}
+
+	/**
+	 * read an objective function from properties, see load(Path)
+	 *
+	 * @param properties the properties
+	 * @param source     where the properties came from, for the error messages
+	 */
+	static ExpressionObjective load(Properties properties, String source) throws IOException {
+		String expression = properties.getProperty("objective");
+		if (expression == null)
+			throw new IOException(source + " has no objective");
+		String type = properties.getProperty("type", "minimise").trim();
+		ExpressionObjective objective;
+		try {
+			if (type.equalsIgnoreCase("minimise"))
+				objective = minimise(expression);
+			else if (type.equalsIgnoreCase("maximise"))
+				objective = maximise(expression);
+			else
+				throw new IOException("unknown objective type " + type + " in " + source);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage() + " in " + source, e);
+		}
+
+		if (properties.getProperty("min") != null || properties.getProperty("max") != null) {
+			int dimensions = Integer.parseInt(properties.getProperty("dimensions", "0").trim());
+			objective.minConstraints = bounds(properties.getProperty("min"), dimensions, source);
+			objective.maxConstraints = bounds(properties.getProperty("max"), dimensions, source);
+			if (objective.minConstraints.length != objective.maxConstraints.length)
+				throw new IOException("min and max have different numbers of dimensions in " + source);
+		}
+		return objective;
+	}
+
+	/**
+	 * parse a single bound repeated for every dimension, or a comma separated bound per dimension
+	 */
+	static double[] bounds(String value, int dimensions, String source) throws IOException {
+		if (value == null)
+			throw new IOException(source + " needs both min and max");
+		String[] parts = value.split(",");
+		if (parts.length == 1 && dimensions > 0) {
+			parts = new String[dimensions];
+			Arrays.fill(parts, value);
+		}
+		double[] bounds = new double[parts.length];
+		try {
+			for (int i = 0; i < parts.length; i++) {
+				bounds[i] = Double.parseDouble(parts[i].trim());
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("bad bound " + value + " in " + source, e);
+		}
+		return bounds;
+	}
+
+	/**
+	 * evaluate the compiled expression
+	 */
+	@Override
+	public double getFitness(double[] parameters) {
+		try {
+			return (double) handle.invokeExact(parameters, 0, 0, 0, 0);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * get the minimum constraints given in the definition file, null if none were given
+	 */
+	public double[] getMinConstraints() {
+		return minConstraints == null ? null : minConstraints.clone();
+	}
+
+	/**
+	 * get the maximum constraints given in the definition file, null if none were given
+	 */
+	public double[] getMaxConstraints() {
+		return maxConstraints == null ? null : maxConstraints.clone();
+	}
+
+	/**
+	 * the expression as written
+	 */
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	/**
+	 * truncate an index to an int, used by the compiled array lookups
+	 */
+	static int toIndex(double index) {
+		return (int) index;
+	}
+
+	/**
+	 * the number of parameters, used by the compiled n
+	 */
+	static double length(double[] parameters) {
+		return parameters.length;
+	}
+
+	/**
+	 * the body of a compiled sum, adds up the body over the range of the index at the given depth
+	 */
+	static double sum(MethodHandle body, int depth, double from, double to, double[] x, int i0, int i1, int i2, int i3) throws Throwable {
+		double sum = 0;
+		for (int i = (int) from; i <= (int) to; i++) {
+			switch (depth) {
+				case 0:
+					sum += (double) body.invokeExact(x, i, i1, i2, i3);
+					break;
+				case 1:
+					sum += (double) body.invokeExact(x, i0, i, i2, i3);
+					break;
+				case 2:
+					sum += (double) body.invokeExact(x, i0, i1, i, i3);
+					break;
+				default:
+					sum += (double) body.invokeExact(x, i0, i1, i2, i);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * a node of the expression while it is being compiled, either a constant, which is folded into its parent, or a handle
+	 */
+	private static final class Node {
+		private final MethodHandle handle;
+		private final double value;
+
+		Node(MethodHandle handle) {
+			this.handle = handle;
+			this.value = 0;
+		}
+
+		Node(double value) {
+			this.handle = null;
+			this.value = value;
+		}
+
+		boolean isConstant() {
+			return handle == null;
+		}
+
+		/**
+		 * the node as a handle of the node type
+		 */
+		MethodHandle handle() {
+			if (handle != null)
+				return handle;
+			return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, NODE_TYPE.parameterList());
+		}
+	}
+
+	/**
+	 * a recursive descent parser that compiles as it goes
+	 */
+	private static final class Parser {
+		private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+		private final String text;
+		private int position;
+
+		/**
+		 * the names of the enclosing sums' indices, innermost last
+		 */
+		private final List<String> indices = new ArrayList<>();
+
+		Parser(String text) {
+			this.text = text;
+		}
+
+		MethodHandle parse() {
+			Node node = expression();
+			skipSpaces();
+			if (position != text.length())
+				throw error("unexpected '" + text.charAt(position) + "'");
+			return node.handle();
+		}
+
+		// expression := term (('+' | '-') term)*
+		private Node expression() {
+			Node node = term();
+			while (true) {
+				if (accept('+'))
+					node = binary("add", node, term());
+				else if (accept('-'))
+					node = binary("subtract", node, term());
+				else
+					return node;
+			}
+		}
+
+		// term := unary (('*' | '/' | '%') unary)*
+		private Node term() {
+			Node node = unary();
+			while (true) {
+				if (accept('*'))
+					node = binary("multiply", node, unary());
+				else if (accept('/'))
+					node = binary("divide", node, unary());
+				else if (accept('%'))
+					node = binary("remainder", node, unary());
+				else
+					return node;
+			}
+		}
+
+		// unary := '-' unary | power
+		private Node unary() {
+			if (accept('-'))
+				return unary("negate", unary());
+			if (accept('+'))
+				return unary();
+			return power();
+		}
+
+		// power := primary ('^' unary)?
+		private Node power() {
+			Node node = primary();
+			if (accept('^'))
+				return binary("pow", node, unary());
+			return node;
+		}
+
+		// primary := number | '(' expression ')' | x '[' expression ']' | name | name '(' arguments ')'
+		private Node primary() {
+			skipSpaces();
+			if (position >= text.length())
+				throw error("unexpected end of expression");
+			char c = text.charAt(position);
+			if (Character.isDigit(c) || c == '.')
+				return new Node(number());
+			if (accept('(')) {
+				Node node = expression();
+				expect(')');
+				return node;
+			}
+			if (!Character.isLetter(c))
+				throw error("unexpected '" + c + "'");
+
+			String name = name();
+			if (name.equals("x") && accept('['))
+				return element();
+			if (accept('('))
+				return call(name);
+			switch (name) {
+				case "pi":
+					return new Node(Math.PI);
+				case "e":
+					return new Node(Math.E);
+				case "n":
+					return new Node(MethodHandles.dropArguments(
+							handle("length", MethodType.methodType(double.class, double[].class)), 1, int.class, int.class, int.class, int.class));
+				default:
+					int depth = indices.lastIndexOf(name);
+					if (depth < 0)
+						throw error("unknown name " + name);
+					MethodHandle index = MethodHandles.identity(int.class).asType(MethodType.methodType(double.class, int.class));
+					return new Node(MethodHandles.permuteArguments(index, NODE_TYPE, depth + 1));
+			}
+		}
+
+		/**
+		 * x[index], the opening bracket already read
+		 */
+		private Node element() {
+			Node index = expression();
+			expect(']');
+			MethodHandle getter = MethodHandles.arrayElementGetter(double[].class);
+			if (index.isConstant()) {
+				MethodHandle element = MethodHandles.insertArguments(getter, 1, toIndex(index.value));
+				return new Node(MethodHandles.dropArguments(element, 1, int.class, int.class, int.class, int.class));
+			}
+			MethodHandle intIndex = MethodHandles.filterReturnValue(index.handle(), handle("toIndex", MethodType.methodType(int.class, double.class)));
+			//(int index, node arguments) reading the parameters from the node arguments, then the index folded in
+			MethodHandle element = MethodHandles.permuteArguments(getter, NODE_TYPE.insertParameterTypes(0, int.class), 1, 0);
+			return new Node(MethodHandles.foldArguments(element, intIndex));
+		}
+
+		/**
+		 * a function call or sum, the opening bracket already read
+		 */
+		private Node call(String name) {
+			if (name.equals("sum"))
+				return sum();
+			List<Node> arguments = new ArrayList<>();
+			if (!accept(')')) {
+				do {
+					arguments.add(expression());
+				} while (accept(','));
+				expect(')');
+			}
+			if (arguments.size() == 1)
+				return unary(name, arguments.get(0));
+			if (arguments.size() == 2)
+				return binary(name, arguments.get(0), arguments.get(1));
+			throw error("no function " + name + " of " + arguments.size() + " arguments");
+		}
+
+		/**
+		 * sum(index, from, to, body), the opening bracket already read
+		 */
+		private Node sum() {
+			skipSpaces();
+			String index = name();
+			if (indices.contains(index) || index.equals("x") || index.equals("n"))
+				throw error("the sum index " + index + " is already in use");
+			if (indices.size() == MAX_SUM_DEPTH)
+				throw error("sums may only be nested " + MAX_SUM_DEPTH + " deep");
+			expect(',');
+			Node from = expression();
+			expect(',');
+			Node to = expression();
+			expect(',');
+			indices.add(index);
+			Node body = expression();
+			indices.remove(indices.size() - 1);
+			expect(')');
+
+			MethodHandle sum = handle("sum", MethodType.methodType(double.class, MethodHandle.class, int.class, double.class, double.class,
+					double[].class, int.class, int.class, int.class, int.class));
+			sum = MethodHandles.insertArguments(sum, 0, body.handle(), indices.size());
+			return new Node(fold(sum, from.handle(), to.handle()));
+		}
+
+		/**
+		 * a function of one argument, folded if the argument is constant
+		 */
+		private Node unary(String name, Node argument) {
+			MethodHandle function = function(name, 1);
+			if (argument.isConstant())
+				return new Node(invoke(function, argument.value));
+			MethodHandle target = MethodHandles.dropArguments(function, 1, NODE_TYPE.parameterList());
+			return new Node(MethodHandles.foldArguments(target, argument.handle()));
+		}
+
+		/**
+		 * a function of two arguments, folded if both are constant
+		 */
+		private Node binary(String name, Node left, Node right) {
+			MethodHandle function = function(name, 2);
+			if (left.isConstant() && right.isConstant())
+				return new Node(invoke(function, left.value, right.value));
+			return new Node(fold(MethodHandles.dropArguments(function, 2, NODE_TYPE.parameterList()), left.handle(), right.handle()));
+		}
+
+		/**
+		 * feed two nodes into the leading arguments of a handle of (double, double, node arguments)
+		 */
+		private static MethodHandle fold(MethodHandle target, MethodHandle first, MethodHandle second) {
+			//a fold can only fill the leading argument from the arguments after it, so swap the two, fill the second while
+			//ignoring the first, and then fill the first
+			MethodHandle swapped = MethodHandles.permuteArguments(target, target.type(), 1, 0, 2, 3, 4, 5, 6);
+			swapped = MethodHandles.foldArguments(swapped, MethodHandles.dropArguments(second, 0, double.class));
+			return MethodHandles.foldArguments(swapped, first);
+		}
+
+		/**
+		 * find a function of doubles, from Operators or java.lang.Math
+		 */
+		private MethodHandle function(String name, int arity) {
+			MethodType type = arity == 1 ?
+					MethodType.methodType(double.class, double.class) :
+					MethodType.methodType(double.class, double.class, double.class);
+			try {
+				return LOOKUP.findStatic(Operators.class, name, type);
+			} catch (ReflectiveOperationException e) {
+				try {
+					return LOOKUP.findStatic(Math.class, name, type);
+				} catch (ReflectiveOperationException e2) {
+					throw error("no function " + name + " of " + arity + (arity == 1 ? " argument" : " arguments"));
+				}
+			}
+		}
+
+		private static MethodHandle handle(String name, MethodType type) {
+			try {
+				return LOOKUP.findStatic(ExpressionObjective.class, name, type);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private static double invoke(MethodHandle function, double... arguments) {
+			try {
+				Object[] boxed = new Object[arguments.length];
+				for (int i = 0; i < arguments.length; i++) {
+					boxed[i] = arguments[i];
+				}
+				return (double) function.invokeWithArguments(boxed);
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private double number() {
+			int start = position;
+			while (position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.'))
+				position++;
+			if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+				int exponent = position + 1;
+				if (exponent < text.length() && (text.charAt(exponent) == '+' || text.charAt(exponent) == '-'))
+					exponent++;
+				if (exponent < text.length() && Character.isDigit(text.charAt(exponent))) {
+					position = exponent;
+					while (position < text.length() && Character.isDigit(text.charAt(position)))
+						position++;
+				}
+			}
+			try {
+				return Double.parseDouble(text.substring(start, position));
+			} catch (NumberFormatException e) {
+				throw error("bad number " + text.substring(start, position));
+			}
+		}
+
+		private String name() {
+			int start = position;
+			while (position < text.length() && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_'))
+				position++;
+			if (start == position)
+				throw error("expected a name");
+			return text.substring(start, position);
+		}
+
+		private void skipSpaces() {
+			while (position < text.length() && Character.isWhitespace(text.charAt(position)))
+				position++;
+		}
+
+		private boolean accept(char c) {
+			skipSpaces();
+			if (position < text.length() && text.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+			if (!accept(c))
+				throw error("expected '" + c + "'");
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position " + position + " of " + text);
+		}
+	}
+
+	/**
+	 * the arithmetic operators as functions, for the compiled expression to call
+	 */
+	static final class Operators {
+		static double add(double a, double b) {
+			return a + b;
+		}
+
+		static double subtract(double a, double b) {
+			return a - b;
+		}
+
+		static double multiply(double a, double b) {
+			return a * b;
+		}
+
+		static double divide(double a, double b) {
+			return a / b;
+		}
+
+		static double remainder(double a, double b) {
+			return a % b;
+		}
+
+		static double negate(double a) {
+			return -a;
+		}
+
+		/**
+		 * powers, with small whole exponents done by multiplication as they are far more common and far cheaper
+		 */
+		static double pow(double a, double b) {
+			if (b == 2)
+				return a * a;
+			if (b == 3)
+				return a * a * a;
+			return Math.pow(a, b);
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package com.parker.david;
+
+import java.util.stream.IntStream;
+
+/**
+ * how the initial positions of a swarm are spread over the search space.
+ * subclass this to define a new strategy, or use one of the factory methods for the common ones
+ */
+public abstract class Initialiser {
+
+	/**
+	 * fill in the positions of a number of particles
+	 *
+	 * @param positions      the block to fill, indexed [p * dimensions + d]
+	 * @param particleCount  the number of particles
+	 * @param minConstraints the constraint on the minimum values for each dimension
+	 * @param maxConstraints the constraint on the maximum values for each dimension
+	 * @param random         the swarm's stream of random numbers
+	 */
+	protected abstract void fill(double[] positions, int particleCount, double[] minConstraints, double[] maxConstraints, RandomSource random);
+
+	/**
+	 * fill in the positions of every particle in a state and score them
+	 *
+	 * @param state             the state to initialise
+	 * @param objectiveFunction the objective function to score the positions with
+	 * @param random            the swarm's stream of random numbers
+	 * @return the number of positions scored
+	 */
+	int initialise(SwarmState state, ObjectiveFunction objectiveFunction, RandomSource random) {
+		fill(state.positions, state.particleCount, state.minConstraints, state.maxConstraints, random);
+		objectiveFunction.getFitnesses(state.positions, state.dimensions, 0, state.particleCount, state.fitnesses);
+		return state.particleCount;
+	}
+
+	/**
+	 * every coordinate drawn independently and uniformly, the default
+	 */
+	public static Initialiser uniform() {
+		return new Initialiser() {
+			@Override
+			protected void fill(double[] positions, int particleCount, double[] minConstraints, double[] maxConstraints, RandomSource random) {
+				int dimensions = maxConstraints.length;
+				for (int i = 0; i < particleCount * dimensions; i++) {
+					positions[i] = random.nextDouble(minConstraints[i % dimensions], maxConstraints[i % dimensions]);
+				}
+			}
+		};
+	}
+
+	/**
+	 * each dimension split into as many equal strata as there are particles, and every stratum of every dimension
+	 * holding exactly one particle, at a uniform point within it
+	 */
+	public static Initialiser latinHypercube() {
+		return new Initialiser() {
+			@Override
+			protected void fill(double[] positions, int particleCount, double[] minConstraints, double[] maxConstraints, RandomSource random) {
+				int dimensions = maxConstraints.length;
+				int[] strata = new int[particleCount];
+				for (int d = 0; d < dimensions; d++) {
+					//a fresh shuffle of the strata for each dimension
+					for (int i = 0; i < particleCount; i++) {
+						int j = random.nextInt(i + 1);
+						strata[i] = strata[j];
+						strata[j] = i;
+					}
+					for (int p = 0; p < particleCount; p++) {
+						double unit = (strata[p] + random.nextDouble()) / particleCount;
+						positions[p * dimensions + d] = minConstraints[d] + unit * (maxConstraints[d] - minConstraints[d]);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * the halton sequence, the radical inverse of the particle's index in a different prime base for each dimension.
+	 * each dimension is shifted by its own random amount modulo 1, so that runs differ while keeping the even coverage.
+	 * the coverage of the higher bases degrades past a few tens of dimensions
+	 */
+	public static Initialiser halton() {
+		return new Initialiser() {
+			@Override
+			protected void fill(double[] positions, int particleCount, double[] minConstraints, double[] maxConstraints, RandomSource random) {
+				int dimensions = maxConstraints.length;
+				int[] primes = primes(dimensions);
+				for (int d = 0; d < dimensions; d++) {
+					double shift = random.nextDouble();
+					for (int p = 0; p < particleCount; p++) {
+						double unit = radicalInverse(p + 1, primes[d]) + shift;
+						if (unit >= 1)
+							unit -= 1;
+						positions[p * dimensions + d] = minConstraints[d] + unit * (maxConstraints[d] - minConstraints[d]);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * the sobol sequence with the joe and kuo direction numbers, for up to 21 dimensions. the points are digitally shifted,
+	 * xored with a random word per dimension, which keeps the even coverage of the sequence while letting runs differ.
+	 * the first point of the sequence, the origin, is skipped
+	 */
+	public static Initialiser sobol() {
+		return new Initialiser() {
+			@Override
+			protected void fill(double[] positions, int particleCount, double[] minConstraints, double[] maxConstraints, RandomSource random) {
+				int dimensions = maxConstraints.length;
+				if (dimensions > SOBOL_DIRECTIONS.length + 1)
+					throw new IllegalArgumentException("sobol initialisation supports up to " + (SOBOL_DIRECTIONS.length + 1) + " dimensions");
+
+				int[][] directions = new int[dimensions][];
+				int[] points = new int[dimensions];
+				for (int d = 0; d < dimensions; d++) {
+					directions[d] = sobolDirections(d);
+					points[d] = (int) random.nextLong();
+				}
+				for (int p = 0; p < particleCount; p++) {
+					//gray code order, each point differs from the last by the direction number of the lowest zero bit of its index
+					int bit = Integer.numberOfTrailingZeros(~p);
+					for (int d = 0; d < dimensions; d++) {
+						points[d] ^= directions[d][bit];
+						double unit = (points[d] & 0xffffffffL) * 0x1.0p-32;
+						positions[p * dimensions + d] = minConstraints[d] + unit * (maxConstraints[d] - minConstraints[d]);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * opposition based initialisation, draws the positions with another initialiser, scores them along with their
+	 * opposites across the centre of the search space, and keeps the best half. costs twice the evaluations
+	 *
+	 * @param base the initialiser to draw the first half with
+	 */
+	public static Initialiser opposition(Initialiser base) {
+		return new Initialiser() {
+			@Override
+			protected void fill(double[] positions, int particleCount, double[] minConstraints, double[] maxConstraints, RandomSource random) {
+				base.fill(positions, particleCount, minConstraints, maxConstraints, random);
+			}
+
+			@Override
+			int initialise(SwarmState state, ObjectiveFunction objectiveFunction, RandomSource random) {
+				int particleCount = state.particleCount;
+				int dimensions = state.dimensions;
+				double[] candidates = new double[2 * particleCount * dimensions];
+				base.fill(candidates, particleCount, state.minConstraints, state.maxConstraints, random);
+				for (int i = 0; i < particleCount * dimensions; i++) {
+					int d = i % dimensions;
+					candidates[particleCount * dimensions + i] = state.minConstraints[d] + state.maxConstraints[d] - candidates[i];
+				}
+				double[] fitnesses = new double[2 * particleCount];
+				objectiveFunction.getFitnesses(candidates, dimensions, 0, 2 * particleCount, fitnesses);
+
+				int[] order = IntStream.range(0, 2 * particleCount).boxed()
+						.sorted((a, b) -> objectiveFunction.compareFitnesses(fitnesses[b], fitnesses[a]))
+						.mapToInt(Integer::intValue).toArray();
+				for (int p = 0; p < particleCount; p++) {
+					System.arraycopy(candidates, order[p] * dimensions, state.positions, p * dimensions, dimensions);
+					state.fitnesses[p] = fitnesses[order[p]];
+				}
+				return 2 * particleCount;
+			}
+		};
+	}
+
+	/**
+	 * start some particles at given positions, such as the best positions of a previous run, and the rest from another
+	 * initialiser. positions outside the constraints are clamped to them, and any beyond the swarm size are ignored
+	 *
+	 * @param warmPositions the positions to start from
+	 * @param rest          the initialiser for the particles not given a position
+	 */
+	public static Initialiser warmStart(double[][] warmPositions, Initialiser rest) {
+		return new Initialiser() {
+			@Override
+			protected void fill(double[] positions, int particleCount, double[] minConstraints, double[] maxConstraints, RandomSource random) {
+				int dimensions = maxConstraints.length;
+				int warm = Math.min(warmPositions.length, particleCount);
+				double[] others = new double[(particleCount - warm) * dimensions];
+				rest.fill(others, particleCount - warm, minConstraints, maxConstraints, random);
+				System.arraycopy(others, 0, positions, warm * dimensions, others.length);
+				for (int p = 0; p < warm; p++) {
+					if (warmPositions[p].length != dimensions)
+						throw new IllegalArgumentException("warm start position " + p + " has " + warmPositions[p].length + " dimensions, not " + dimensions);
+					for (int d = 0; d < dimensions; d++) {
+						positions[p * dimensions + d] = Math.max(minConstraints[d], Math.min(maxConstraints[d], warmPositions[p][d]));
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * the radical inverse of an index in a base, its digits mirrored about the radix point
+	 */
+	static double radicalInverse(long index, int base) {
+		double inverse = 0;
+		double scale = 1.0 / base;
+		while (index > 0) {
+			inverse += (index % base) * scale;
+			index /= base;
+			scale /= base;
+		}
+		return inverse;
+	}
+
+	/**
+	 * the first count primes
+	 */
+	static int[] primes(int count) {
+		int[] primes = new int[count];
+		int found = 0;
+		for (int candidate = 2; found < count; candidate++) {
+			boolean prime = true;
+			for (int i = 0; i < found && primes[i] * primes[i] <= candidate; i++) {
+				if (candidate % primes[i] == 0) {
+					prime = false;
+					break;
+				}
+			}
+			if (prime)
+				primes[found++] = candidate;
+		}
+		return primes;
+	}
+
+	/**
+	 * the 32 direction numbers of a dimension of the sobol sequence, as the top bits of an int
+	 *
+	 * @param dimension the dimension, counting from 0
+	 */
+	static int[] sobolDirections(int dimension) {
+		int[] directions = new int[32];
+		if (dimension == 0) {
+			for (int k = 0; k < 32; k++) {
+				directions[k] = 1 << (31 - k);
+			}
+			return directions;
+		}
+		int[] row = SOBOL_DIRECTIONS[dimension - 1];
+		int degree = row[0];
+		int coefficients = row[1];
+		for (int k = 0; k < degree && k < 32; k++) {
+			directions[k] = row[2 + k] << (31 - k);
+		}
+		for (int k = degree; k < 32; k++) {
+			int direction = directions[k - degree] ^ (directions[k - degree] >>> degree);
+			for (int i = 1; i < degree; i++) {
+				if (((coefficients >>> (degree - 1 - i)) & 1) == 1)
+					direction ^= directions[k - i];
+			}
+			directions[k] = direction;
+		}
+		return directions;
+	}
+
+	/**
+	 * the joe and kuo direction numbers for dimensions 2 to 21, each row holding the degree s of the primitive polynomial,
+	 * its coefficients a, and the initial direction numbers m1 to ms
+	 */
+	private static final int[][] SOBOL_DIRECTIONS = {
+			{1, 0, 1},
+			{2, 1, 1, 3},
+			{3, 1, 1, 3, 1},
+			{3, 2, 1, 1, 1},
+			{4, 1, 1, 1, 3, 3},
+			{4, 4, 1, 3, 5, 13},
+			{5, 2, 1, 1, 5, 5, 17},
+			{5, 4, 1, 1, 5, 5, 5},
+			{5, 7, 1, 1, 7, 11, 19},
+			{5, 11, 1, 1, 5, 1, 1},
+			{5, 13, 1, 1, 1, 3, 11},
+			{5, 14, 1, 3, 5, 5, 31},
+			{6, 1, 1, 3, 3, 9, 7, 49},
+			{6, 13, 1, 1, 1, 15, 21, 21},
+			{6, 16, 1, 3, 1, 13, 27, 49},
+			{6, 19, 1, 1, 1, 15, 7, 5},
+			{6, 22, 1, 3, 1, 15, 13, 25},
+			{6, 25, 1, 1, 5, 5, 19, 61},
+			{7, 1, 1, 3, 7, 11, 23, 15, 103},
+			{7, 4, 1, 3, 7, 13, 13, 15, 69}
+	};
+}
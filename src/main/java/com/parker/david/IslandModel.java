@@ -0,0 +1,496 @@
+package com.parker.david;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * runs several swarms on the same problem in separate worker processes, the islands, which every so often send their best
+ * particles to the next island in a ring. the coordinator here starts the workers, passes migrants between them over a
+ * loopback socket and keeps the global best. each island migrates on its own schedule and is sent whatever its neighbour
+ * last sent, so no island waits for another, and an island that crashes is skipped over while the rest carry on.
+ * <p>
+ * the messages are big endian. a worker opens with its island number and dimensions as ints, then sends either migrants
+ * or, once its swarm has stopped, its final best. both hold a type int, the iterations and evaluations as longs, a count
+ * and that many particles, each a fitness followed by a position, ordered best first. the coordinator answers each set of
+ * migrants with either migrants for the island in the same layout after the type, or a request to stop.
+ * a connection for an island that does not exist or is already connected is turned away, and an island that goes silent
+ * for longer than the read timeout or sends more particles than it has is treated as crashed
+ */
+public class IslandModel {
+	/**
+	 * a message type, particles sent to or from an island
+	 */
+	static final int MIGRANTS = 1;
+
+	/**
+	 * a message type, the final best of an island whose swarm has stopped
+	 */
+	static final int DONE = 2;
+
+	/**
+	 * a message type, the coordinator asking an island to stop
+	 */
+	static final int STOP = 3;
+
+	/**
+	 * how long to wait for the workers to connect before treating the rest as crashed
+	 */
+	private static final int CONNECT_TIMEOUT_MILLIS = 60000;
+
+	/**
+	 * how long the workers may take to exit once every island has stopped, before they are killed
+	 */
+	private static final long EXIT_TIMEOUT_MILLIS = 10000;
+
+	/**
+	 * the default for how long an island may go without sending anything before it is treated as crashed
+	 */
+	private static final int DEFAULT_READ_TIMEOUT_MILLIS = 600000;
+
+	/**
+	 * the name of the standard objective function the islands optimise, resolved in every worker
+	 */
+	private final String objectiveName;
+
+	/**
+	 * the objective function, used here to compare the islands' bests
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * the number of dimensions of the problem
+	 */
+	private final int dimensions;
+
+	/**
+	 * the number of islands
+	 */
+	private final int islands;
+
+	/**
+	 * the number of particles in each island's swarm
+	 */
+	private final int particleCount;
+
+	private double weight = 0.7;
+	private double cPersonal = 1.5;
+	private double cNeighbour = 1.5;
+	private double initialVelocityFactor = 0.3;
+	private int migrationInterval = 50;
+	private int migrationSize = 2;
+	private MigrationPolicy migrationPolicy = MigrationPolicy.ReplaceWorst;
+	private int maxIterationsWithoutImprovement = 500;
+	private long maxEvaluations;
+	private long timeoutMillis;
+	private long seed = ThreadLocalRandom.current().nextLong();
+	private int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+	private List<String> workerJvmOptions = new ArrayList<>();
+
+	/**
+	 * the latest migrants sent by each island, and a count of how many sets it has sent
+	 */
+	private final double[][] emigrants;
+	private final long[] emigrations;
+
+	/**
+	 * for each island, the number of sets of migrants it had sent from its neighbour when last sent any
+	 */
+	private final long[] immigrations;
+
+	/**
+	 * whether each island has connected, and whether it is still running
+	 */
+	private final boolean[] connected;
+	private final boolean[] alive;
+
+	/**
+	 * the number of islands that stopped without sending their final best
+	 */
+	private int crashedIslands;
+
+	private double[] bestPosition;
+	private double bestFitness;
+
+	/**
+	 * set to ask every island to stop at its next migration
+	 */
+	private volatile boolean cancelled;
+
+	/**
+	 * the end of the run in nanoseconds, only used if there is a timeout
+	 */
+	private long deadline;
+
+	/**
+	 * constructor
+	 *
+	 * @param objectiveName the name of the standard objective function to optimise, see StandardObjectives.byName
+	 * @param dimensions    the number of dimensions of the problem
+	 * @param islands       the number of islands, each a worker process
+	 * @param particleCount the number of particles in each island's swarm
+	 */
+	public IslandModel(String objectiveName, int dimensions, int islands, int particleCount) {
+		this.objectiveName = objectiveName;
+		this.objectiveFunction = StandardObjectives.byName(objectiveName);
+		this.dimensions = dimensions;
+		this.islands = islands;
+		this.particleCount = particleCount;
+		this.emigrants = new double[islands][];
+		this.emigrations = new long[islands];
+		this.immigrations = new long[islands];
+		this.connected = new boolean[islands];
+		this.alive = new boolean[islands];
+	}
+
+	/**
+	 * set the search parameters of every island's swarm
+	 *
+	 * @param weight                the coefficient for the weight of the current velocity
+	 * @param cPersonal             the coefficient for the best personal position
+	 * @param cNeighbour            the coefficient for the best neighbourhood position
+	 * @param initialVelocityFactor factor of the range of the search space that the initial velocity may be initialised to
+	 */
+	public void setCoefficients(double weight, double cPersonal, double cNeighbour, double initialVelocityFactor) {
+		this.weight = weight;
+		this.cPersonal = cPersonal;
+		this.cNeighbour = cNeighbour;
+		this.initialVelocityFactor = initialVelocityFactor;
+	}
+
+	/**
+	 * set how the islands exchange particles
+	 *
+	 * @param interval the number of update cycles an island runs between migrations
+	 * @param size     the number of its best particles an island sends at each migration, less than the particles per island
+	 * @param policy   which particles of the receiving island the migrants replace
+	 */
+	public void setMigration(int interval, int size, MigrationPolicy policy) {
+		if (size < 0 || size >= particleCount)
+			throw new IllegalArgumentException("the migration size must be at least 0 and less than the " + particleCount + " particles per island, an island never gives up its best");
+		this.migrationInterval = interval;
+		this.migrationSize = size;
+		this.migrationPolicy = policy;
+	}
+
+	/**
+	 * set when the islands stop, each stops on whichever of its limits it reaches first
+	 *
+	 * @param maxIterationsWithoutImprovement the number of update cycles an island may run without improving its best
+	 * @param maxEvaluations                  the most positions each island may score, 0 for no limit
+	 * @param timeoutMillis                   the longest the whole run may take in milliseconds, 0 for no limit
+	 */
+	public void setBudget(int maxIterationsWithoutImprovement, long maxEvaluations, long timeoutMillis) {
+		this.maxIterationsWithoutImprovement = maxIterationsWithoutImprovement;
+		this.maxEvaluations = maxEvaluations;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * set the master seed of the run, each island seeds its swarm and its choice of replaced particles with its own seed
+	 * derived from this one. migrants still arrive in whatever order the islands reach their migrations, so only the
+	 * islands' own searches are reproducible, not the whole run
+	 *
+	 * @param seed the master seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * set how long an island may go without sending anything before it is treated as crashed. an island sends at every
+	 * migration, so this must be longer than it takes to run migrationInterval update cycles
+	 *
+	 * @param readTimeoutMillis the timeout in milliseconds, at least 1
+	 */
+	public void setReadTimeout(int readTimeoutMillis) {
+		if (readTimeoutMillis < 1)
+			throw new IllegalArgumentException("the read timeout must be at least 1 millisecond");
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+	/**
+	 * set extra options for the worker jvms, such as a heap size
+	 *
+	 * @param options the options
+	 */
+	public void setWorkerJvmOptions(String... options) {
+		this.workerJvmOptions = Arrays.asList(options);
+	}
+
+	/**
+	 * ask every island to stop at its next migration, may be called from any thread
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * start the workers, pass migrants between them until every island has stopped or crashed, and collect the global best
+	 */
+	public void run() throws IOException, InterruptedException {
+		deadline = System.nanoTime() + timeoutMillis * 1000000L;
+		try (ServerSocket server = new ServerSocket(0, islands, InetAddress.getLoopbackAddress())) {
+			List<Process> workers = new ArrayList<>();
+			try {
+				for (int island = 0; island < islands; island++) {
+					workers.add(startWorker(island, server.getLocalPort()));
+				}
+
+				//serve each worker on a thread of its own as it connects, turning away connections that are not a new island
+				List<Thread> handlers = new ArrayList<>();
+				long connectDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONNECT_TIMEOUT_MILLIS);
+				for (int admitted = 0; admitted < islands; ) {
+					Socket socket;
+					int island;
+					try {
+						server.setSoTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(connectDeadline - System.nanoTime())));
+						socket = server.accept();
+					} catch (SocketTimeoutException e) {
+						synchronized (this) {
+							crashedIslands += islands - admitted;
+						}
+						System.err.println((islands - admitted) + " islands never connected");
+						break;
+					}
+					try {
+						island = admit(socket);
+					} catch (IOException e) {
+						System.err.println("turned away a connection: " + e.getMessage());
+						socket.close();
+						continue;
+					}
+					admitted++;
+					Thread handler = new Thread(() -> serve(socket, island), "island-coordinator-" + island);
+					handler.start();
+					handlers.add(handler);
+				}
+				for (Thread handler : handlers) {
+					handler.join();
+				}
+				//a worker that connected too late, or hangs on the way out, must not hold up the run
+				long exitDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(EXIT_TIMEOUT_MILLIS);
+				for (Process worker : workers) {
+					if (!worker.waitFor(Math.max(0, exitDeadline - System.nanoTime()), TimeUnit.NANOSECONDS))
+						worker.destroyForcibly();
+				}
+			} finally {
+				for (Process worker : workers) {
+					worker.destroyForcibly();
+				}
+			}
+		}
+	}
+
+	/**
+	 * start a worker process for an island
+	 */
+	private Process startWorker(int island, int port) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(workerJvmOptions);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(IslandWorker.class.getName());
+		for (Object argument : new Object[]{port, island, objectiveName, dimensions, particleCount, weight, cPersonal, cNeighbour,
+				initialVelocityFactor, migrationInterval, migrationSize, migrationPolicy, maxIterationsWithoutImprovement, maxEvaluations, timeoutMillis, seed}) {
+			command.add(argument.toString());
+		}
+		return new ProcessBuilder(command).inheritIO().start();
+	}
+
+	/**
+	 * read the opening of a connection, and take it as the connection of the island it names if that island exists, has
+	 * not connected before and has the right number of dimensions. sets the read timeout on the connection
+	 *
+	 * @param socket the connection
+	 * @return the island
+	 * @throws IOException if the connection fails, or is not a new island
+	 */
+	int admit(Socket socket) throws IOException {
+		socket.setSoTimeout(readTimeoutMillis);
+		//unbuffered so that nothing past the opening is read here
+		DataInputStream input = new DataInputStream(socket.getInputStream());
+		int island = input.readInt();
+		int islandDimensions = input.readInt();
+		if (island < 0 || island >= islands)
+			throw new IOException("there is no island " + island + " of " + islands);
+		if (islandDimensions != dimensions)
+			throw new IOException("island " + island + " has " + islandDimensions + " dimensions rather than " + dimensions);
+		synchronized (this) {
+			if (connected[island])
+				throw new IOException("island " + island + " is already connected");
+			connected[island] = true;
+			alive[island] = true;
+		}
+		return island;
+	}
+
+	/**
+	 * talk to one admitted worker until its island stops or the connection fails or times out
+	 *
+	 * @param socket the connection
+	 * @param island the island, as returned by admit
+	 */
+	void serve(Socket socket, int island) {
+		boolean done = false;
+		try (Socket connection = socket;
+			 DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+			 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+			while (!done) {
+				int type = input.readInt();
+				if (type != MIGRANTS && type != DONE)
+					throw new IOException("unknown message type " + type);
+				input.readLong();
+				input.readLong();
+				int count = input.readInt();
+				double[] particles = readParticles(input, count);
+				double[] immigrants;
+				boolean stop;
+				synchronized (this) {
+					if (count > 0)
+						offerBest(particles);
+					if (type == DONE) {
+						done = true;
+						alive[island] = false;
+						break;
+					}
+					emigrants[island] = particles;
+					emigrations[island]++;
+					stop = cancelled || (timeoutMillis > 0 && System.nanoTime() - deadline >= 0);
+					immigrants = stop ? null : takeImmigrants(island);
+				}
+
+				//the migrant arrays are replaced rather than written to, so they can be sent without holding the lock
+				if (stop) {
+					output.writeInt(STOP);
+				} else {
+					output.writeInt(MIGRANTS);
+					output.writeLong(0);
+					output.writeLong(0);
+					output.writeInt(immigrants.length / (1 + dimensions));
+					for (double value : immigrants) {
+						output.writeDouble(value);
+					}
+				}
+				output.flush();
+			}
+		} catch (IOException e) {
+			System.err.println("island " + island + " failed: " + e);
+		} finally {
+			if (!done) {
+				synchronized (this) {
+					crashedIslands++;
+					alive[island] = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * read a number of particles, each a fitness followed by a position
+	 *
+	 * @throws IOException if the count is negative or more than an island has particles
+	 */
+	double[] readParticles(DataInputStream input, int count) throws IOException {
+		if (count < 0 || count > particleCount)
+			throw new IOException(count + " particles sent from an island of " + particleCount);
+		double[] particles = new double[count * (1 + dimensions)];
+		for (int i = 0; i < particles.length; i++) {
+			particles[i] = input.readDouble();
+		}
+		return particles;
+	}
+
+	/**
+	 * get the migrants for an island, the latest sent by the nearest running island before it in the ring if it has not
+	 * already been sent them, otherwise none
+	 */
+	private double[] takeImmigrants(int island) {
+		for (int step = 1; step < islands; step++) {
+			int source = Math.floorMod(island - step, islands);
+			if (alive[source] && emigrations[source] > 0) {
+				if (immigrations[island] == emigrations[source])
+					break;
+				immigrations[island] = emigrations[source];
+				return emigrants[source];
+			}
+		}
+		return new double[0];
+	}
+
+	/**
+	 * take the first of a set of particles as the global best if it is better
+	 */
+	private void offerBest(double[] particles) {
+		if (bestPosition == null || objectiveFunction.compareFitnesses(particles[0], bestFitness) == 1) {
+			bestFitness = particles[0];
+			bestPosition = Arrays.copyOfRange(particles, 1, 1 + dimensions);
+		}
+	}
+
+	/**
+	 * get the best fitness any island has reported
+	 */
+	public synchronized double getBestFitness() {
+		return bestFitness;
+	}
+
+	/**
+	 * get a copy of the best position any island has reported, null if none has
+	 */
+	public synchronized double[] getBestPositionArray() {
+		return bestPosition == null ? null : bestPosition.clone();
+	}
+
+	/**
+	 * get the number of islands that stopped without reporting their final best
+	 */
+	public synchronized int getCrashedIslands() {
+		return crashedIslands;
+	}
+
+	/**
+	 * the entry point for running an island model from the command line
+	 * usage: IslandModel objective dimensions islands particles [migration-interval migration-size policy]
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length != 4 && args.length != 7) {
+			System.err.println("usage: IslandModel objective dimensions islands particles [migration-interval migration-size (ReplaceWorst | ReplaceRandom)]");
+			System.exit(1);
+		}
+		IslandModel model = new IslandModel(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+		if (args.length == 7)
+			model.setMigration(Integer.parseInt(args[4]), Integer.parseInt(args[5]), MigrationPolicy.valueOf(args[6]));
+		model.run();
+		System.out.println("best fitness = " + model.getBestFitness());
+		System.out.println("best position = " + Arrays.toString(model.getBestPositionArray()));
+		System.out.println("crashed islands = " + model.getCrashedIslands());
+	}
+
+	/**
+	 * which particles of an island the migrants it receives replace
+	 */
+	public enum MigrationPolicy {
+		/**
+		 * the particles with the worst personal bests
+		 */
+		ReplaceWorst,
+		/**
+		 * particles chosen at random, other than the island's best
+		 */
+		ReplaceRandom
+	}
+}
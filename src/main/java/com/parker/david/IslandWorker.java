@@ -0,0 +1,135 @@
+package com.parker.david;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the worker process of an island model, runs one island's swarm and migrates through the coordinator.
+ * started by IslandModel, which passes the whole configuration on the command line
+ */
+public class IslandWorker {
+
+	/**
+	 * the entry point
+	 * usage: IslandWorker port island objective dimensions particles w c1 c2 velocity-factor migration-interval
+	 * migration-size policy max-iterations-without-improvement max-evaluations timeout-millis seed
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = Integer.parseInt(args[0]);
+		int island = Integer.parseInt(args[1]);
+		StandardObjectives.TestFunction objectiveFunction = StandardObjectives.byName(args[2]);
+		int dimensions = Integer.parseInt(args[3]);
+		int particleCount = Integer.parseInt(args[4]);
+		double weight = Double.parseDouble(args[5]);
+		double cPersonal = Double.parseDouble(args[6]);
+		double cNeighbour = Double.parseDouble(args[7]);
+		double initialVelocityFactor = Double.parseDouble(args[8]);
+		int migrationInterval = Integer.parseInt(args[9]);
+		int migrationSize = Math.min(Integer.parseInt(args[10]), particleCount - 1);
+		IslandModel.MigrationPolicy policy = IslandModel.MigrationPolicy.valueOf(args[11]);
+		int maxIterationsWithoutImprovement = Integer.parseInt(args[12]);
+		long maxEvaluations = Long.parseLong(args[13]);
+		long timeoutMillis = Long.parseLong(args[14]);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		RandomSource random = new RandomSource(RandomSource.derive(Long.parseLong(args[15]), island));
+
+		Swarm swarm = new Swarm(objectiveFunction, particleCount, cNeighbour, cPersonal, weight,
+				objectiveFunction.minConstraints(dimensions), objectiveFunction.maxConstraints(dimensions), initialVelocityFactor, Initialiser.uniform(), random.split());
+
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			 DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+			output.writeInt(island);
+			output.writeInt(dimensions);
+
+			//run until the next migration, then swap migrants, until one of the island's own limits fires or the coordinator says stop
+			StoppingCriterion migration;
+			do {
+				migration = StoppingCriterion.maxIterations(swarm.getIterations() + migrationInterval);
+				ArrayList<StoppingCriterion> criteria = new ArrayList<>();
+				criteria.add(migration);
+				criteria.add(StoppingCriterion.maxIterationsWithoutImprovement(maxIterationsWithoutImprovement));
+				if (maxEvaluations > 0)
+					criteria.add(StoppingCriterion.maxEvaluations(maxEvaluations));
+				if (timeoutMillis > 0)
+					criteria.add(StoppingCriterion.deadline(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+				if (swarm.optimise(criteria.toArray(new StoppingCriterion[0])) != migration)
+					break;
+
+				int[] ranking = swarm.rankParticles();
+				writeParticles(output, IslandModel.MIGRANTS, swarm, ranking, migrationSize);
+				output.flush();
+				if (input.readInt() == IslandModel.STOP)
+					break;
+				input.readLong();
+				input.readLong();
+				//read every migrant sent so the stream stays in step, but never replace the island's best
+				int sent = input.readInt();
+				int count = Math.min(sent, particleCount - 1);
+				double[] positions = new double[sent * dimensions];
+				double[] fitnesses = new double[sent];
+				for (int i = 0; i < sent; i++) {
+					fitnesses[i] = input.readDouble();
+					for (int d = 0; d < dimensions; d++) {
+						positions[i * dimensions + d] = input.readDouble();
+					}
+				}
+				swarm.replaceParticles(replaced(ranking, count, policy, random), positions, fitnesses, count);
+			} while (true);
+
+			writeParticles(output, IslandModel.DONE, swarm, swarm.rankParticles(), 1);
+			output.flush();
+		}
+	}
+
+	/**
+	 * write a message holding an island's best particles
+	 */
+	private static void writeParticles(DataOutputStream output, int type, Swarm swarm, int[] ranking, int count) throws IOException {
+		output.writeInt(type);
+		output.writeLong(swarm.getIterations());
+		output.writeLong(swarm.getEvaluations());
+		output.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			Particle particle = swarm.getParticle(ranking[i]);
+			output.writeDouble(particle.getBestFitness());
+			for (double value : particle.getBestPositionArray()) {
+				output.writeDouble(value);
+			}
+		}
+	}
+
+	/**
+	 * choose the particles that migrants replace, never the island's best
+	 *
+	 * @param ranking the particles ordered from best to worst
+	 * @param count   the number of migrants
+	 * @param policy  how to choose
+	 * @param random  the island's random numbers
+	 */
+	private static int[] replaced(int[] ranking, int count, IslandModel.MigrationPolicy policy, RandomSource random) {
+		int[] replaced = new int[count];
+		if (policy == IslandModel.MigrationPolicy.ReplaceWorst) {
+			System.arraycopy(ranking, ranking.length - count, replaced, 0, count);
+		} else {
+			//a partial shuffle of everything but the best
+			int[] candidates = Arrays.copyOfRange(ranking, 1, ranking.length);
+			for (int i = 0; i < count; i++) {
+				int j = i + random.nextInt(candidates.length - i);
+				int swap = candidates[i];
+				candidates[i] = candidates[j];
+				candidates[j] = swap;
+				replaced[i] = candidates[i];
+			}
+		}
+		return replaced;
+	}
+}
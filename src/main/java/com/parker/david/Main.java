@@ -2,15 +2,13 @@ package com.parker.david;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
-import static java.lang.Math.*;
-
 /**
  * program entry point function
  */
@@ -26,60 +24,54 @@ public class Main {
 		SearchMeta meta = new SearchMeta();
 
 		//create the low level objective function, that contains the mathematical representation of the function we wish to optimise.
-		//expects 2 parameters, x and y
-		ObjectiveFunction lowLevelObjective = new ObjectiveFunction(ObjectiveFunction.Type.Minimisation) {
-			@Override
-			public double getFitness(ArrayList<Double> parameters) {
-				double x = parameters.get(0);
-				double y = parameters.get(1);
-				return -(y + 47) * sin(sqrt(abs(y + x / 2.0 + 47))) - x * sin(sqrt(abs(x - (y + 47))));
-			}
-		};
+		//the eggholder function expects 2 parameters, x and y. a definition file given on the command line replaces it
+		ObjectiveFunction lowLevelObjective = new StandardObjectives.Eggholder();
+		double[] lowLevelMinConstraints = {-512.0, -512.0};
+		double[] lowLevelMaxConstraints = {+512.0, +512.0};
+		if (args.length > 0) {
+			ExpressionObjective expressionObjective = ExpressionObjective.load(Paths.get(args[0]));
+			if (expressionObjective.getMinConstraints() == null)
+				throw new IllegalArgumentException(args[0] + " must give the search space as min and max");
+			lowLevelObjective = expressionObjective;
+			lowLevelMinConstraints = expressionObjective.getMinConstraints();
+			lowLevelMaxConstraints = expressionObjective.getMaxConstraints();
+		}
 
 		//create the high level objective function, the high level objective function creates a low level swarm and optimises it
 		//the optimal fitness from the low level swarm is thus the fitness for that set of parameters. Parameters that this
-		//objective functions expects are the w, c1, c2, and max iterations
-		ObjectiveFunction highLeveObjective = new ObjectiveFunction(ObjectiveFunction.Type.Minimisation) {
-
-			@Override
-			public double getFitness(ArrayList<Double> parameters) {
-				ArrayList<Double> minConstraints = new ArrayList<>(Arrays.asList(-512.0, -512.0));
-				ArrayList<Double> maxConstraints = new ArrayList<>(Arrays.asList(+512.0, +512.0));
-
-				//get the parameters for this swarm
-				double weight = parameters.get(0);
-				double cPersonal = parameters.get(1);
-				double cNeighbour = parameters.get(2);
-				Double completionIterations = parameters.get(3);
-
-				//create and optimise the low level swarm
-				Swarm lowLevelSwarm = new Swarm(lowLevelObjective, 50, cNeighbour, cPersonal, weight, minConstraints, maxConstraints, 0.3);
-				lowLevelSwarm.optimise(completionIterations.intValue());
-
-				//if we observe an improvement in the swarm, save the swarm
-				if (meta.bestLowLevelSwarm == null ||
-						lowLevelObjective.compareFitnesses(lowLevelSwarm.getBestFitness(), meta.bestLowLevelSwarm.getBestFitness()) == 1) {
-					meta.bestLowLevelSwarm = lowLevelSwarm;
-				}
-
-				return lowLevelSwarm.getBestFitness();
-			}
-		};
+		//objective functions expects are the w, c1, c2, and max iterations. the whole search is capped at one thread per core
+		SwarmTuner tuner = new SwarmTuner(lowLevelObjective, 50, lowLevelMinConstraints, lowLevelMaxConstraints, 0.3, Runtime.getRuntime().availableProcessors());
 
 		// set the constraints on the meta parameters for the low level search
-		ArrayList<Double> minConstraints = new ArrayList<>(Arrays.asList(-50.0, -10.0, -10.0, 1.0));
-		ArrayList<Double> maxConstraints = new ArrayList<>(Arrays.asList(+50.0, +10.0, +10.0, 100.0));
-
-		//create and optimise the high level swarm
-		Swarm highLevelSwarm = new Swarm(highLeveObjective, 10, 1, 1, 1, minConstraints, maxConstraints, 1);
-		highLevelSwarm.optimise(25);
+		double[] minConstraints = {-50.0, -10.0, -10.0, 1.0};
+		double[] maxConstraints = {+50.0, +10.0, +10.0, 100.0};
+
+		//create and optimise the high level swarm, evaluating its particles concurrently. the cost of a low level swarm varies
+		//a lot with its parameters, so the high level swarm runs in steady state rather than waiting on the slowest each cycle
+		tuner.setHighLevelSteadyState(Runtime.getRuntime().availableProcessors());
+
+		//with only 10 high level particles, a sobol spread covers the parameter space far more evenly than independent draws
+		tuner.setHighLevelInitialiser(Initialiser.sobol());
+
+		//-Dpso.race=<candidates> races that many candidates by successive halving instead of running the high level swarm,
+		//then runs the winner once more without a budget so there is a low level swarm to output
+		int raceCandidates = Integer.getInteger("pso.race", 0);
+		double[] results;
+		if (raceCandidates > 0) {
+			SwarmRace race = new SwarmRace(tuner, 0.5, 500, 2);
+			results = race.race(raceCandidates, minConstraints, maxConstraints, Initialiser.sobol(), ThreadLocalRandom.current().nextLong()).getParameters();
+			tuner.getFitness(results);
+		} else {
+			results = tuner.tune(10, minConstraints, maxConstraints, 1, 25).getBestPositionArray();
+		}
+		tuner.shutdown();
+		meta.bestLowLevelSwarm = tuner.getBestLowLevelSwarm();
 
 		//store the results
-		ArrayList<Double> results = highLevelSwarm.getBestPosition();
-		meta.w = results.get(0);
-		meta.c1 = results.get(1);
-		meta.c2 = results.get(2);
-		meta.lowLevelMaxIterationsWithoutImprovement = results.get(3);
+		meta.w = results[0];
+		meta.c1 = results[1];
+		meta.c2 = results[2];
+		meta.lowLevelMaxIterationsWithoutImprovement = results[3];
 
 		String date = ZonedDateTime.now(ZoneId.of("GMT+2")).format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
 
@@ -0,0 +1,77 @@
+package com.parker.david;
+
+/**
+ * the per dimension arithmetic of a particle's move, the new velocity from the inertia, personal and neighbourhood terms,
+ * the new position, and bouncing the position back into the search space.
+ * on a jvm with the incubating vector api, run with --add-modules jdk.incubator.vector, the vector kernel built from
+ * src/main/java-vector is used instead, which gives exactly the same results. set -Dpso.kernel=scalar to keep this one
+ */
+class MoveKernel {
+	/**
+	 * the kernel every particle moves with
+	 */
+	static final MoveKernel INSTANCE = load();
+
+	/**
+	 * move a particle, see Particle.move
+	 *
+	 * @param position            the block of positions
+	 * @param velocity            the block of velocities
+	 * @param bestPosition        the block of personal best positions
+	 * @param offset              the index of the particle's first dimension within the blocks
+	 * @param neighbourhoodBest   an array holding the best position in the particle's neighbourhood
+	 * @param neighbourhoodOffset the index of the first dimension of the neighbourhood best within that array
+	 * @param minConstraints      the constraint on the minimum values for each dimension
+	 * @param maxConstraints      the constraint on the maximum values for each dimension
+	 * @param dimensions          the number of dimensions
+	 * @param weight              search parameter w
+	 * @param rhoPersonal         the random factor of the personal term for this move
+	 * @param cPersonal           search parameter c1
+	 * @param rhoNeighbour        the random factor of the neighbourhood term for this move
+	 * @param cNeighbourhood      search parameter c2
+	 */
+	void move(double[] position, double[] velocity, double[] bestPosition, int offset, double[] neighbourhoodBest, int neighbourhoodOffset,
+			  double[] minConstraints, double[] maxConstraints, int dimensions, double weight, double rhoPersonal, double cPersonal, double rhoNeighbour, double cNeighbourhood) {
+		moveScalar(position, velocity, bestPosition, offset, neighbourhoodBest, neighbourhoodOffset, minConstraints, maxConstraints, 0, dimensions,
+				weight, rhoPersonal, cPersonal, rhoNeighbour, cNeighbourhood);
+	}
+
+	/**
+	 * move the dimensions [from, to) of a particle one at a time
+	 */
+	static void moveScalar(double[] position, double[] velocity, double[] bestPosition, int offset, double[] neighbourhoodBest, int neighbourhoodOffset,
+						   double[] minConstraints, double[] maxConstraints, int from, int to, double weight, double rhoPersonal, double cPersonal, double rhoNeighbour, double cNeighbourhood) {
+		for (int d = from; d < to; d++) {
+			int i = offset + d;
+
+			//find out a theoretical new velocity
+			double theoreticalNewVelocity = velocity[i] * weight + //velocity component
+					(bestPosition[i] - position[i]) * rhoPersonal * cPersonal + //personal best component
+					(neighbourhoodBest[neighbourhoodOffset + d] - position[i]) * rhoNeighbour * cNeighbourhood; //neighbourhood best component
+
+			//find out a theoretical position
+			double theoreticalNewPosition = position[i] + theoreticalNewVelocity;
+
+			//constrain the position to get the real new position
+			double realNewPosition = Utilities.constrainDouble(theoreticalNewPosition, minConstraints[d], maxConstraints[d]);
+
+			//find the velocity from old position to the new constrained position (thus the real velocity, not theoretical velocity)
+			velocity[i] = realNewPosition - position[i];
+			position[i] = realNewPosition;
+		}
+	}
+
+	/**
+	 * load the vector kernel if it was built and the jvm can run it, otherwise use this scalar one
+	 */
+	private static MoveKernel load() {
+		if ("scalar".equals(System.getProperty("pso.kernel")))
+			return new MoveKernel();
+		try {
+			return (MoveKernel) Class.forName("com.parker.david.VectorMoveKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			//not built, as on jdks before 17, or the jvm was started without the incubating vector module
+			return new MoveKernel();
+		}
+	}
+}
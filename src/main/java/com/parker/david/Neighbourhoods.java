@@ -0,0 +1,165 @@
+package com.parker.david;
+
+/**
+ * keeps track of the best informant of every particle in a swarm for a topology.
+ * personal bests only ever improve, so rather than rescanning every neighbourhood each update cycle, a particle that
+ * improves is offered to each of the particles it informs, which costs the number of those particles per improvement
+ */
+class Neighbourhoods {
+	/**
+	 * the topology the neighbourhoods are drawn from
+	 */
+	private final Topology topology;
+
+	/**
+	 * the state holding the personal bests of the particles
+	 */
+	private final SwarmState state;
+
+	/**
+	 * the objective function used to compare fitnesses
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * the swarm's stream of random numbers, for topologies that are drawn at random
+	 */
+	private final RandomSource random;
+
+	/**
+	 * for each particle, the particles that it informs
+	 */
+	private int[][] informed;
+
+	/**
+	 * for each particle, the index of the informant holding the best personal best
+	 */
+	private final int[] best;
+
+	/**
+	 * constructor, draws the neighbourhoods and finds the initial best of each
+	 *
+	 * @param topology          the topology the neighbourhoods are drawn from
+	 * @param state             the state holding the personal bests of the particles
+	 * @param objectiveFunction the objective function used to compare fitnesses
+	 * @param random            the swarm's stream of random numbers
+	 */
+	Neighbourhoods(Topology topology, SwarmState state, ObjectiveFunction objectiveFunction, RandomSource random) {
+		this.topology = topology;
+		this.state = state;
+		this.objectiveFunction = objectiveFunction;
+		this.random = random;
+		this.best = new int[state.particleCount];
+		rebuild();
+	}
+
+	/**
+	 * constructor, restores neighbourhoods that were drawn earlier rather than drawing them again
+	 *
+	 * @param topology          the topology the neighbourhoods were drawn from
+	 * @param state             the state holding the personal bests of the particles
+	 * @param objectiveFunction the objective function used to compare fitnesses
+	 * @param random            the swarm's stream of random numbers
+	 * @param informed          for each particle, the particles that it informs
+	 * @param best              for each particle, the index of its best informant
+	 */
+	Neighbourhoods(Topology topology, SwarmState state, ObjectiveFunction objectiveFunction, RandomSource random, int[][] informed, int[] best) {
+		this.topology = topology;
+		this.state = state;
+		this.objectiveFunction = objectiveFunction;
+		this.random = random;
+		this.informed = informed;
+		this.best = best;
+	}
+
+	/**
+	 * draw the neighbourhoods from the topology again, and rescan each for its best informant
+	 */
+	synchronized void rebuild() {
+		int particleCount = state.particleCount;
+		int[][] informants = topology.informants(particleCount, random);
+		if (informants.length != particleCount)
+			throw new IllegalStateException("the topology gave informants for " + informants.length + " of " + particleCount + " particles");
+		for (int[] particleInformants : informants) {
+			for (int informant : particleInformants) {
+				if (informant < 0 || informant >= particleCount)
+					throw new IllegalStateException("the topology gave informant " + informant + " in a swarm of " + particleCount);
+			}
+		}
+
+		//invert who informs each particle into who each particle informs, always including the particle itself
+		int[] counts = new int[particleCount];
+		for (int i = 0; i < particleCount; i++) {
+			counts[i]++;
+			for (int informant : informants[i]) {
+				if (informant != i)
+					counts[informant]++;
+			}
+		}
+		int[][] newInformed = new int[particleCount][];
+		for (int i = 0; i < particleCount; i++) {
+			newInformed[i] = new int[counts[i]];
+			counts[i] = 0;
+		}
+		for (int i = 0; i < particleCount; i++) {
+			newInformed[i][counts[i]++] = i;
+			for (int informant : informants[i]) {
+				if (informant != i)
+					newInformed[informant][counts[informant]++] = i;
+			}
+		}
+		informed = newInformed;
+		rescan();
+	}
+
+	/**
+	 * find the best informant of each particle from scratch, needed when personal bests have been replaced rather than improved
+	 */
+	synchronized void rescan() {
+		for (int i = 0; i < state.particleCount; i++) {
+			best[i] = i;
+		}
+		for (int informant = 0; informant < state.particleCount; informant++) {
+			for (int informedParticle : informed[informant]) {
+				if (objectiveFunction.compareFitnesses(state.bestFitnesses[informant], state.bestFitnesses[best[informedParticle]]) == 1)
+					best[informedParticle] = informant;
+			}
+		}
+	}
+
+	/**
+	 * get the index of the informant holding the best personal best of a particle
+	 *
+	 * @param particle the index of the particle
+	 */
+	int best(int particle) {
+		return best[particle];
+	}
+
+	/**
+	 * get the particles each particle informs
+	 */
+	synchronized int[][] getInformed() {
+		return informed;
+	}
+
+	/**
+	 * get the index of the best informant of every particle
+	 */
+	synchronized int[] getBest() {
+		return best.clone();
+	}
+
+	/**
+	 * offer a particle's newly improved personal best to every particle it informs
+	 *
+	 * @param particle the index of the particle that improved
+	 */
+	synchronized void improved(int particle) {
+		double fitness = state.bestFitnesses[particle];
+		for (int informedParticle : informed[particle]) {
+			if (objectiveFunction.compareFitnesses(fitness, state.bestFitnesses[best[informedParticle]]) == 1)
+				best[informedParticle] = particle;
+		}
+	}
+}
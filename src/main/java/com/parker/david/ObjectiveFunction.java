@@ -7,11 +7,44 @@ public abstract class ObjectiveFunction {
 	public final Type objectiveType;
 
 	/**
-	 * get the fitness of a parameters, abstract so that this may be defined at runtime
+	 * get the fitness of a parameters. a subclass must override at least one of the two getFitness methods, each one
+	 * defaults to calling the other. the swarm calls this one, so override it to avoid boxing the parameters
 	 *
 	 * @param parameters the parameters for which the fitness is to be calculated
 	 */
-	abstract public double getFitness(ArrayList<Double> parameters);
+	public double getFitness(double[] parameters) {
+		return getFitness(Utilities.toList(parameters, 0, parameters.length));
+	}
+
+	/**
+	 * get the fitness of a list of parameters. a subclass must override at least one of the two getFitness methods, each
+	 * one defaults to calling the other, so objectives written against the list still work
+	 *
+	 * @param parameters the parameters for which the fitness is to be calculated
+	 */
+	public double getFitness(ArrayList<Double> parameters) {
+		return getFitness(Utilities.toArray(parameters));
+	}
+
+	/**
+	 * get the fitness of a population of points at once. a population is a matrix with a row per point, stored row after
+	 * row, so the parameters of point p are at [p * dimensions, (p + 1) * dimensions).
+	 * the default scores one point at a time, override this where the setup can be shared or the maths vectorised,
+	 * or to hand a whole generation to an external evaluator in a single call
+	 *
+	 * @param population the parameters of every point in the population
+	 * @param dimensions the number of parameters per point
+	 * @param from       the index of the first point to score
+	 * @param to         the index after the last point to score
+	 * @param fitnesses  the array to write the fitness of point p to, at index p
+	 */
+	public void getFitnesses(double[] population, int dimensions, int from, int to, double[] fitnesses) {
+		double[] parameters = new double[dimensions];
+		for (int point = from; point < to; point++) {
+			System.arraycopy(population, point * dimensions, parameters, 0, dimensions);
+			fitnesses[point] = getFitness(parameters);
+		}
+	}
 
 	/**
 	 * constructor
@@ -0,0 +1,405 @@
+package com.parker.david;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * a g best swarm whose particles live outside the java heap, in direct buffers or a memory mapped file, for populations
+ * too large for the heap or large enough that collecting them would dominate.
+ * the population is split into chunks of a cache friendly size. each update cycle copies one chunk at a time into a
+ * small on heap scratch state, moves it with the same kernel as the ordinary swarm, scores it as a batch and copies it
+ * back, so only one chunk per thread is ever on the heap. particles move against the global best from the start of the
+ * cycle, as in the synchronous update mode.
+ * <p>
+ * each chunk is stored as its positions, velocities and best positions, then its fitnesses and best fitnesses as
+ * doubles, then the state of each particle's random numbers as longs, in the platform's byte order
+ */
+public class OffHeapSwarm implements AutoCloseable {
+	/**
+	 * the size chunks are aimed at, small enough for a chunk and its scratch copy to stay in the core's cache
+	 */
+	static final int CHUNK_BYTES = 256 * 1024;
+
+	/**
+	 * the most bytes a single buffer holds, buffers are indexed by int
+	 */
+	private static final long SEGMENT_BYTES = 1L << 30;
+
+	private final ObjectiveFunction objectiveFunction;
+	private final int particleCount;
+	private final int dimensions;
+	private final double cPersonal;
+	private final double cNeighbour;
+	private final double weight;
+	private final double[] minConstraints;
+	private final double[] maxConstraints;
+
+	/**
+	 * the number of particles in every chunk but perhaps the last, and the number of chunks
+	 */
+	private final int chunkParticles;
+	private final int chunkCount;
+
+	/**
+	 * the size in bytes of a full chunk, and the number of chunks each segment holds
+	 */
+	private final long chunkBytes;
+	private final int chunksPerSegment;
+
+	/**
+	 * the buffers holding the chunks
+	 */
+	private final List<ByteBuffer> segments = new ArrayList<>();
+
+	/**
+	 * the backing file, null when the chunks are in direct buffers
+	 */
+	private final Path file;
+
+	/**
+	 * the executor update cycles run on, null for the common fork join pool
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * one scratch area per thread, grown to the parallelism of the executor
+	 */
+	private final List<Scratch> scratches = new ArrayList<>();
+
+	private double[] bestPosition;
+	private double bestFitness;
+	private int iterationsSinceImprovement;
+	private long iterations;
+	private long evaluations;
+
+	/**
+	 * constructor, lays out the population, draws the initial positions and velocities and scores them a chunk at a time
+	 *
+	 * @param objectiveFunction     the objective function that we use to find best values
+	 * @param particleCount         the number of particles that this swarm is to contain, at least 1
+	 * @param cNeighbour            the coefficient for the best solution in neighbour component of velocity updates
+	 * @param cPersonal             the coefficient for the best personal solution component of velocity updates
+	 * @param weight                the coefficient for the weight of the current velocity for velocity updates
+	 * @param minConstraints        the constraint on the minimum values for constraints
+	 * @param maxConstraints        the constrain on the maximum values for constraints, as many as the minimums and at least 1
+	 * @param initialVelocityFactor factor of the range of the search space that the initial velocity may be initialised to
+	 * @param file                  a file to memory map the population into, created or truncated, or null to use direct buffers.
+	 *                              direct buffers count against -XX:MaxDirectMemorySize, a mapped file only against the address space
+	 */
+	public OffHeapSwarm(ObjectiveFunction objectiveFunction, int particleCount, double cNeighbour, double cPersonal, double weight,
+						double[] minConstraints, double[] maxConstraints, double initialVelocityFactor, Path file) throws IOException {
+		this(objectiveFunction, particleCount, cNeighbour, cPersonal, weight, minConstraints, maxConstraints, initialVelocityFactor, file, ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * constructor, lays out the population, draws the initial positions and velocities and scores them a chunk at a time.
+	 * two swarms built with the same seed search identically, on any number of threads
+	 *
+	 * @param objectiveFunction     the objective function that we use to find best values
+	 * @param particleCount         the number of particles that this swarm is to contain, at least 1
+	 * @param cNeighbour            the coefficient for the best solution in neighbour component of velocity updates
+	 * @param cPersonal             the coefficient for the best personal solution component of velocity updates
+	 * @param weight                the coefficient for the weight of the current velocity for velocity updates
+	 * @param minConstraints        the constraint on the minimum values for constraints
+	 * @param maxConstraints        the constrain on the maximum values for constraints, as many as the minimums and at least 1
+	 * @param initialVelocityFactor factor of the range of the search space that the initial velocity may be initialised to
+	 * @param file                  a file to memory map the population into, created or truncated, or null to use direct buffers
+	 * @param seed                  the seed of the swarm's random numbers
+	 */
+	public OffHeapSwarm(ObjectiveFunction objectiveFunction, int particleCount, double cNeighbour, double cPersonal, double weight,
+						double[] minConstraints, double[] maxConstraints, double initialVelocityFactor, Path file, long seed) throws IOException {
+		if (particleCount < 1)
+			throw new IllegalArgumentException("a swarm needs at least one particle");
+		if (maxConstraints.length < 1 || minConstraints.length != maxConstraints.length)
+			throw new IllegalArgumentException("the constraints must give a minimum and a maximum for at least one dimension");
+		this.objectiveFunction = objectiveFunction;
+		this.particleCount = particleCount;
+		this.dimensions = maxConstraints.length;
+		this.cPersonal = cPersonal;
+		this.cNeighbour = cNeighbour;
+		this.weight = weight;
+		this.minConstraints = minConstraints.clone();
+		this.maxConstraints = maxConstraints.clone();
+		this.file = file;
+
+		long particleBytes = 8L * (3L * dimensions + 3);
+		this.chunkParticles = (int) Math.max(1, Math.min(particleCount, CHUNK_BYTES / particleBytes));
+		this.chunkCount = (particleCount + chunkParticles - 1) / chunkParticles;
+		this.chunkBytes = particleBytes * chunkParticles;
+		if (chunkBytes > SEGMENT_BYTES)
+			throw new IllegalArgumentException("a single particle of " + particleBytes + " bytes is too large");
+		this.chunksPerSegment = (int) (SEGMENT_BYTES / chunkBytes);
+		allocate();
+
+		//draw and score the initial population a chunk at a time
+		RandomSource random = new RandomSource(seed);
+		Scratch scratch = scratch(0);
+		for (int chunk = 0; chunk < chunkCount; chunk++) {
+			int count = chunkSize(chunk);
+			SwarmState state = scratch.state;
+			for (int i = 0; i < count * dimensions; i++) {
+				int d = i % dimensions;
+				state.positions[i] = random.nextDouble(minConstraints[d], maxConstraints[d]);
+				state.velocities[i] = random.nextDouble(minConstraints[d], maxConstraints[d]) * initialVelocityFactor;
+			}
+			objectiveFunction.getFitnesses(state.positions, dimensions, 0, count, state.fitnesses);
+			for (int i = 0; i < count; i++) {
+				scratch.particles[i].getRandom().setState(random.split().getState());
+				scratch.particles[i].reset(state.fitnesses[i]);
+				if (bestPosition == null || objectiveFunction.compareFitnesses(state.fitnesses[i], bestFitness) == 1) {
+					bestFitness = state.fitnesses[i];
+					bestPosition = new double[dimensions];
+					System.arraycopy(state.positions, state.offset(i), bestPosition, 0, dimensions);
+				}
+			}
+			store(chunk, scratch);
+		}
+		evaluations = particleCount;
+	}
+
+	/**
+	 * create the buffers, mapping the file in segments if there is one
+	 */
+	private void allocate() throws IOException {
+		long remaining = chunkBytes * (chunkCount - 1) + (8L * (3L * dimensions + 3)) * chunkSize(chunkCount - 1);
+		if (file == null) {
+			while (remaining > 0) {
+				long size = Math.min(remaining, chunkBytes * chunksPerSegment);
+				segments.add(ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder()));
+				remaining -= size;
+			}
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long position = 0;
+			while (remaining > 0) {
+				long size = Math.min(remaining, chunkBytes * chunksPerSegment);
+				segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position, size).order(ByteOrder.nativeOrder()));
+				position += size;
+				remaining -= size;
+			}
+		}
+	}
+
+	/**
+	 * set the executor that update cycles process chunks on
+	 *
+	 * @param executor the executor, or null for the common fork join pool
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * run a single update cycle, every chunk is moved and scored against the global best from the start of the cycle,
+	 * then the best of each thread is reduced into the global best
+	 */
+	void update() {
+		final double[] cycleBestPosition = bestPosition;
+		ExecutorService service = executor != null ? executor : ForkJoinPool.commonPool();
+		final int workers = Math.min(chunkCount, Swarm.parallelism(service));
+		for (int worker = 0; worker < workers; worker++) {
+			scratch(worker).improved = false;
+		}
+		ParallelLoop.forEach(service, workers, worker -> {
+			Scratch scratch = scratch(worker);
+			SwarmState state = scratch.state;
+			for (int chunk = (int) ((long) worker * chunkCount / workers); chunk < (long) (worker + 1) * chunkCount / workers; chunk++) {
+				int count = chunkSize(chunk);
+				load(chunk, scratch);
+				for (int i = 0; i < count; i++) {
+					scratch.particles[i].move(cycleBestPosition, 0);
+				}
+				objectiveFunction.getFitnesses(state.positions, dimensions, 0, count, state.fitnesses);
+				for (int i = 0; i < count; i++) {
+					if (scratch.particles[i].acceptFitness(state.fitnesses[i]) &&
+							objectiveFunction.compareFitnesses(state.bestFitnesses[i], scratch.improved ? scratch.bestFitness : bestFitness) == 1) {
+						scratch.improved = true;
+						scratch.bestFitness = state.bestFitnesses[i];
+						System.arraycopy(state.bestPositions, state.offset(i), scratch.bestPosition, 0, dimensions);
+					}
+				}
+				store(chunk, scratch);
+			}
+		});
+
+		boolean resetImprovement = false;
+		for (int worker = 0; worker < workers; worker++) {
+			Scratch scratch = scratches.get(worker);
+			if (scratch.improved && objectiveFunction.compareFitnesses(scratch.bestFitness, bestFitness) == 1) {
+				bestFitness = scratch.bestFitness;
+				bestPosition = scratch.bestPosition.clone();
+				resetImprovement = true;
+			}
+		}
+		if (resetImprovement)
+			iterationsSinceImprovement = 0;
+		else
+			++iterationsSinceImprovement;
+		++iterations;
+		evaluations += particleCount;
+	}
+
+	/**
+	 * optimise based on the maxIterationsWithoutImprovement stopping criterion
+	 *
+	 * @param maxIterationsWithoutImprovement int max number of iterations we will permit without improvement before stopping
+	 */
+	public void optimise(int maxIterationsWithoutImprovement) {
+		while (iterationsSinceImprovement <= maxIterationsWithoutImprovement)
+			update();
+	}
+
+	/**
+	 * the number of particles in a chunk
+	 */
+	private int chunkSize(int chunk) {
+		return Math.min(chunkParticles, particleCount - chunk * chunkParticles);
+	}
+
+	/**
+	 * a view of the bytes of a chunk, positioned at its start
+	 */
+	private ByteBuffer chunk(int chunk) {
+		ByteBuffer view = segments.get(chunk / chunksPerSegment).duplicate().order(ByteOrder.nativeOrder());
+		view.position((int) ((chunk % chunksPerSegment) * chunkBytes));
+		return view;
+	}
+
+	/**
+	 * copy a chunk into a scratch area
+	 */
+	private void load(int chunk, Scratch scratch) {
+		int count = chunkSize(chunk);
+		SwarmState state = scratch.state;
+		ByteBuffer bytes = chunk(chunk);
+		get(bytes, state.positions, count * dimensions);
+		get(bytes, state.velocities, count * dimensions);
+		get(bytes, state.bestPositions, count * dimensions);
+		get(bytes, state.fitnesses, count);
+		get(bytes, state.bestFitnesses, count);
+		for (int i = 0; i < count; i++) {
+			scratch.particles[i].getRandom().setState(bytes.getLong());
+		}
+	}
+
+	/**
+	 * copy a scratch area back into a chunk
+	 */
+	private void store(int chunk, Scratch scratch) {
+		int count = chunkSize(chunk);
+		SwarmState state = scratch.state;
+		ByteBuffer bytes = chunk(chunk);
+		put(bytes, state.positions, count * dimensions);
+		put(bytes, state.velocities, count * dimensions);
+		put(bytes, state.bestPositions, count * dimensions);
+		put(bytes, state.fitnesses, count);
+		put(bytes, state.bestFitnesses, count);
+		for (int i = 0; i < count; i++) {
+			bytes.putLong(scratch.particles[i].getRandom().getState());
+		}
+	}
+
+	private static void get(ByteBuffer bytes, double[] values, int length) {
+		bytes.asDoubleBuffer().get(values, 0, length);
+		bytes.position(bytes.position() + 8 * length);
+	}
+
+	private static void put(ByteBuffer bytes, double[] values, int length) {
+		bytes.asDoubleBuffer().put(values, 0, length);
+		bytes.position(bytes.position() + 8 * length);
+	}
+
+	/**
+	 * get the scratch area of a thread, creating it on first use
+	 */
+	private Scratch scratch(int worker) {
+		synchronized (scratches) {
+			while (scratches.size() <= worker) {
+				scratches.add(new Scratch());
+			}
+			return scratches.get(worker);
+		}
+	}
+
+	/**
+	 * get the fitness of the best position found thus far
+	 */
+	public double getBestFitness() {
+		return bestFitness;
+	}
+
+	/**
+	 * returns a copy of the position thus far that has the best fitness
+	 */
+	public double[] getBestPositionArray() {
+		return bestPosition.clone();
+	}
+
+	/**
+	 * get the number of update cycles since the global best last improved
+	 */
+	public int getIterationsSinceImprovement() {
+		return iterationsSinceImprovement;
+	}
+
+	/**
+	 * get the number of update cycles run thus far
+	 */
+	public long getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * get the number of positions scored thus far, including the initial population
+	 */
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * get the number of particles in the swarm
+	 */
+	public int getParticleCount() {
+		return particleCount;
+	}
+
+	/**
+	 * release the buffers and delete the backing file if there is one. the mapped memory itself is released once the
+	 * buffers are collected
+	 */
+	@Override
+	public void close() throws IOException {
+		segments.clear();
+		scratches.clear();
+		if (file != null)
+			Files.deleteIfExists(file);
+	}
+
+	/**
+	 * the on heap copy of one chunk that a thread works in, along with the best it found in the current cycle
+	 */
+	private final class Scratch {
+		private final SwarmState state = new SwarmState(chunkParticles, minConstraints, maxConstraints);
+		private final Particle[] particles = new Particle[chunkParticles];
+		private final double[] bestPosition = new double[dimensions];
+		private double bestFitness;
+		private boolean improved;
+
+		Scratch() {
+			for (int i = 0; i < chunkParticles; i++) {
+				particles[i] = new Particle(cPersonal, cNeighbour, weight, state, i, objectiveFunction, new RandomSource(0));
+			}
+		}
+	}
+}
@@ -0,0 +1,462 @@
+package com.parker.david;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a resident optimiser, so that many short optimisations share one warmed up jvm rather than each paying for a jvm start
+ * and the jit. jobs are posted over http on the loopback interface only, and run concurrently on a bounded pool.
+ * <p>
+ * POST /jobs takes a job as a properties body and answers with its id, or with ?stream=true holds the connection open and
+ * writes a line of progress every so many update cycles and the final best at the end. GET /jobs/{id} gives the state of
+ * a job, and DELETE /jobs/{id} cancels it. the keys of a job are
+ * <ul>
+ * <li>objective, the name of a standard test function or an expression, with type, dimensions, min and max as for
+ * ExpressionObjective. a standard test function searches its usual bounds unless min and max are given</li>
+ * <li>particles, w, c1, c2 and initialVelocityFactor, the swarm parameters</li>
+ * <li>maxIterationsWithoutImprovement, maxEvaluations and timeoutMillis, the budget</li>
+ * <li>seed, for a repeatable run, and progressEvery, the update cycles between progress lines</li>
+ * </ul>
+ * jobs larger than the limits, see setLimits, are turned away so that one job cannot exhaust the memory every job shares
+ */
+public class OptimisationDaemon {
+	/**
+	 * the number of finished jobs whose results are kept for GET
+	 */
+	static final int FINISHED_JOBS_KEPT = 1000;
+
+	/**
+	 * the most update cycles a job may run when it gives no budget of its own
+	 */
+	static final int DEFAULT_MAX_ITERATIONS_WITHOUT_IMPROVEMENT = 100;
+
+	/**
+	 * the largest job taken, in particles, dimensions, and particles times dimensions, the number of values in each of
+	 * the swarm's position, velocity and best position blocks
+	 */
+	private volatile int maxParticles = 10000;
+	private volatile int maxDimensions = 1000;
+	private volatile long maxPositionValues = 1000000;
+
+	private final HttpServer server;
+
+	/**
+	 * runs the jobs, with a bounded queue so that a flood of jobs is turned away rather than piling up
+	 */
+	private final ThreadPoolExecutor jobs;
+
+	/**
+	 * serves the http exchanges, which wait on their jobs when streaming
+	 */
+	private final ExecutorService exchanges;
+
+	/**
+	 * every queued, running and recently finished job by id, in the order they were submitted
+	 */
+	private final Map<Long, Job> jobsById = new LinkedHashMap<>();
+
+	private final AtomicLong nextId = new AtomicLong(1);
+
+	/**
+	 * constructor, starts serving straight away
+	 *
+	 * @param port       the port on the loopback interface, 0 for any free port
+	 * @param threads    the number of jobs run at once
+	 * @param queueLimit the number of jobs that may wait for a thread before more are turned away
+	 */
+	public OptimisationDaemon(int port, int threads, int queueLimit) throws IOException {
+		jobs = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueLimit), daemonThreads("pso-job"));
+
+		//exchanges mostly wait on their jobs, so are cheap on virtual threads where the jvm has them
+		ThreadFactory virtual = ParallelLoop.virtualThreadFactory();
+		exchanges = Executors.newCachedThreadPool(virtual != null ? virtual : daemonThreads("pso-http"));
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(exchanges);
+		server.createContext("/jobs", this::handle);
+		server.start();
+	}
+
+	/**
+	 * set the largest job taken, larger jobs are answered with 400
+	 *
+	 * @param maxParticles      the most particles
+	 * @param maxDimensions     the most dimensions
+	 * @param maxPositionValues the most particles times dimensions
+	 */
+	public void setLimits(int maxParticles, int maxDimensions, long maxPositionValues) {
+		this.maxParticles = maxParticles;
+		this.maxDimensions = maxDimensions;
+		this.maxPositionValues = maxPositionValues;
+	}
+
+	/**
+	 * get the port the daemon is listening on
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * stop taking jobs, cancel those running, and stop serving
+	 */
+	public void close() {
+		server.stop(0);
+		synchronized (jobsById) {
+			for (Job job : jobsById.values()) {
+				job.token.cancel();
+			}
+		}
+		jobs.shutdownNow();
+		exchanges.shutdownNow();
+	}
+
+	/**
+	 * route an exchange to the handler for its method and path
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String path = exchange.getRequestURI().getPath();
+			String method = exchange.getRequestMethod();
+			if (path.equals("/jobs") || path.equals("/jobs/")) {
+				if (method.equals("POST"))
+					submit(exchange);
+				else
+					respond(exchange, 405, "use POST to submit a job\n");
+				return;
+			}
+			Job job = null;
+			try {
+				long id = Long.parseLong(path.substring("/jobs/".length()));
+				synchronized (jobsById) {
+					job = jobsById.get(id);
+				}
+			} catch (NumberFormatException e) {
+				//no such job
+			}
+			if (job == null) {
+				respond(exchange, 404, "no job " + path + "\n");
+			} else if (method.equals("GET")) {
+				respond(exchange, 200, job.status());
+			} else if (method.equals("DELETE")) {
+				job.token.cancel();
+				respond(exchange, 200, job.status());
+			} else {
+				respond(exchange, 405, "use GET or DELETE on a job\n");
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * forget the oldest finished jobs beyond the number kept, must hold the lock on jobsById. queued and running jobs are
+	 * never forgotten, however old, and there are at most as many of them as the pool's threads and queue hold
+	 */
+	private void forgetOldFinishedJobs() {
+		if (jobsById.size() <= FINISHED_JOBS_KEPT)
+			return;
+		int finished = 0;
+		for (Job job : jobsById.values()) {
+			if (job.isFinished())
+				finished++;
+		}
+		for (Iterator<Job> oldest = jobsById.values().iterator(); finished > FINISHED_JOBS_KEPT && oldest.hasNext(); ) {
+			if (oldest.next().isFinished()) {
+				oldest.remove();
+				finished--;
+			}
+		}
+	}
+
+	/**
+	 * parse and queue a job, then either answer with its id or stream its progress until it finishes
+	 */
+	private void submit(HttpExchange exchange) throws IOException {
+		Job job;
+		try {
+			job = new Job(nextId.getAndIncrement(), readProperties(exchange.getRequestBody()), maxParticles, maxDimensions, maxPositionValues);
+		} catch (IOException | IllegalArgumentException e) {
+			respond(exchange, 400, e.getMessage() + "\n");
+			return;
+		}
+		boolean stream = String.valueOf(exchange.getRequestURI().getQuery()).contains("stream=true");
+		if (stream)
+			job.progress = new LinkedBlockingQueue<>();
+
+		synchronized (jobsById) {
+			jobsById.put(job.id, job);
+			forgetOldFinishedJobs();
+		}
+		try {
+			jobs.execute(job);
+		} catch (RejectedExecutionException e) {
+			synchronized (jobsById) {
+				jobsById.remove(job.id);
+			}
+			respond(exchange, 503, "too many jobs waiting, try again later\n");
+			return;
+		}
+
+		if (!stream) {
+			respond(exchange, 202, "id = " + job.id + "\n");
+			return;
+		}
+
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(200, 0);
+		OutputStream body = exchange.getResponseBody();
+		try {
+			write(body, "id = " + job.id + "\n");
+			while (true) {
+				//the final status is always the last line
+				String line = job.progress.take();
+				write(body, line);
+				if (line.startsWith("state = "))
+					break;
+			}
+		} catch (IOException e) {
+			//the caller has gone, so nobody wants the result
+			job.token.cancel();
+		} catch (InterruptedException e) {
+			job.token.cancel();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void write(OutputStream body, String text) throws IOException {
+		body.write(text.getBytes(StandardCharsets.UTF_8));
+		body.flush();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		exchange.getResponseBody().write(bytes);
+	}
+
+	private static Properties readProperties(InputStream body) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int read; (read = body.read(buffer)) > 0; ) {
+			bytes.write(buffer, 0, read);
+		}
+		Properties properties = new Properties();
+		properties.load(new InputStreamReader(new ByteArrayInputStream(bytes.toByteArray()), StandardCharsets.UTF_8));
+		return properties;
+	}
+
+	private static ThreadFactory daemonThreads(String name) {
+		AtomicLong count = new AtomicLong();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * a single optimisation, parsed up front so that a bad job is turned away before it is queued
+	 */
+	private static final class Job implements Runnable {
+		final long id;
+		final CancellationToken token = new CancellationToken();
+		private final ObjectiveFunction objective;
+		private final double[] minConstraints;
+		private final double[] maxConstraints;
+		private final int particleCount;
+		private final double weight;
+		private final double cPersonal;
+		private final double cNeighbour;
+		private final double initialVelocityFactor;
+		private final long seed;
+		private final int progressEvery;
+		private final List<StoppingCriterion> criteria = new ArrayList<>();
+
+		/**
+		 * progress lines for a streaming caller, ending with the final status, null if nobody is streaming
+		 */
+		volatile BlockingQueue<String> progress;
+
+		private volatile String state = "queued";
+		private volatile Swarm swarm;
+		private volatile String stoppedBy = "";
+		private volatile String error = "";
+
+		Job(long id, Properties properties, int maxParticles, int maxDimensions, long maxPositionValues) throws IOException {
+			this.id = id;
+			//checked before anything the size of the search space is allocated
+			String dimensionsValue = properties.getProperty("dimensions");
+			if (dimensionsValue != null)
+				checkRange("dimensions", Integer.parseInt(dimensionsValue.trim()), maxDimensions);
+			String objectiveName = properties.getProperty("objective");
+			if (objectiveName == null)
+				throw new IOException("the job has no objective");
+			StandardObjectives.TestFunction testFunction = null;
+			try {
+				testFunction = StandardObjectives.byName(objectiveName.trim());
+			} catch (IllegalArgumentException e) {
+				//not a standard test function, so an expression
+			}
+			if (testFunction != null) {
+				objective = testFunction;
+				if (properties.getProperty("min") != null || properties.getProperty("max") != null) {
+					int dimensions = Integer.parseInt(properties.getProperty("dimensions", "2").trim());
+					minConstraints = ExpressionObjective.bounds(properties.getProperty("min"), dimensions, "the job");
+					maxConstraints = ExpressionObjective.bounds(properties.getProperty("max"), dimensions, "the job");
+				} else {
+					minConstraints = new double[Integer.parseInt(properties.getProperty("dimensions", "2").trim())];
+					maxConstraints = new double[minConstraints.length];
+					Arrays.fill(minConstraints, -testFunction.bound);
+					Arrays.fill(maxConstraints, testFunction.bound);
+				}
+			} else {
+				ExpressionObjective expression = ExpressionObjective.load(properties, "the job");
+				if (expression.getMinConstraints() == null)
+					throw new IOException("the job must give the search space as min and max");
+				objective = expression;
+				minConstraints = expression.getMinConstraints();
+				maxConstraints = expression.getMaxConstraints();
+			}
+			if (minConstraints.length != maxConstraints.length)
+				throw new IOException("min and max have different numbers of dimensions");
+			checkRange("dimensions", minConstraints.length, maxDimensions);
+
+			particleCount = Integer.parseInt(properties.getProperty("particles", "30").trim());
+			checkRange("particles", particleCount, maxParticles);
+			if ((long) particleCount * minConstraints.length > maxPositionValues)
+				throw new IllegalArgumentException("particles times dimensions may be at most " + maxPositionValues);
+			weight = Double.parseDouble(properties.getProperty("w", "0.729").trim());
+			cPersonal = Double.parseDouble(properties.getProperty("c1", "1.49445").trim());
+			cNeighbour = Double.parseDouble(properties.getProperty("c2", "1.49445").trim());
+			initialVelocityFactor = Double.parseDouble(properties.getProperty("initialVelocityFactor", "0.3").trim());
+			String seedValue = properties.getProperty("seed");
+			seed = seedValue != null ? Long.parseLong(seedValue.trim()) : System.nanoTime() ^ id;
+			progressEvery = Integer.parseInt(properties.getProperty("progressEvery", "10").trim());
+
+			criteria.add(StoppingCriterion.maxIterationsWithoutImprovement(Integer.parseInt(
+					properties.getProperty("maxIterationsWithoutImprovement", String.valueOf(DEFAULT_MAX_ITERATIONS_WITHOUT_IMPROVEMENT)).trim())));
+			long maxEvaluations = Long.parseLong(properties.getProperty("maxEvaluations", "0").trim());
+			if (maxEvaluations > 0)
+				criteria.add(StoppingCriterion.maxEvaluations(maxEvaluations));
+			long timeoutMillis = Long.parseLong(properties.getProperty("timeoutMillis", "0").trim());
+			if (timeoutMillis > 0)
+				criteria.add(StoppingCriterion.deadline(timeoutMillis, TimeUnit.MILLISECONDS));
+			criteria.add(StoppingCriterion.cancelled(token));
+		}
+
+		@Override
+		public void run() {
+			if (token.isCancelled()) {
+				finish("cancelled");
+				return;
+			}
+			state = "running";
+			try {
+				Swarm swarm = new Swarm(objective, particleCount, cNeighbour, cPersonal, weight, minConstraints, maxConstraints,
+						initialVelocityFactor, Initialiser.uniform(), seed);
+				this.swarm = swarm;
+				if (progress != null && progressEvery > 0) {
+					swarm.addListener(new SwarmListener() {
+						@Override
+						public void onIteration(Swarm swarm, long iteration, boolean improved) {
+							if (iteration % progressEvery == 0)
+								progress.add("iteration = " + iteration + ", evaluations = " + swarm.getEvaluations() + ", best fitness = " + swarm.getBestFitness() + "\n");
+						}
+					});
+				}
+				StoppingCriterion criterion = swarm.optimise(criteria.toArray(new StoppingCriterion[0]));
+				stoppedBy = String.valueOf(criterion);
+				finish(token.isCancelled() ? "cancelled" : "done");
+			} catch (RuntimeException | Error e) {
+				error = String.valueOf(e);
+				finish("failed");
+			}
+		}
+
+		/**
+		 * reject a size below 1 or above its limit
+		 */
+		private static void checkRange(String name, long value, long max) {
+			if (value < 1 || value > max)
+				throw new IllegalArgumentException(name + " must be between 1 and " + max);
+		}
+
+		private void finish(String finalState) {
+			state = finalState;
+			if (progress != null)
+				progress.add(status());
+		}
+
+		boolean isFinished() {
+			return !state.equals("queued") && !state.equals("running");
+		}
+
+		/**
+		 * the state of the job as properties
+		 */
+		String status() {
+			StringBuilder status = new StringBuilder("state = " + state + "\nid = " + id + "\n");
+			Swarm swarm = this.swarm;
+			if (swarm != null) {
+				status.append("iterations = ").append(swarm.getIterations()).append('\n');
+				status.append("evaluations = ").append(swarm.getEvaluations()).append('\n');
+				status.append("bestFitness = ").append(swarm.getBestFitness()).append('\n');
+				double[] best = swarm.getBestPositionArray();
+				StringBuilder position = new StringBuilder();
+				for (int d = 0; d < best.length; d++) {
+					position.append(d == 0 ? "" : ", ").append(best[d]);
+				}
+				status.append("bestPosition = ").append(position).append('\n');
+			}
+			if (!stoppedBy.isEmpty())
+				status.append("stoppedBy = ").append(stoppedBy).append('\n');
+			if (!error.isEmpty())
+				status.append("error = ").append(error).append('\n');
+			return status.toString();
+		}
+	}
+
+	/**
+	 * run the daemon until the jvm is stopped
+	 *
+	 * @param args optionally the port, default 8642, the number of jobs run at once, default one per core, and the number
+	 *             of jobs that may wait, default 1000
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8642;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int queueLimit = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		OptimisationDaemon daemon = new OptimisationDaemon(port, threads, queueLimit);
+		Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+		System.out.println("listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + daemon.getPort());
+	}
+}
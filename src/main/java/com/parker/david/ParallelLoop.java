@@ -0,0 +1,104 @@
+package com.parker.david;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.IntConsumer;
+
+/**
+ * runs the body of a loop over a range of indices on an executor, and waits for every index to complete
+ */
+class ParallelLoop {
+
+	/**
+	 * run the action once for every index in [0, count) on the executor, returning once all have completed.
+	 * on a fork join pool the indices are split recursively, so a loop started from inside one of the pool's own tasks
+	 * helps run its work rather than blocking a worker
+	 *
+	 * @param executor the executor to run the action on
+	 * @param count    the number of indices
+	 * @param action   the body of the loop, called with each index
+	 */
+	static void forEach(ExecutorService executor, int count, IntConsumer action) {
+		if (executor instanceof ForkJoinPool) {
+			ForkJoinPool pool = (ForkJoinPool) executor;
+			RangeTask task = new RangeTask(action, 0, count);
+			if (ForkJoinTask.getPool() == pool)
+				task.invoke();
+			else
+				pool.invoke(task);
+			return;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final int index = i;
+			tasks.add(() -> {
+				action.accept(index);
+				return null;
+			});
+		}
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for the loop to complete", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * get a factory for virtual threads, looked up reflectively so the code still builds and runs on jvms without them
+	 *
+	 * @return the factory, or null if this jvm has no virtual threads
+	 */
+	static ThreadFactory virtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * a fork join task that splits its range in half until a single index remains
+	 */
+	private static class RangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final IntConsumer action;
+		private final int from;
+		private final int to;
+
+		RangeTask(IntConsumer action, int from, int to) {
+			this.action = action;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				action.accept(from);
+			} else if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RangeTask(action, from, middle), new RangeTask(action, middle, to));
+			}
+		}
+	}
+}
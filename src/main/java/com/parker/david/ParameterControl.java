@@ -0,0 +1,160 @@
+package com.parker.david;
+
+/**
+ * how a swarm changes its search parameters w, c1 and c2 as it runs, instead of keeping the ones it was built with.
+ * a control is applied once when it is set and then between update cycles, so a swarm with a control cannot run in
+ * steady state. use one of the factory methods, each control belongs to one swarm
+ */
+public abstract class ParameterControl {
+
+	/**
+	 * called once when the control is set on a swarm, before its next update cycle
+	 *
+	 * @param swarm  the swarm
+	 * @param random the swarm's stream of random numbers
+	 */
+	void start(Swarm swarm, RandomSource random) {
+	}
+
+	/**
+	 * called after every update cycle
+	 *
+	 * @param swarm  the swarm
+	 * @param random the swarm's stream of random numbers
+	 */
+	abstract void adapt(Swarm swarm, RandomSource random);
+
+	/**
+	 * set the inertia weight of every particle, keeping their other coefficients
+	 */
+	static void setWeight(Swarm swarm, double weight) {
+		for (int particleNumber = 0; particleNumber < swarm.getParticleCount(); particleNumber++) {
+			swarm.getParticle(particleNumber).setWeight(weight);
+		}
+	}
+
+	/**
+	 * the inertia weight falls in a straight line from start to end over a number of update cycles, then stays at end.
+	 * a high weight early keeps the swarm exploring and a low one late lets it settle into the best basin
+	 *
+	 * @param start      the weight at the first update cycle, such as 0.9
+	 * @param end        the weight from the last update cycle on, such as 0.4
+	 * @param iterations the number of update cycles the weight falls over
+	 */
+	public static ParameterControl linearInertia(double start, double end, long iterations) {
+		return decreasingInertia(start, end, iterations, 1);
+	}
+
+	/**
+	 * the inertia weight falls from start to end over a number of update cycles along a power curve, then stays at end.
+	 * w = end + (start - end) * (1 - t) ^ exponent where t is the fraction of the update cycles run, so an exponent above 1
+	 * drops the weight quickly and then lingers near end, and one below 1 explores for longer
+	 *
+	 * @param start      the weight at the first update cycle
+	 * @param end        the weight from the last update cycle on
+	 * @param iterations the number of update cycles the weight falls over
+	 * @param exponent   the shape of the curve, 1 for a straight line
+	 */
+	public static ParameterControl decreasingInertia(double start, double end, long iterations, double exponent) {
+		if (iterations < 1)
+			throw new IllegalArgumentException("the weight must fall over at least one update cycle");
+		return new ParameterControl() {
+			@Override
+			void start(Swarm swarm, RandomSource random) {
+				adapt(swarm, random);
+			}
+
+			@Override
+			void adapt(Swarm swarm, RandomSource random) {
+				double t = Math.min(1, (double) swarm.getIterations() / iterations);
+				setWeight(swarm, end + (start - end) * Math.pow(1 - t, exponent));
+			}
+		};
+	}
+
+	/**
+	 * the inertia weight follows the fraction of particles that improved their personal best in the last update cycle,
+	 * w = min + (max - min) * success rate. while many particles improve the swarm is making progress and keeps its
+	 * momentum, once few do it is circling an optimum and slows down to refine it
+	 *
+	 * @param min the weight when no particle improved, such as 0
+	 * @param max the weight when every particle improved, such as 1
+	 */
+	public static ParameterControl successRate(double min, double max) {
+		return new ParameterControl() {
+			@Override
+			void adapt(Swarm swarm, RandomSource random) {
+				int successes = 0;
+				for (int particleNumber = 0; particleNumber < swarm.getParticleCount(); particleNumber++) {
+					if (swarm.getParticle(particleNumber).hasImproved())
+						++successes;
+				}
+				setWeight(swarm, min + (max - min) * successes / swarm.getParticleCount());
+			}
+		};
+	}
+
+	/**
+	 * clerc's constriction factor, fixes w = chi, c1 = chi * phiPersonal and c2 = chi * phiNeighbour where
+	 * chi = 2 / |2 - phi - sqrt(phi^2 - 4 phi)| and phi = phiPersonal + phiNeighbour, which guarantees the swarm converges
+	 * without clamping velocities. 2.05 and 2.05 give the usual w = 0.7298 and c1 = c2 = 1.4962
+	 *
+	 * @param phiPersonal  the acceleration towards the personal best before constriction
+	 * @param phiNeighbour the acceleration towards the neighbourhood best before constriction
+	 */
+	public static ParameterControl constriction(double phiPersonal, double phiNeighbour) {
+		double phi = phiPersonal + phiNeighbour;
+		if (phi <= 4)
+			throw new IllegalArgumentException("the constriction factor needs phiPersonal + phiNeighbour > 4");
+		double chi = 2 / Math.abs(2 - phi - Math.sqrt(phi * phi - 4 * phi));
+		return new ParameterControl() {
+			@Override
+			void start(Swarm swarm, RandomSource random) {
+				for (int particleNumber = 0; particleNumber < swarm.getParticleCount(); particleNumber++) {
+					swarm.getParticle(particleNumber).setCoefficients(chi, chi * phiPersonal, chi * phiNeighbour);
+				}
+			}
+
+			@Override
+			void adapt(Swarm swarm, RandomSource random) {
+			}
+		};
+	}
+
+	/**
+	 * every particle carries its own w, c1 and c2, drawn at the start from the given ranges. after each update cycle a
+	 * particle that failed to improve its personal best draws new ones with the given probability, while one that improved
+	 * keeps them, so parameters that work for a particle where it is in the search survive and ones that do not are
+	 * replaced, without any outer search over the parameters
+	 *
+	 * @param minWeight      the smallest inertia weight, such as 0.4
+	 * @param maxWeight      the largest inertia weight, such as 0.9
+	 * @param minCoefficient the smallest c1 and c2, such as 0.5
+	 * @param maxCoefficient the largest c1 and c2, such as 2.5
+	 * @param redrawRate     the probability a particle that failed to improve draws new parameters, such as 0.1
+	 */
+	public static ParameterControl selfAdaptive(double minWeight, double maxWeight, double minCoefficient, double maxCoefficient, double redrawRate) {
+		return new ParameterControl() {
+			@Override
+			void start(Swarm swarm, RandomSource random) {
+				for (int particleNumber = 0; particleNumber < swarm.getParticleCount(); particleNumber++) {
+					redraw(swarm.getParticle(particleNumber), random);
+				}
+			}
+
+			@Override
+			void adapt(Swarm swarm, RandomSource random) {
+				for (int particleNumber = 0; particleNumber < swarm.getParticleCount(); particleNumber++) {
+					Particle particle = swarm.getParticle(particleNumber);
+					if (!particle.hasImproved() && random.nextDouble() < redrawRate)
+						redraw(particle, random);
+				}
+			}
+
+			private void redraw(Particle particle, RandomSource random) {
+				particle.setCoefficients(random.nextDouble(minWeight, maxWeight),
+						random.nextDouble(minCoefficient, maxCoefficient), random.nextDouble(minCoefficient, maxCoefficient));
+			}
+		};
+	}
+}
@@ -1,32 +1,27 @@
 package com.parker.david;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * a single particle in the swarm. keeps track of its position and velocity and its best position ever
+ * a single particle in the swarm. keeps track of its position and velocity and its best position ever.
+ * the values themselves live in the swarm's contiguous blocks, this class is a view over this particle's slice of them
  */
 public class Particle implements Comparable<Particle> {
 	/**
-	 * the current position
+	 * the storage holding this particle's position, velocity and best position
 	 */
-	private ArrayList<Double> position;
+	private final SwarmState state;
 
 	/**
-	 * the current velocity
+	 * the index of this particle within the state
 	 */
-	private ArrayList<Double> velocity;
+	private final int index;
 
 	/**
-	 * a vector correlating to the position vector, detailing the max for each respective index's value
+	 * the index of this particle's first dimension within the state's position sized blocks
 	 */
-	private final ArrayList<Double> maxConstraints;
-
-	/**
-	 * a vector correlating to the position vector, detailing the min for each respective index's value
-	 */
-	private final ArrayList<Double> minConstraints;
+	private final int offset;
 
 	/**
 	 * the objective function
@@ -34,96 +29,148 @@ public class Particle implements Comparable<Particle> {
 	private ObjectiveFunction objectiveFunction;
 
 	/**
-	 * a clone of the best position, mostly here for record keeping's sake
-	 */
-	private ArrayList<Double> bestPosition;
-
-	/**
-	 * the best fitness, could be calculated from the best position each time, but saved here to improve computational efficiency
+	 * a scratch array holding a copy of the current position, handed to the objective function
 	 */
-	private double bestFitness;
+	private final double[] parameters;
 
 	/**
-	 * current fitness
+	 * this particle's own stream of random numbers
 	 */
-	private double fitness;
+	private final RandomSource random;
 
 	/**
 	 * search parameter c1, the coefficient for the best personal position
 	 */
-	private final double cPersonal;
+	private double cPersonal;
 
 	/**
 	 * search parameter c2, the coefficient for the best neighbourhood position
 	 */
-	private final double cNeighbourhood;
+	private double cNeighbourhood;
 
 	/**
 	 * search parameter w, the coefficient for the velocity position
 	 */
-	private final double weight;
+	private double weight;
 
 	/**
-	 * the constructor, sets parameters and the the initial fitness and best position to the current position
+	 * whether the last fitness accepted was a new personal best
 	 */
-	Particle(double cPersonal, double cNeighbourhood, double weight, ArrayList<Double> initialPosition, ArrayList<Double> initialVelocity, ArrayList<Double> minConstraints, ArrayList<Double> maxConstraints, ObjectiveFunction objectiveFunction) {
-		this.maxConstraints = maxConstraints;
-		this.minConstraints = minConstraints;
+	private boolean improved;
+
+	/**
+	 * the constructor for a particle living in a swarm's state, a view over whatever its slice of the state holds.
+	 * a new particle must be reset with the fitness of its initial position before it is updated
+	 */
+	Particle(double cPersonal, double cNeighbourhood, double weight, SwarmState state, int index, ObjectiveFunction objectiveFunction, RandomSource random) {
+		this.state = state;
+		this.random = random;
+		this.index = index;
+		this.offset = state.offset(index);
 		this.objectiveFunction = objectiveFunction;
 		this.weight = weight;
 		this.cPersonal = cPersonal;
 		this.cNeighbourhood = cNeighbourhood;
-		velocity = initialVelocity;
-		position = initialPosition;
+		this.parameters = new double[state.dimensions];
+	}
+
+	/**
+	 * the constructor for a standalone particle, an adapter that copies the lists into a state of its own
+	 */
+	Particle(double cPersonal, double cNeighbourhood, double weight, ArrayList<Double> initialPosition, ArrayList<Double> initialVelocity, ArrayList<Double> minConstraints, ArrayList<Double> maxConstraints, ObjectiveFunction objectiveFunction) {
+		this(cPersonal, cNeighbourhood, weight, singleParticleState(initialPosition, initialVelocity, minConstraints, maxConstraints), 0, objectiveFunction, new RandomSource(ThreadLocalRandom.current().nextLong()));
 
 		//calculate the initial fitness and best position
-		fitness = objectiveFunction.getFitness(position);
-		bestPosition = position;
-		bestFitness = fitness;
+		reset(evaluate());
+	}
+
+	/**
+	 * create a state holding only the given particle
+	 */
+	private static SwarmState singleParticleState(ArrayList<Double> initialPosition, ArrayList<Double> initialVelocity, ArrayList<Double> minConstraints, ArrayList<Double> maxConstraints) {
+		SwarmState state = new SwarmState(1, Utilities.toArray(minConstraints), Utilities.toArray(maxConstraints));
+		for (int i = 0; i < state.dimensions; i++) {
+			state.positions[i] = initialPosition.get(i);
+			state.velocities[i] = initialVelocity.get(i);
+		}
+		return state;
 	}
 
 	/**
 	 * update this particle, return true if the particle finds a new best position
 	 *
-	 * @param neighbourhoodBestPosition the best position in this particle's neighbourhood
+	 * @param neighbourhoodBestPosition an array holding the best position in this particle's neighbourhood
+	 * @param neighbourhoodOffset       the index of the first dimension of the neighbourhood best within that array
 	 * @return a boolean, true if a new best position found, false otherwise
 	 */
-	public boolean update(ArrayList<Double> neighbourhoodBestPosition) {
-
-		//generate our random numbers between 0 and 1 for this iteration
-		double rhoPersonal = Utilities.getRandom0To1();
-		double rhoNeighbour = Utilities.getRandom0To1();
-		for (int i = 0; i < position.size(); i++) {
-
-			//find out a theoretical new velocity
-			double theoreticalNewVelocity = velocity.get(i) * weight + //velocity component
-					(bestPosition.get(i) - position.get(i)) * rhoPersonal * cPersonal + //personal best component
-					(neighbourhoodBestPosition.get(i) - position.get(i)) * rhoNeighbour * cNeighbourhood; //neighbourhood best component
+	public boolean update(double[] neighbourhoodBestPosition, int neighbourhoodOffset) {
+		move(neighbourhoodBestPosition, neighbourhoodOffset);
+		return acceptFitness(evaluate());
+	}
 
-			//find out a theoretical position
-			double theoreticalNewPosition = position.get(i) + velocity.get(i);
+	/**
+	 * move this particle to its next position without scoring it, the first half of an update
+	 *
+	 * @param neighbourhoodBestPosition an array holding the best position in this particle's neighbourhood
+	 * @param neighbourhoodOffset       the index of the first dimension of the neighbourhood best within that array
+	 */
+	void move(double[] neighbourhoodBestPosition, int neighbourhoodOffset) {
+		double[] position = state.positions;
+		double[] velocity = state.velocities;
+		double[] bestPosition = state.bestPositions;
 
-			//constrain the position to get the real new position
-			double realNewPosition = Utilities.constrainDouble(theoreticalNewPosition, minConstraints.get(i), maxConstraints.get(i));
+		//generate our random numbers between 0 and 1 for this iteration
+		double rhoPersonal = random.nextDouble();
+		double rhoNeighbour = random.nextDouble();
+		MoveKernel.INSTANCE.move(position, velocity, bestPosition, offset, neighbourhoodBestPosition, neighbourhoodOffset, state.minConstraints, state.maxConstraints,
+				state.dimensions, weight, rhoPersonal, cPersonal, rhoNeighbour, cNeighbourhood);
+	}
 
-			//find the velocity from old position to the new constrained position (thus the real velocity, not theoretical velocity)
-			double realNewVelocity = realNewPosition - position.get(i);
+	/**
+	 * record the fitness of the current position, the second half of an update
+	 *
+	 * @param fitness the fitness of the current position
+	 * @return a boolean, true if a new best position found, false otherwise
+	 */
+	boolean acceptFitness(double fitness) {
+		state.fitnesses[index] = fitness;
+		if (objectiveFunction.compareFitnesses(fitness, state.bestFitnesses[index]) == 1) {
+			state.bestFitnesses[index] = fitness;
+			System.arraycopy(state.positions, offset, state.bestPositions, offset, state.dimensions);
+			return improved = true; //new best fitness, return true
+		} else {
+			return improved = false; //no new best fitness, return false
+		}
+	}
 
-			//update the velocity and position
-			position.set(i, realNewPosition);
-			velocity.set(i, realNewVelocity);
+	/**
+	 * forget the best position, making the current position and its fitness the best seen
+	 *
+	 * @param fitness the fitness of the current position
+	 */
+	void reset(double fitness) {
+		System.arraycopy(state.positions, offset, state.bestPositions, offset, state.dimensions);
+		state.fitnesses[index] = fitness;
+		state.bestFitnesses[index] = fitness;
+	}
 
-		}
+	/**
+	 * update this particle, return true if the particle finds a new best position.
+	 * an adapter that unboxes the list and calls the primitive version
+	 *
+	 * @param neighbourhoodBestPosition the best position in this particle's neighbourhood
+	 * @return a boolean, true if a new best position found, false otherwise
+	 */
+	public boolean update(ArrayList<Double> neighbourhoodBestPosition) {
+		return update(Utilities.toArray(neighbourhoodBestPosition), 0);
+	}
 
-		// update fitness, return true if finding a best fitness, else return false
-		fitness = objectiveFunction.getFitness(position);
-		if (fitness > bestFitness) {
-			bestFitness = fitness;
-			bestPosition = Utilities.deepCopy(position);
-			return true; //new best fitness, return true
-		} else {
-			return false; //no new best fitness, return false
-		}
+	/**
+	 * get the fitness of the current position
+	 */
+	double evaluate() {
+		System.arraycopy(state.positions, offset, parameters, 0, state.dimensions);
+		return objectiveFunction.getFitness(parameters);
 	}
 
 	/**
@@ -133,10 +180,10 @@ public class Particle implements Comparable<Particle> {
 	 */
 	public String particleHeader() {
 		ArrayList<String> builder = new ArrayList<>();
-		for (int i = 0; i < position.size(); i++) {
+		for (int i = 0; i < state.dimensions; i++) {
 			builder.add("p" + i);
 		}
-		for (int i = 0; i < velocity.size(); i++) {
+		for (int i = 0; i < state.dimensions; i++) {
 			builder.add("v" + i);
 		}
 		return String.join(", ", builder);
@@ -149,22 +196,90 @@ public class Particle implements Comparable<Particle> {
 	 */
 	@Override
 	public String toString() {
-		return position.stream().map(aDouble -> String.format("%.3f", aDouble)).collect(Collectors.joining(", ")) + ", " +
-				velocity.stream().map(aDouble -> String.format("%.3f", aDouble)).collect(Collectors.joining(", "));
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < state.dimensions; i++) {
+			builder.append(String.format("%.3f", state.positions[offset + i])).append(", ");
+		}
+		for (int i = 0; i < state.dimensions; i++) {
+			builder.append(String.format("%.3f", state.velocities[offset + i]));
+			if (i < state.dimensions - 1)
+				builder.append(", ");
+		}
+		return builder.toString();
 	}
 
 	/**
 	 * get best fitness this particle has seen
 	 */
 	public double getBestFitness() {
-		return bestFitness;
+		return state.bestFitnesses[index];
 	}
 
 	/**
-	 * return a deep copy of the array at the best fitness this particle has seen
+	 * return a copy of the best position this particle has seen, as a list
 	 */
 	public ArrayList<Double> getBestPosition() {
-		return Utilities.deepCopy(bestPosition);
+		return Utilities.toList(state.bestPositions, offset, state.dimensions);
+	}
+
+	/**
+	 * return a copy of the best position this particle has seen, as an array
+	 */
+	public double[] getBestPositionArray() {
+		double[] copy = new double[state.dimensions];
+		System.arraycopy(state.bestPositions, offset, copy, 0, state.dimensions);
+		return copy;
+	}
+
+	/**
+	 * get search parameter c1, the coefficient for the best personal position
+	 */
+	double getCPersonal() {
+		return cPersonal;
+	}
+
+	/**
+	 * get search parameter c2, the coefficient for the best neighbourhood position
+	 */
+	double getCNeighbourhood() {
+		return cNeighbourhood;
+	}
+
+	/**
+	 * get search parameter w, the coefficient for the velocity position
+	 */
+	double getWeight() {
+		return weight;
+	}
+
+	/**
+	 * set search parameter w, the coefficient for the velocity position
+	 */
+	void setWeight(double weight) {
+		this.weight = weight;
+	}
+
+	/**
+	 * set all of the search parameters, must not be called while the particle is moving
+	 */
+	void setCoefficients(double weight, double cPersonal, double cNeighbourhood) {
+		this.weight = weight;
+		this.cPersonal = cPersonal;
+		this.cNeighbourhood = cNeighbourhood;
+	}
+
+	/**
+	 * whether the last fitness accepted was a new personal best, in the last update cycle
+	 */
+	boolean hasImproved() {
+		return improved;
+	}
+
+	/**
+	 * get this particle's stream of random numbers
+	 */
+	RandomSource getRandom() {
+		return random;
 	}
 
 	/**
@@ -172,7 +287,7 @@ public class Particle implements Comparable<Particle> {
 	 */
 	@Override
 	public int compareTo(Particle other) {
-		return objectiveFunction.compareFitnesses(this.fitness, other.fitness);
+		return objectiveFunction.compareFitnesses(this.state.fitnesses[index], other.state.fitnesses[other.index]);
 	}
 
 }
@@ -0,0 +1,257 @@
+package com.parker.david;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.SplittableRandom;
+
+/**
+ * a small, fast random number generator whose whole state is a single long, so it can be saved and restored exactly.
+ * this is the splitmix64 generator, each draw advances the state by a fixed odd constant and scrambles it.
+ * not safe to share between threads, split off a new source for each thread or particle instead.
+ * <p>
+ * every random number a swarm draws comes from a source handed down from one seed: the swarm draws from its own source
+ * and splits one off for each particle in order, so a seeded run does the same whichever threads its particles run on.
+ * other splittable generators can be plugged in with the factory methods, or by subclassing, though only this one can be
+ * checkpointed
+ */
+public class RandomSource {
+	/**
+	 * the amount the state advances by on every draw, the golden ratio as a 64 bit fraction
+	 */
+	private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * the state of the generator
+	 */
+	private long state;
+
+	/**
+	 * constructor
+	 *
+	 * @param seed the initial state
+	 */
+	public RandomSource(long seed) {
+		this.state = seed;
+	}
+
+	/**
+	 * get a uniformly distributed long
+	 */
+	public long nextLong() {
+		return mix64(state += GAMMA);
+	}
+
+	/**
+	 * get a uniformly distributed double between 0 (inclusive) and 1 (exclusive)
+	 */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * get a uniformly distributed double between min and max
+	 *
+	 * @param min the minimum value
+	 * @param max the maximum value
+	 */
+	public double nextDouble(double min, double max) {
+		return min + nextDouble() * (max - min);
+	}
+
+	/**
+	 * get a uniformly distributed int between 0 (inclusive) and bound (exclusive)
+	 *
+	 * @param bound the upper bound, must be positive
+	 */
+	public int nextInt(int bound) {
+		return (int) (nextDouble() * bound);
+	}
+
+	/**
+	 * create a new source seeded from this one, which draws a statistically independent stream
+	 */
+	public RandomSource split() {
+		return new RandomSource(mix64(nextLong()));
+	}
+
+	/**
+	 * get the state of the generator, a new source with this seed continues exactly where this one is
+	 *
+	 * @throws UnsupportedOperationException if the generator's state is not a single long
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * whether the generator's whole state is the single long getState returns, so a swarm drawing from it can be checkpointed
+	 */
+	boolean canCheckpoint() {
+		return true;
+	}
+
+	/**
+	 * set the state of the generator, so it continues where a source with that state was
+	 *
+	 * @param state the state, from getState
+	 */
+	void setState(long state) {
+		this.state = state;
+	}
+
+	/**
+	 * derive the seed of one of many independent streams from a master seed, such as the seed of each run of a campaign
+	 * or each island of an island model
+	 *
+	 * @param seed   the master seed
+	 * @param stream the index of the stream
+	 */
+	public static long derive(long seed, long stream) {
+		return mix64(mix64(seed) + (stream + 1) * GAMMA);
+	}
+
+	/**
+	 * the splitmix64 finaliser, scrambles the bits of a long
+	 */
+	static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * a source drawing from java.util.SplittableRandom
+	 *
+	 * @param seed the seed
+	 */
+	public static RandomSource splittableRandom(long seed) {
+		return new Splittable(new SplittableRandom(seed));
+	}
+
+	/**
+	 * a source drawing from one of the splittable generators of java 17, such as L64X128MixRandom or L128X256MixRandom
+	 *
+	 * @param algorithm the name of the algorithm
+	 * @param seed      the seed
+	 * @throws UnsupportedOperationException on jvms before java 17
+	 * @throws IllegalArgumentException      if there is no splittable generator of that name
+	 */
+	public static RandomSource generator(String algorithm, long seed) {
+		return Generator.create(algorithm, seed);
+	}
+
+	/**
+	 * a source over java.util.SplittableRandom
+	 */
+	private static final class Splittable extends RandomSource {
+		private final SplittableRandom random;
+
+		Splittable(SplittableRandom random) {
+			super(0);
+			this.random = random;
+		}
+
+		@Override
+		public long nextLong() {
+			return random.nextLong();
+		}
+
+		@Override
+		public double nextDouble() {
+			return random.nextDouble();
+		}
+
+		@Override
+		public RandomSource split() {
+			return new Splittable(random.split());
+		}
+
+		@Override
+		public long getState() {
+			throw new UnsupportedOperationException("a SplittableRandom source cannot be checkpointed");
+		}
+
+		@Override
+		boolean canCheckpoint() {
+			return false;
+		}
+	}
+
+	/**
+	 * a source over a java.util.random.RandomGenerator.SplittableGenerator, reached through method handles so that this
+	 * still builds for java 8
+	 */
+	private static final class Generator extends RandomSource {
+		private static final MethodType NEXT_LONG = MethodType.methodType(long.class, Object.class);
+		private static final MethodType SPLIT = MethodType.methodType(Object.class, Object.class);
+
+		private final Object generator;
+		private final MethodHandle nextLong;
+		private final MethodHandle split;
+
+		private Generator(Object generator, MethodHandle nextLong, MethodHandle split) {
+			super(0);
+			this.generator = generator;
+			this.nextLong = nextLong;
+			this.split = split;
+		}
+
+		static Generator create(String algorithm, long seed) {
+			Class<?> factoryClass;
+			Class<?> generatorClass;
+			try {
+				factoryClass = Class.forName("java.util.random.RandomGeneratorFactory");
+				generatorClass = Class.forName("java.util.random.RandomGenerator$SplittableGenerator");
+			} catch (ClassNotFoundException e) {
+				throw new UnsupportedOperationException("the java 17 random generators are not available on this jvm", e);
+			}
+			try {
+				Object factory = factoryClass.getMethod("of", String.class).invoke(null, algorithm);
+				if (!(Boolean) factoryClass.getMethod("isSplittable").invoke(factory))
+					throw new IllegalArgumentException(algorithm + " is not a splittable generator");
+				Object generator = factoryClass.getMethod("create", long.class).invoke(factory, seed);
+				MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+				MethodHandle nextLong = lookup.findVirtual(generatorClass, "nextLong", MethodType.methodType(long.class)).asType(NEXT_LONG);
+				MethodHandle split = lookup.findVirtual(generatorClass, "split", MethodType.methodType(generatorClass)).asType(SPLIT);
+				return new Generator(generator, nextLong, split);
+			} catch (java.lang.reflect.InvocationTargetException e) {
+				throw new IllegalArgumentException("no generator " + algorithm, e.getCause());
+			} catch (ReflectiveOperationException e) {
+				throw new UnsupportedOperationException("the java 17 random generators are not available on this jvm", e);
+			}
+		}
+
+		@Override
+		public long nextLong() {
+			try {
+				return (long) nextLong.invokeExact(generator);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public RandomSource split() {
+			try {
+				return new Generator((Object) split.invokeExact(generator), nextLong, split);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public long getState() {
+			throw new UnsupportedOperationException("a java 17 generator source cannot be checkpointed");
+		}
+
+		@Override
+		boolean canCheckpoint() {
+			return false;
+		}
+	}
+}
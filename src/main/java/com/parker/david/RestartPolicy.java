@@ -0,0 +1,165 @@
+package com.parker.david;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * when and how a swarm that has collapsed restarts part of itself. once the spread of the swarm falls below a fraction of
+ * the size of the search space, some of the particles outside the elite are moved to fresh positions with fresh velocities,
+ * forgetting their personal bests, while the elite keep theirs and the global best is never lost.
+ * restarts happen between update cycles, so a swarm with a restart policy cannot run in steady state
+ */
+public class RestartPolicy {
+	/**
+	 * which particles are restarted
+	 */
+	public enum Selection {
+		/**
+		 * the particles with the worst personal bests
+		 */
+		Worst,
+		/**
+		 * the particles nearest to another particle, the most redundant
+		 */
+		Crowded
+	}
+
+	/**
+	 * restart once the diversity falls below this fraction of the diagonal of the search space
+	 */
+	private final double diversityThreshold;
+
+	/**
+	 * the number of best particles that are never restarted
+	 */
+	private final int eliteCount;
+
+	/**
+	 * the fraction of the particles outside the elite that are restarted
+	 */
+	private final double restartFraction;
+
+	/**
+	 * which particles are restarted
+	 */
+	private final Selection selection;
+
+	/**
+	 * the fewest update cycles between restarts, so the restarted particles have time to spread their information
+	 */
+	private int cooldown = 10;
+
+	/**
+	 * how the new positions are spread over the search space
+	 */
+	private Initialiser initialiser = Initialiser.uniform();
+
+	/**
+	 * factor of the range of the search space that the new velocities may be drawn from
+	 */
+	private double velocityFactor = 0.3;
+
+	/**
+	 * constructor
+	 *
+	 * @param diversityThreshold restart once the diversity falls below this fraction of the diagonal of the search space
+	 * @param eliteCount         the number of best particles that are never restarted
+	 * @param restartFraction    the fraction of the particles outside the elite that are restarted
+	 * @param selection          which particles are restarted
+	 */
+	public RestartPolicy(double diversityThreshold, int eliteCount, double restartFraction, Selection selection) {
+		if (!(diversityThreshold >= 0))
+			throw new IllegalArgumentException("the diversity threshold must not be negative");
+		if (eliteCount < 1)
+			throw new IllegalArgumentException("the elite must hold at least the best particle");
+		if (!(restartFraction >= 0 && restartFraction <= 1))
+			throw new IllegalArgumentException("the restart fraction must be between 0 and 1");
+		if (selection == null)
+			throw new IllegalArgumentException("a selection must be given");
+		this.diversityThreshold = diversityThreshold;
+		this.eliteCount = eliteCount;
+		this.restartFraction = restartFraction;
+		this.selection = selection;
+	}
+
+	/**
+	 * set the fewest update cycles between restarts
+	 */
+	public void setCooldown(int cooldown) {
+		if (cooldown < 0)
+			throw new IllegalArgumentException("the cooldown must not be negative");
+		this.cooldown = cooldown;
+	}
+
+	/**
+	 * set how the new positions are spread over the search space
+	 */
+	public void setInitialiser(Initialiser initialiser) {
+		this.initialiser = initialiser;
+	}
+
+	/**
+	 * set the factor of the range of the search space that the new velocities may be drawn from
+	 */
+	public void setVelocityFactor(double velocityFactor) {
+		this.velocityFactor = velocityFactor;
+	}
+
+	Initialiser getInitialiser() {
+		return initialiser;
+	}
+
+	double getVelocityFactor() {
+		return velocityFactor;
+	}
+
+	/**
+	 * whether a swarm should restart now
+	 *
+	 * @param diversity       the root mean square distance of the positions from their centroid
+	 * @param diagonal        the length of the diagonal of the search space
+	 * @param cyclesSinceLast the update cycles since the last restart, or since the start
+	 */
+	boolean shouldRestart(double diversity, double diagonal, long cyclesSinceLast) {
+		return cyclesSinceLast >= cooldown && diversity < diversityThreshold * diagonal;
+	}
+
+	/**
+	 * choose the particles to restart
+	 *
+	 * @param state   the state holding the particles
+	 * @param ranking the indices of the particles from the best personal best to the worst
+	 * @return the indices of the particles to restart
+	 */
+	int[] select(SwarmState state, int[] ranking) {
+		int candidates = Math.max(0, ranking.length - eliteCount);
+		int count = (int) Math.round(restartFraction * candidates);
+		if (count == 0)
+			return new int[0];
+		int[] rest = Arrays.copyOfRange(ranking, ranking.length - candidates, ranking.length);
+		if (selection == Selection.Worst)
+			return Arrays.copyOfRange(rest, candidates - count, candidates);
+
+		//the squared distance from each candidate to its nearest other particle, and the nearest first
+		double[] nearest = new double[candidates];
+		for (int i = 0; i < candidates; i++) {
+			int offset = state.offset(rest[i]);
+			nearest[i] = Double.POSITIVE_INFINITY;
+			for (int other = 0; other < state.particleCount; other++) {
+				if (other == rest[i])
+					continue;
+				int otherOffset = state.offset(other);
+				double squares = 0;
+				for (int d = 0; d < state.dimensions; d++) {
+					double difference = state.positions[offset + d] - state.positions[otherOffset + d];
+					squares += difference * difference;
+				}
+				nearest[i] = Math.min(nearest[i], squares);
+			}
+		}
+		return IntStream.range(0, candidates).boxed()
+				.sorted((a, b) -> Double.compare(nearest[a], nearest[b]))
+				.limit(count)
+				.mapToInt(i -> rest[i]).toArray();
+	}
+}
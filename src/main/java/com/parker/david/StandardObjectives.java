@@ -0,0 +1,140 @@
+package com.parker.david;
+
+import java.util.Arrays;
+
+import static java.lang.Math.*;
+
+/**
+ * a set of well known test functions for minimisation, each with the symmetric bound of its usual search space
+ */
+public class StandardObjectives {
+
+	/**
+	 * get a test function by its class name, ignoring case
+	 *
+	 * @param name the name of the test function, such as eggholder or rastrigin
+	 */
+	public static TestFunction byName(String name) {
+		switch (name.toLowerCase()) {
+			case "eggholder":
+				return new Eggholder();
+			case "rastrigin":
+				return new Rastrigin();
+			case "sphere":
+				return new Sphere();
+			case "rosenbrock":
+				return new Rosenbrock();
+			default:
+				throw new IllegalArgumentException("unknown test function " + name);
+		}
+	}
+
+	/**
+	 * a test function, searched over [-bound, bound] in every dimension
+	 */
+	public abstract static class TestFunction extends ObjectiveFunction {
+		/**
+		 * the bound of the search space in every dimension
+		 */
+		public final double bound;
+
+		TestFunction(double bound) {
+			super(Type.Minimisation);
+			this.bound = bound;
+		}
+
+		/**
+		 * the minimum constraints of the usual search space
+		 *
+		 * @param dimensions the number of dimensions
+		 */
+		public double[] minConstraints(int dimensions) {
+			double[] constraints = new double[dimensions];
+			Arrays.fill(constraints, -bound);
+			return constraints;
+		}
+
+		/**
+		 * the maximum constraints of the usual search space
+		 *
+		 * @param dimensions the number of dimensions
+		 */
+		public double[] maxConstraints(int dimensions) {
+			double[] constraints = new double[dimensions];
+			Arrays.fill(constraints, bound);
+			return constraints;
+		}
+	}
+
+	/**
+	 * the eggholder function, defined over 2 parameters x and y. minimum of -959.6407 at (512, 404.2319)
+	 */
+	public static class Eggholder extends TestFunction {
+		public Eggholder() {
+			super(512);
+		}
+
+		@Override
+		public double getFitness(double[] parameters) {
+			double x = parameters[0];
+			double y = parameters[1];
+			return -(y + 47) * sin(sqrt(abs(y + x / 2.0 + 47))) - x * sin(sqrt(abs(x - (y + 47))));
+		}
+	}
+
+	/**
+	 * the rastrigin function, defined over any number of parameters. minimum of 0 at the origin
+	 */
+	public static class Rastrigin extends TestFunction {
+		public Rastrigin() {
+			super(5.12);
+		}
+
+		@Override
+		public double getFitness(double[] parameters) {
+			double sum = 10 * parameters.length;
+			for (double x : parameters) {
+				sum += x * x - 10 * cos(2 * PI * x);
+			}
+			return sum;
+		}
+	}
+
+	/**
+	 * the sphere function, defined over any number of parameters. minimum of 0 at the origin
+	 */
+	public static class Sphere extends TestFunction {
+		public Sphere() {
+			super(100);
+		}
+
+		@Override
+		public double getFitness(double[] parameters) {
+			double sum = 0;
+			for (double x : parameters) {
+				sum += x * x;
+			}
+			return sum;
+		}
+	}
+
+	/**
+	 * the rosenbrock function, defined over 2 or more parameters. minimum of 0 at (1, 1, ..., 1)
+	 */
+	public static class Rosenbrock extends TestFunction {
+		public Rosenbrock() {
+			super(30);
+		}
+
+		@Override
+		public double getFitness(double[] parameters) {
+			double sum = 0;
+			for (int i = 0; i < parameters.length - 1; i++) {
+				double x = parameters[i];
+				double next = parameters[i + 1];
+				sum += 100 * (next - x * x) * (next - x * x) + (1 - x) * (1 - x);
+			}
+			return sum;
+		}
+	}
+}
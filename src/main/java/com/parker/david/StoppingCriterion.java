@@ -0,0 +1,200 @@
+package com.parker.david;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a rule for when a swarm should stop optimising, checked at the end of every update cycle.
+ * subclass this to define a new rule, or use one of the factory methods for the common ones.
+ * a criterion may keep state for the run it is checking, which is reset when the run starts, so one criterion should
+ * not be shared by swarms optimising at the same time
+ */
+public abstract class StoppingCriterion {
+	/**
+	 * a short description of the rule, reported when it fires
+	 */
+	private final String description;
+
+	/**
+	 * constructor
+	 *
+	 * @param description a short description of the rule, reported when it fires
+	 */
+	protected StoppingCriterion(String description) {
+		this.description = description;
+	}
+
+	/**
+	 * called once before the first update cycle of a run
+	 *
+	 * @param swarm the swarm about to be optimised
+	 */
+	protected void start(Swarm swarm) {
+	}
+
+	/**
+	 * whether the swarm should stop, called after each update cycle
+	 *
+	 * @param swarm the swarm being optimised
+	 */
+	protected abstract boolean shouldStop(Swarm swarm);
+
+	/**
+	 * the description of the rule
+	 */
+	@Override
+	public String toString() {
+		return description;
+	}
+
+	/**
+	 * stop once the global best has not improved for more than a number of update cycles
+	 *
+	 * @param maxIterationsWithoutImprovement the number of update cycles without improvement that are allowed
+	 */
+	public static StoppingCriterion maxIterationsWithoutImprovement(int maxIterationsWithoutImprovement) {
+		return new StoppingCriterion("more than " + maxIterationsWithoutImprovement + " iterations without improvement") {
+			@Override
+			protected boolean shouldStop(Swarm swarm) {
+				return swarm.getIterationsSinceImprovement() > maxIterationsWithoutImprovement;
+			}
+		};
+	}
+
+	/**
+	 * stop once the swarm has run a number of update cycles in total
+	 *
+	 * @param maxIterations the number of update cycles
+	 */
+	public static StoppingCriterion maxIterations(long maxIterations) {
+		return new StoppingCriterion(maxIterations + " iterations") {
+			@Override
+			protected boolean shouldStop(Swarm swarm) {
+				return swarm.getIterations() >= maxIterations;
+			}
+		};
+	}
+
+	/**
+	 * stop before the swarm would score more than a number of positions in total, including the initial population.
+	 * each update cycle scores every particle once, so the swarm stops when the next cycle would go over the budget.
+	 * positions scored outside update cycles are counted but not held back, so the budget can be overshot by them: an
+	 * opposition initialiser scores twice the swarm when it is built, before any check, and a restart at the end of a
+	 * cycle can go over by up to the number of particles it restarts, always fewer than the swarm size
+	 *
+	 * @param maxEvaluations the number of evaluations
+	 */
+	public static StoppingCriterion maxEvaluations(long maxEvaluations) {
+		return new StoppingCriterion(maxEvaluations + " evaluations") {
+			@Override
+			protected boolean shouldStop(Swarm swarm) {
+				return swarm.getEvaluations() + swarm.getParticleCount() > maxEvaluations;
+			}
+		};
+	}
+
+	/**
+	 * stop once a length of time has passed since the run started.
+	 * checked between update cycles, so a run can go over the deadline by up to the length of one cycle
+	 *
+	 * @param timeout the length of time
+	 * @param unit    the unit of the timeout
+	 */
+	public static StoppingCriterion deadline(long timeout, TimeUnit unit) {
+		return new StoppingCriterion("deadline of " + timeout + " " + unit.toString().toLowerCase()) {
+			private long deadline;
+
+			@Override
+			protected void start(Swarm swarm) {
+				deadline = System.nanoTime() + unit.toNanos(timeout);
+			}
+
+			@Override
+			protected boolean shouldStop(Swarm swarm) {
+				return System.nanoTime() - deadline >= 0;
+			}
+		};
+	}
+
+	/**
+	 * stop once the global best is at least as good as a target fitness
+	 *
+	 * @param objectiveFunction the objective function the swarm is optimising, which decides what better means
+	 * @param target            the target fitness
+	 */
+	public static StoppingCriterion fitnessTarget(ObjectiveFunction objectiveFunction, double target) {
+		return new StoppingCriterion("fitness target of " + target) {
+			@Override
+			protected boolean shouldStop(Swarm swarm) {
+				return objectiveFunction.compareFitnesses(swarm.getBestFitness(), target) != -1;
+			}
+		};
+	}
+
+	/**
+	 * stop once the global best has improved by less than a fraction of itself over a window of update cycles
+	 *
+	 * @param tolerance the relative improvement below which the swarm stops, eg 1e-6
+	 * @param window    the number of update cycles the improvement is measured over, at least 1
+	 */
+	public static StoppingCriterion relativeImprovement(double tolerance, int window) {
+		if (window < 1)
+			throw new IllegalArgumentException("the improvement must be measured over at least one update cycle");
+		return new StoppingCriterion("relative improvement under " + tolerance + " over " + window + " iterations") {
+			/**
+			 * the best fitness at the end of each of the last window cycles, as a ring
+			 */
+			private final double[] history = new double[window];
+			private long cycles;
+
+			@Override
+			protected void start(Swarm swarm) {
+				cycles = 0;
+			}
+
+			@Override
+			protected boolean shouldStop(Swarm swarm) {
+				double current = swarm.getBestFitness();
+				int slot = (int) (cycles % window);
+				double old = history[slot];
+				history[slot] = current;
+				return ++cycles > window && Math.abs(current - old) <= tolerance * Math.abs(old);
+			}
+		};
+	}
+
+	/**
+	 * stop once a cancellation token is cancelled, from any thread
+	 *
+	 * @param token the token
+	 */
+	public static StoppingCriterion cancelled(CancellationToken token) {
+		return new StoppingCriterion("cancelled") {
+			@Override
+			protected boolean shouldStop(Swarm swarm) {
+				return token.isCancelled();
+			}
+		};
+	}
+
+	/**
+	 * stop once the thread running the swarm is interrupted. the interrupt is left set for the caller to see
+	 */
+	public static StoppingCriterion interrupted() {
+		return new Interrupted();
+	}
+
+	/**
+	 * the criterion of interrupted(), a class of its own so a steady state run can tell it apart, as there the caller's
+	 * interrupt arrives while it waits for the particle threads rather than on the thread checking the criteria
+	 */
+	static final class Interrupted extends StoppingCriterion {
+		Interrupted() {
+			super("interrupted");
+		}
+
+		@Override
+		protected boolean shouldStop(Swarm swarm) {
+			return Thread.currentThread().isInterrupted();
+		}
+	}
+}
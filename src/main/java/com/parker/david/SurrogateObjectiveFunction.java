@@ -0,0 +1,460 @@
+package com.parker.david;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * an objective function that screens points with a cheap model of the wrapped objective function before paying for the
+ * real thing. the model is a gaussian process fitted to the most recent points scored for real, which predicts both a
+ * fitness and how uncertain it is about it. a point is sent to the wrapped objective function when its optimistic
+ * fitness, the prediction less kappa times the uncertainty, is among the best of its batch or beats the best real fitness
+ * seen, so both promising and poorly understood points are scored for real. the other points are given their pessimistic
+ * fitness, the prediction plus kappa times the uncertainty, so a swarm does not chase a prediction it never checked.
+ * safe to use from many threads at once
+ */
+public class SurrogateObjectiveFunction extends ObjectiveFunction {
+	/**
+	 * the number of points scored for real one at a time, rather than in a batch, between fits of the model
+	 */
+	static final int POINTS_PER_FIT = 10;
+
+	/**
+	 * the objective function being screened
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * the fraction of each batch sent to the wrapped objective function, on top of any point that beats the best real fitness
+	 */
+	private final double exposure;
+
+	/**
+	 * how many standard deviations of uncertainty the optimistic and pessimistic fitnesses are from the prediction
+	 */
+	private final double kappa;
+
+	/**
+	 * the most points the model is fitted to, the fit costs the cube of this
+	 */
+	private final int archiveSize;
+
+	/**
+	 * the points scored for real, as a ring of the most recent archiveSize. guarded by this
+	 */
+	private double[] archivePositions;
+	private final double[] archiveFitnesses;
+	private int archiveCount;
+	private int archiveNext;
+
+	/**
+	 * counts the changes to the archive that call for a new model, so a model can tell whether it is out of date, and the
+	 * points scored one at a time since the last such change. guarded by this
+	 */
+	private long archiveVersion;
+	private int singlePoints;
+
+	/**
+	 * whether a thread is fitting a new model. guarded by this
+	 */
+	private boolean fitting;
+
+	/**
+	 * the best fitness the wrapped objective function has returned, and whether there is one. guarded by this
+	 */
+	private double bestRealFitness;
+	private boolean hasBestRealFitness;
+
+	/**
+	 * the fraction of a real evaluation owed, carried from one lookup or batch to the next so that small batches, such as
+	 * the chunks of a synchronous update cycle, are exposed at the same overall rate as large ones. guarded by this
+	 */
+	private double exposureCredit;
+
+	/**
+	 * the latest fitted model, replaced after the archive changes, null until there are enough points
+	 */
+	private volatile Model model;
+
+	/**
+	 * the number of points scored by the wrapped objective function, and the number answered by the model alone
+	 */
+	private final AtomicLong realEvaluations = new AtomicLong();
+	private final AtomicLong predictedEvaluations = new AtomicLong();
+
+	/**
+	 * constructor
+	 *
+	 * @param objectiveFunction the objective function being screened
+	 * @param exposure          the fraction of each batch sent to the wrapped objective function, between 0 and 1
+	 * @param kappa             how many standard deviations of uncertainty to allow for, eg 2
+	 * @param archiveSize       the most points the model is fitted to, eg 200
+	 */
+	public SurrogateObjectiveFunction(ObjectiveFunction objectiveFunction, double exposure, double kappa, int archiveSize) {
+		super(objectiveFunction.objectiveType);
+		this.objectiveFunction = objectiveFunction;
+		this.exposure = exposure;
+		this.kappa = kappa;
+		this.archiveSize = archiveSize;
+		this.archiveFitnesses = new double[archiveSize];
+	}
+
+	/**
+	 * get the fitness of a point, from the wrapped objective function if the point is promising or the model is not
+	 * ready, otherwise the model's pessimistic prediction
+	 */
+	@Override
+	public double getFitness(double[] parameters) {
+		Model current = model(parameters.length);
+		double[] prediction = current == null ? null : current.predict(parameters, 0);
+		boolean real;
+		synchronized (this) {
+			exposureCredit += exposure;
+			real = prediction == null || beatsBestReal(optimistic(prediction)) || exposureCredit >= 1;
+			if (real)
+				exposureCredit = Math.max(0, exposureCredit - 1);
+		}
+		if (!real) {
+			predictedEvaluations.incrementAndGet();
+			return pessimistic(prediction);
+		}
+		double fitness = objectiveFunction.getFitness(parameters);
+		realEvaluations.incrementAndGet();
+		archive(parameters, 0, 1, parameters.length, new double[]{fitness}, 0, false);
+		return fitness;
+	}
+
+	/**
+	 * get the fitnesses of a population, sending the points with the best optimistic fitness, and any that beat the best
+	 * real fitness, on to the wrapped objective function as a single smaller batch
+	 */
+	@Override
+	public void getFitnesses(double[] population, int dimensions, int from, int to, double[] fitnesses) {
+		int count = to - from;
+		Model current = model(dimensions);
+		if (current == null) {
+			objectiveFunction.getFitnesses(population, dimensions, from, to, fitnesses);
+			realEvaluations.addAndGet(count);
+			archive(population, from, count, dimensions, fitnesses, from, true);
+			return;
+		}
+
+		double[][] predictions = new double[count][];
+		for (int i = 0; i < count; i++) {
+			predictions[i] = current.predict(population, (from + i) * dimensions);
+		}
+		int[] order = IntStream.range(0, count).boxed()
+				.sorted((a, b) -> compareFitnesses(optimistic(predictions[b]), optimistic(predictions[a])))
+				.mapToInt(Integer::intValue).toArray();
+		boolean[] real = new boolean[count];
+		int realCount = 0;
+		synchronized (this) {
+			exposureCredit += exposure * count;
+			int exposed = Math.min(count, (int) (exposureCredit + 1e-9));
+			exposureCredit -= exposed;
+			for (int rank = 0; rank < count; rank++) {
+				int i = order[rank];
+				real[i] = rank < exposed || beatsBestReal(optimistic(predictions[i]));
+				if (real[i])
+					realCount++;
+			}
+		}
+
+		//gather the exposed points into a population of their own and score it in one call
+		double[] realPopulation = new double[realCount * dimensions];
+		double[] realFitnesses = new double[realCount];
+		int[] realPoints = new int[realCount];
+		for (int i = 0, j = 0; i < count; i++) {
+			if (real[i]) {
+				System.arraycopy(population, (from + i) * dimensions, realPopulation, j * dimensions, dimensions);
+				realPoints[j++] = from + i;
+			} else {
+				fitnesses[from + i] = pessimistic(predictions[i]);
+			}
+		}
+		objectiveFunction.getFitnesses(realPopulation, dimensions, 0, realCount, realFitnesses);
+		realEvaluations.addAndGet(realCount);
+		predictedEvaluations.addAndGet(count - realCount);
+		for (int j = 0; j < realCount; j++) {
+			fitnesses[realPoints[j]] = realFitnesses[j];
+		}
+		archive(realPopulation, 0, realCount, dimensions, realFitnesses, 0, true);
+	}
+
+	/**
+	 * the prediction moved towards a better fitness by kappa times the uncertainty
+	 */
+	private double optimistic(double[] prediction) {
+		return objectiveType == Type.Minimisation ? prediction[0] - kappa * prediction[1] : prediction[0] + kappa * prediction[1];
+	}
+
+	/**
+	 * the prediction moved towards a worse fitness by kappa times the uncertainty
+	 */
+	private double pessimistic(double[] prediction) {
+		return objectiveType == Type.Minimisation ? prediction[0] + kappa * prediction[1] : prediction[0] - kappa * prediction[1];
+	}
+
+	/**
+	 * whether a fitness is better than any the wrapped objective function has returned, must hold the lock
+	 */
+	private boolean beatsBestReal(double fitness) {
+		return !hasBestRealFitness || compareFitnesses(fitness, bestRealFitness) == 1;
+	}
+
+	/**
+	 * add points scored for real to the archive, replacing the oldest if full. a fit costs the cube of the archive size,
+	 * so rather than after every point the model is fitted again after every batch, and after every POINTS_PER_FIT points
+	 * scored one at a time
+	 *
+	 * @param positions   an array holding the points, one after another
+	 * @param from        the index of the first point
+	 * @param count       the number of points
+	 * @param dimensions  the number of dimensions of each point
+	 * @param fitnesses   an array holding the fitnesses of the points
+	 * @param fitnessFrom the index of the first point's fitness
+	 * @param batch       whether the points were scored as a batch
+	 */
+	private synchronized void archive(double[] positions, int from, int count, int dimensions, double[] fitnesses, int fitnessFrom, boolean batch) {
+		if (count == 0)
+			return;
+		if (archivePositions == null)
+			archivePositions = new double[archiveSize * dimensions];
+		for (int i = 0; i < count; i++) {
+			double fitness = fitnesses[fitnessFrom + i];
+			System.arraycopy(positions, (from + i) * dimensions, archivePositions, archiveNext * dimensions, dimensions);
+			archiveFitnesses[archiveNext] = fitness;
+			archiveNext = (archiveNext + 1) % archiveSize;
+			archiveCount = Math.min(archiveCount + 1, archiveSize);
+			if (!hasBestRealFitness || compareFitnesses(fitness, bestRealFitness) == 1) {
+				bestRealFitness = fitness;
+				hasBestRealFitness = true;
+			}
+		}
+		singlePoints = batch ? 0 : singlePoints + count;
+		if (batch || singlePoints >= POINTS_PER_FIT) {
+			singlePoints = 0;
+			archiveVersion++;
+		}
+	}
+
+	/**
+	 * get the latest model, first fitting a new one if the archive has changed and no other thread is fitting one, or
+	 * null if there are not yet enough points. the fit is done outside the lock, so while one thread fits the others
+	 * carry on with the model it replaces
+	 *
+	 * @param dimensions the number of dimensions of the points being scored
+	 */
+	private Model model(int dimensions) {
+		Model current = model;
+		double[] positions;
+		double[] fitnesses;
+		long version;
+		synchronized (this) {
+			if (fitting || archiveCount <= 2 * dimensions || (current != null && current.version == archiveVersion))
+				return current;
+			fitting = true;
+			version = archiveVersion;
+			positions = Arrays.copyOf(archivePositions, archiveCount * dimensions);
+			fitnesses = Arrays.copyOf(archiveFitnesses, archiveCount);
+		}
+		Model fitted = null;
+		try {
+			fitted = new Model(positions, fitnesses, dimensions, version);
+		} finally {
+			synchronized (this) {
+				fitting = false;
+				if (fitted != null)
+					model = fitted;
+			}
+		}
+		return fitted;
+	}
+
+	/**
+	 * get the number of points scored by the wrapped objective function
+	 */
+	public long getRealEvaluations() {
+		return realEvaluations.get();
+	}
+
+	/**
+	 * get the number of points answered by the model alone
+	 */
+	public long getPredictedEvaluations() {
+		return predictedEvaluations.get();
+	}
+
+	/**
+	 * a summary of how much of the work the model took on
+	 */
+	@Override
+	public String toString() {
+		return String.format("surrogate: %d real evaluations, %d predicted", realEvaluations.get(), predictedEvaluations.get());
+	}
+
+	/**
+	 * a gaussian process with a squared exponential kernel over inputs scaled to unit variance in each dimension,
+	 * fitted to a fixed set of points. immutable once built, so it may be used from many threads
+	 */
+	static final class Model {
+		/**
+		 * added to the diagonal of the kernel matrix, keeps the factorisation stable when points are close together
+		 */
+		private static final double NUGGET = 1e-6;
+
+		/**
+		 * the version of the archive the model was fitted to
+		 */
+		private final long version;
+
+		private final int dimensions;
+		private final int count;
+		private final double[] points;
+		private final double[] centre;
+		private final double[] scale;
+		private final double meanFitness;
+		private final double fitnessScale;
+		private final double inverseLengthSquared;
+
+		/**
+		 * the lower triangle of the cholesky factor of the kernel matrix, row major
+		 */
+		private final double[] factor;
+
+		/**
+		 * the kernel matrix inverse times the scaled fitnesses
+		 */
+		private final double[] weights;
+
+		Model(double[] positions, double[] fitnesses, int dimensions, long version) {
+			this.version = version;
+			this.dimensions = dimensions;
+			this.count = fitnesses.length;
+
+			//scale every dimension, and the fitness, to zero mean and unit variance
+			centre = new double[dimensions];
+			scale = new double[dimensions];
+			for (int d = 0; d < dimensions; d++) {
+				double sum = 0, sumOfSquares = 0;
+				for (int p = 0; p < count; p++) {
+					double value = positions[p * dimensions + d];
+					sum += value;
+					sumOfSquares += value * value;
+				}
+				centre[d] = sum / count;
+				double variance = sumOfSquares / count - centre[d] * centre[d];
+				scale[d] = variance > 0 ? 1 / Math.sqrt(variance) : 1;
+			}
+			points = new double[count * dimensions];
+			for (int i = 0; i < points.length; i++) {
+				points[i] = (positions[i] - centre[i % dimensions]) * scale[i % dimensions];
+			}
+			double sum = 0, sumOfSquares = 0;
+			for (double fitness : fitnesses) {
+				sum += fitness;
+				sumOfSquares += fitness * fitness;
+			}
+			meanFitness = sum / count;
+			double variance = sumOfSquares / count - meanFitness * meanFitness;
+			fitnessScale = variance > 0 ? Math.sqrt(variance) : 1;
+
+			//the length scale is the median distance between the points
+			double[] distances = new double[count * (count - 1) / 2];
+			for (int i = 0, k = 0; i < count; i++) {
+				for (int j = 0; j < i; j++) {
+					distances[k++] = squaredDistance(points, i * dimensions, points, j * dimensions);
+				}
+			}
+			Arrays.sort(distances);
+			double medianSquared = distances.length == 0 ? 1 : Math.max(distances[distances.length / 2], 1e-12);
+			inverseLengthSquared = 1 / medianSquared;
+
+			//factor the kernel matrix and solve for the weights
+			factor = new double[count * count];
+			for (int i = 0; i < count; i++) {
+				for (int j = 0; j <= i; j++) {
+					double value = kernel(squaredDistance(points, i * dimensions, points, j * dimensions)) + (i == j ? NUGGET : 0);
+					for (int k = 0; k < j; k++) {
+						value -= factor[i * count + k] * factor[j * count + k];
+					}
+					factor[i * count + j] = i == j ? Math.sqrt(Math.max(value, NUGGET)) : value / factor[j * count + j];
+				}
+			}
+			double[] scaled = new double[count];
+			for (int i = 0; i < count; i++) {
+				scaled[i] = (fitnesses[i] - meanFitness) / fitnessScale;
+			}
+			weights = backSubstitute(forwardSubstitute(scaled));
+		}
+
+		/**
+		 * predict the fitness of a point and the standard deviation of the prediction
+		 *
+		 * @param positions an array holding the point
+		 * @param offset    the index of the point's first dimension within the array
+		 * @return the predicted fitness and its standard deviation
+		 */
+		double[] predict(double[] positions, int offset) {
+			double[] point = new double[dimensions];
+			for (int d = 0; d < dimensions; d++) {
+				point[d] = (positions[offset + d] - centre[d]) * scale[d];
+			}
+			double[] covariances = new double[count];
+			double mean = 0;
+			for (int i = 0; i < count; i++) {
+				covariances[i] = kernel(squaredDistance(point, 0, points, i * dimensions));
+				mean += covariances[i] * weights[i];
+			}
+			double[] projected = forwardSubstitute(covariances);
+			double variance = 1 + NUGGET;
+			for (double value : projected) {
+				variance -= value * value;
+			}
+			return new double[]{meanFitness + mean * fitnessScale, Math.sqrt(Math.max(variance, 0)) * fitnessScale};
+		}
+
+		private double kernel(double squaredDistance) {
+			return Math.exp(-0.5 * squaredDistance * inverseLengthSquared);
+		}
+
+		private double squaredDistance(double[] a, int aOffset, double[] b, int bOffset) {
+			double sum = 0;
+			for (int d = 0; d < dimensions; d++) {
+				double difference = a[aOffset + d] - b[bOffset + d];
+				sum += difference * difference;
+			}
+			return sum;
+		}
+
+		/**
+		 * solve factor * x = b
+		 */
+		private double[] forwardSubstitute(double[] b) {
+			double[] x = new double[count];
+			for (int i = 0; i < count; i++) {
+				double value = b[i];
+				for (int k = 0; k < i; k++) {
+					value -= factor[i * count + k] * x[k];
+				}
+				x[i] = value / factor[i * count + i];
+			}
+			return x;
+		}
+
+		/**
+		 * solve transpose(factor) * x = b
+		 */
+		private double[] backSubstitute(double[] b) {
+			double[] x = new double[count];
+			for (int i = count - 1; i >= 0; i--) {
+				double value = b[i];
+				for (int k = i + 1; k < count; k++) {
+					value -= factor[k * count + i] * x[k];
+				}
+				x[i] = value / factor[i * count + i];
+			}
+			return x;
+		}
+	}
+}
@@ -1,6 +1,20 @@
 package com.parker.david;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 /**
  * the swarm itself, takes in a bunch of parameters and finds a near optimal solution using the optimise() method.
@@ -17,7 +31,16 @@ public class Swarm {
 	 * @return an arraylist of the parameters for particle
 	 */
 	public ArrayList<Double> getBestPosition() {
-		return bestPosition;
+		return Utilities.toList(bestPosition, 0, bestPosition.length);
+	}
+
+	/**
+	 * returns a copy of the position thus far that has the best fitness
+	 *
+	 * @return an array of the parameters for particle
+	 */
+	public double[] getBestPositionArray() {
+		return bestPosition.clone();
 	}
 
 	/**
@@ -30,17 +53,23 @@ public class Swarm {
 	}
 
 	/**
-	 * internal storage for the best position
+	 * internal storage for the best position. replaced rather than written to when a new best is found,
+	 * so a particle reading it from another thread never sees a half written position
 	 */
-	private ArrayList<Double> bestPosition;
+	private volatile double[] bestPosition;
 
 	/**
 	 * internal storage for the best fitness
 	 */
-	private double bestFitness;
+	private volatile double bestFitness;
+
+	/**
+	 * the contiguous storage for every particle's position, velocity and best position
+	 */
+	private final SwarmState state;
 
 	/**
-	 * the set of particles that form this swarm
+	 * the set of particles that form this swarm, each a view over its slice of the state
 	 */
 	private final ArrayList<Particle> particles;
 
@@ -49,6 +78,108 @@ public class Swarm {
 	 */
 	private int iterationsSinceImprovement;
 
+	/**
+	 * the number of update cycles run thus far
+	 */
+	private long iterations;
+
+	/**
+	 * the number of positions scored thus far, including the initial population
+	 */
+	private long evaluations;
+
+	/**
+	 * records the state of the swarm after each update cycle, null if not recording
+	 */
+	private TrajectoryRecorder trajectoryRecorder;
+
+	/**
+	 * the listeners called back as the swarm runs
+	 */
+	private final CopyOnWriteArrayList<SwarmListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * counts and times the swarm's work, null if not measuring
+	 */
+	private SwarmMetrics metrics;
+
+	/**
+	 * restarts part of the swarm once it collapses, null to never restart
+	 */
+	private RestartPolicy restartPolicy;
+
+	/**
+	 * the spread of the swarm kept up to date as particles move, null unless a restart policy needs it
+	 */
+	private SwarmDiversity diversity;
+
+	/**
+	 * changes the particles' search parameters between update cycles, null to keep the ones they were built with
+	 */
+	private ParameterControl parameterControl;
+
+	/**
+	 * the number of restarts, and the update cycle of the last
+	 */
+	private int restarts;
+	private long lastRestartIteration;
+
+	/**
+	 * how particles are updated in each update cycle
+	 */
+	private UpdateMode updateMode = UpdateMode.Sequential;
+
+	/**
+	 * the executor that parallel update modes evaluate particles on, null for the common fork join pool
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * per particle flags set during a parallel update cycle, true if that particle improved
+	 */
+	private final boolean[] improved;
+
+	/**
+	 * the social network of the swarm
+	 */
+	private Topology topology = Topology.global();
+
+	/**
+	 * the best informant of every particle, null when the topology is global and the global best is used directly
+	 */
+	private Neighbourhoods neighbourhoods;
+
+	/**
+	 * a copy of each particle's neighbourhood best taken when it moves in an asynchronous cycle, so that a neighbour
+	 * improving at the same time cannot be read half written. allocated on first use
+	 */
+	private double[] neighbourhoodBestCopies;
+
+	/**
+	 * the swarm's own stream of random numbers, for initialisation and the topology. each particle splits off its own from it
+	 */
+	private final RandomSource random;
+
+	/**
+	 * the file checkpoints are written to, null if not checkpointing
+	 */
+	private Path checkpointPath;
+
+	/**
+	 * checkpoint every this many update cycles, 0 to not checkpoint on a count of cycles
+	 */
+	private int checkpointEveryIterations;
+
+	/**
+	 * checkpoint once this many nanoseconds have passed since the last checkpoint, 0 to not checkpoint on time
+	 */
+	private long checkpointEveryNanos;
+
+	/**
+	 * the time the last checkpoint was written, or checkpointing was set up
+	 */
+	private long lastCheckpointNanos;
+
 	/**
 	 * the constructor, upon construction of a swarm, particles are also created and the initial bests are found
 	 *
@@ -61,45 +192,482 @@ public class Swarm {
 	 * @param maxConstraints        the constrain on the maximum values for constraints
 	 * @param initialVelocityFactor factor of the range of the search space that the initial velocity may be initialised to. if -5 < position < 5 and factor = 0.3, then -3 < velocity < 3
 	 */
-	public Swarm(ObjectiveFunction objectiveFunction, int particleCount, double cNeighbour, double cPersonal, double weight, ArrayList<Double> minConstraints, ArrayList<Double> maxConstraints, double initialVelocityFactor) {
+	public Swarm(ObjectiveFunction objectiveFunction, int particleCount, double cNeighbour, double cPersonal, double weight, double[] minConstraints, double[] maxConstraints, double initialVelocityFactor) {
+		this(objectiveFunction, particleCount, cNeighbour, cPersonal, weight, minConstraints, maxConstraints, initialVelocityFactor, Initialiser.uniform());
+	}
+
+	/**
+	 * the constructor, upon construction of a swarm, particles are also created and the initial bests are found
+	 *
+	 * @param objectiveFunction     the objective function that we use to find best values
+	 * @param particleCount         the number of particles that this swarm is to contain
+	 * @param cNeighbour            the coefficient for the best solution in neighbour component of velocity updates
+	 * @param cPersonal             the coefficient for the best personal solution component of velocity updates
+	 * @param weight                the coefficient for the weight of the current velocity for velocity updates
+	 * @param minConstraints        the constraint on the minimum values for constraints
+	 * @param maxConstraints        the constrain on the maximum values for constraints
+	 * @param initialVelocityFactor factor of the range of the search space that the initial velocity may be initialised to
+	 * @param initialiser           how the initial positions are spread over the search space
+	 */
+	public Swarm(ObjectiveFunction objectiveFunction, int particleCount, double cNeighbour, double cPersonal, double weight, double[] minConstraints, double[] maxConstraints, double initialVelocityFactor, Initialiser initialiser) {
+		this(objectiveFunction, particleCount, cNeighbour, cPersonal, weight, minConstraints, maxConstraints, initialVelocityFactor, initialiser, ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * the constructor, upon construction of a swarm, particles are also created and the initial bests are found.
+	 * two swarms built with the same seed and run in the sequential or synchronous update modes search identically
+	 *
+	 * @param objectiveFunction     the objective function that we use to find best values
+	 * @param particleCount         the number of particles that this swarm is to contain
+	 * @param cNeighbour            the coefficient for the best solution in neighbour component of velocity updates
+	 * @param cPersonal             the coefficient for the best personal solution component of velocity updates
+	 * @param weight                the coefficient for the weight of the current velocity for velocity updates
+	 * @param minConstraints        the constraint on the minimum values for constraints
+	 * @param maxConstraints        the constrain on the maximum values for constraints
+	 * @param initialVelocityFactor factor of the range of the search space that the initial velocity may be initialised to
+	 * @param initialiser           how the initial positions are spread over the search space
+	 * @param seed                  the seed of the swarm's random numbers
+	 */
+	public Swarm(ObjectiveFunction objectiveFunction, int particleCount, double cNeighbour, double cPersonal, double weight, double[] minConstraints, double[] maxConstraints, double initialVelocityFactor, Initialiser initialiser, long seed) {
+		this(objectiveFunction, particleCount, cNeighbour, cPersonal, weight, minConstraints, maxConstraints, initialVelocityFactor, initialiser, new RandomSource(seed));
+	}
+
+	/**
+	 * the constructor, upon construction of a swarm, particles are also created and the initial bests are found.
+	 * the swarm draws from the given source and splits one off for each particle, see RandomSource
+	 *
+	 * @param objectiveFunction     the objective function that we use to find best values
+	 * @param particleCount         the number of particles that this swarm is to contain
+	 * @param cNeighbour            the coefficient for the best solution in neighbour component of velocity updates
+	 * @param cPersonal             the coefficient for the best personal solution component of velocity updates
+	 * @param weight                the coefficient for the weight of the current velocity for velocity updates
+	 * @param minConstraints        the constraint on the minimum values for constraints
+	 * @param maxConstraints        the constrain on the maximum values for constraints
+	 * @param initialVelocityFactor factor of the range of the search space that the initial velocity may be initialised to
+	 * @param initialiser           how the initial positions are spread over the search space
+	 * @param random                the swarm's random numbers, a swarm using a source other than the default cannot be checkpointed
+	 */
+	public Swarm(ObjectiveFunction objectiveFunction, int particleCount, double cNeighbour, double cPersonal, double weight, double[] minConstraints, double[] maxConstraints, double initialVelocityFactor, Initialiser initialiser, RandomSource random) {
 		this.objectiveFunction = objectiveFunction;
-		this.particles = new ArrayList<>();
+		this.state = new SwarmState(particleCount, minConstraints.clone(), maxConstraints.clone());
+		this.particles = new ArrayList<>(particleCount);
+		this.improved = new boolean[particleCount];
+		this.random = random;
 
 		//set the initial number since improvement to 0
 		this.iterationsSinceImprovement = 0;
 
-		//create the individual particles and add them to the swarm
+		//spread the initial positions over the search space and score them as a single generation,
+		//then randomly generate the initial velocity of every particle within some constraints
+		evaluations = initialiser.initialise(state, objectiveFunction, random);
 		for (int particleNumber = 0; particleNumber < particleCount; particleNumber++) {
-			ArrayList<Double> initialPosition = new ArrayList<>();
-			ArrayList<Double> initialVelocity = new ArrayList<>();
-			//randomly generate the initial position and velocity within some constraints
-			for (int dimensionNumber = 0; dimensionNumber < maxConstraints.size(); dimensionNumber++) {
-				initialPosition.add(Utilities.constrainedRandom(minConstraints.get(dimensionNumber), maxConstraints.get(dimensionNumber)));
-				initialVelocity.add(Utilities.constrainedRandom(minConstraints.get(dimensionNumber), maxConstraints.get(dimensionNumber)) * initialVelocityFactor);
+			int offset = state.offset(particleNumber);
+			for (int dimensionNumber = 0; dimensionNumber < state.dimensions; dimensionNumber++) {
+				state.velocities[offset + dimensionNumber] = random.nextDouble(minConstraints[dimensionNumber], maxConstraints[dimensionNumber]) * initialVelocityFactor;
 			}
+		}
 
-			//create the new particle and add it to the swarm
-			Particle particleToAdd = new Particle(cPersonal, cNeighbour, weight, initialPosition, initialVelocity, minConstraints, maxConstraints, objectiveFunction);
+		//create the individual particles and add them to the swarm
+		for (int particleNumber = 0; particleNumber < particleCount; particleNumber++) {
+			Particle particleToAdd = new Particle(cPersonal, cNeighbour, weight, state, particleNumber, objectiveFunction, random.split());
+			particleToAdd.reset(state.fitnesses[particleNumber]);
 			particles.add(particleToAdd);
 
 			//get the initial best fitness of the swarm and the associated position
-			double particleToAddFitness = objectiveFunction.getFitness(particleToAdd.getBestPosition());
-			if (bestPosition == null || objectiveFunction.compareFitnesses(particleToAddFitness, bestFitness) == 1) {
-				bestPosition = Utilities.deepCopy(particleToAdd.getBestPosition());
-				bestFitness = particleToAddFitness;
+			if (bestPosition == null || objectiveFunction.compareFitnesses(particleToAdd.getBestFitness(), bestFitness) == 1) {
+				bestPosition = particleToAdd.getBestPositionArray();
+				bestFitness = particleToAdd.getBestFitness();
 			}
 		}
 
 	}
 
+	/**
+	 * the constructor, an adapter that unboxes the constraint lists and calls the primitive version
+	 *
+	 * @param objectiveFunction     the objective function that we use to find best values
+	 * @param particleCount         the number of particles that this swarm is to contain
+	 * @param cNeighbour            the coefficient for the best solution in neighbour component of velocity updates
+	 * @param cPersonal             the coefficient for the best personal solution component of velocity updates
+	 * @param weight                the coefficient for the weight of the current velocity for velocity updates
+	 * @param minConstraints        the constraint on the minimum values for constraints
+	 * @param maxConstraints        the constrain on the maximum values for constraints
+	 * @param initialVelocityFactor factor of the range of the search space that the initial velocity may be initialised to
+	 */
+	public Swarm(ObjectiveFunction objectiveFunction, int particleCount, double cNeighbour, double cPersonal, double weight, ArrayList<Double> minConstraints, ArrayList<Double> maxConstraints, double initialVelocityFactor) {
+		this(objectiveFunction, particleCount, cNeighbour, cPersonal, weight, Utilities.toArray(minConstraints), Utilities.toArray(maxConstraints), initialVelocityFactor);
+	}
+
+	/**
+	 * the constructor for a swarm carrying on from a checkpoint
+	 *
+	 * @param objectiveFunction the objective function the checkpointed swarm was using
+	 * @param checkpoint        the checkpoint
+	 * @param topology          the topology the checkpointed swarm was using
+	 */
+	private Swarm(ObjectiveFunction objectiveFunction, SwarmCheckpoint checkpoint, Topology topology) {
+		if (topology.isGlobal() != (checkpoint.informed == null))
+			throw new IllegalArgumentException("the topology does not match the one the swarm was checkpointed with");
+
+		this.objectiveFunction = objectiveFunction;
+		this.state = checkpoint.state;
+		this.particles = new ArrayList<>(state.particleCount);
+		this.improved = new boolean[state.particleCount];
+		this.random = new RandomSource(checkpoint.randomState);
+		this.bestPosition = checkpoint.bestPosition;
+		this.bestFitness = checkpoint.bestFitness;
+		this.iterationsSinceImprovement = checkpoint.iterationsSinceImprovement;
+		this.iterations = checkpoint.iterations;
+		this.evaluations = checkpoint.evaluations;
+		this.restarts = checkpoint.restarts;
+		this.lastRestartIteration = checkpoint.lastRestartIteration;
+		for (int particleNumber = 0; particleNumber < state.particleCount; particleNumber++) {
+			particles.add(new Particle(checkpoint.cPersonal[particleNumber], checkpoint.cNeighbourhood[particleNumber], checkpoint.weight[particleNumber],
+					state, particleNumber, objectiveFunction, new RandomSource(checkpoint.particleRandomStates[particleNumber])));
+		}
+		this.topology = topology;
+		if (!topology.isGlobal())
+			this.neighbourhoods = new Neighbourhoods(topology, state, objectiveFunction, random, checkpoint.informed, checkpoint.neighbourhoodBest);
+	}
+
+	/**
+	 * carry on a swarm from a checkpoint file. the swarm continues exactly as the checkpointed one would have, as long as
+	 * it is given the same objective function and topology, and the update mode is sequential or synchronous.
+	 * the update mode, listeners, metrics and recorders are not part of a checkpoint and have to be set again. a swarm
+	 * whose parameters were under a parameter control, or that had a restart policy, must be restored with the overload
+	 * taking them
+	 *
+	 * @param path              the checkpoint file
+	 * @param objectiveFunction the objective function the checkpointed swarm was using
+	 * @param topology          the topology the checkpointed swarm was using
+	 */
+	public static Swarm restore(Path path, ObjectiveFunction objectiveFunction, Topology topology) throws IOException {
+		return restore(path, objectiveFunction, topology, null, null);
+	}
+
+	/**
+	 * carry on a swarm from a checkpoint file, under a parameter control and no restart policy
+	 *
+	 * @param path              the checkpoint file
+	 * @param objectiveFunction the objective function the checkpointed swarm was using
+	 * @param topology          the topology the checkpointed swarm was using
+	 * @param parameterControl  the control the checkpointed swarm was using, or null for none
+	 */
+	public static Swarm restore(Path path, ObjectiveFunction objectiveFunction, Topology topology, ParameterControl parameterControl) throws IOException {
+		return restore(path, objectiveFunction, topology, parameterControl, null);
+	}
+
+	/**
+	 * carry on a swarm from a checkpoint file, under a parameter control and a restart policy. each particle's w, c1 and
+	 * c2 are part of the checkpoint, so the control carries on from them as it was rather than starting afresh, which
+	 * setParameterControl would do. likewise the restart count, the update cycle of the last restart and the diversity
+	 * are carried on rather than reset as setRestartPolicy would. the swarm continues exactly as the checkpointed one
+	 * would have given a control and a policy made the same way
+	 *
+	 * @param path              the checkpoint file
+	 * @param objectiveFunction the objective function the checkpointed swarm was using
+	 * @param topology          the topology the checkpointed swarm was using
+	 * @param parameterControl  the control the checkpointed swarm was using, or null for none
+	 * @param restartPolicy     the restart policy the checkpointed swarm was using, or null for none
+	 */
+	public static Swarm restore(Path path, ObjectiveFunction objectiveFunction, Topology topology, ParameterControl parameterControl,
+								RestartPolicy restartPolicy) throws IOException {
+		SwarmCheckpoint checkpoint = SwarmCheckpoint.read(path);
+		Swarm swarm = new Swarm(objectiveFunction, checkpoint, topology);
+		swarm.parameterControl = parameterControl;
+		if (restartPolicy != null) {
+			if (checkpoint.diversity == null)
+				throw new IllegalArgumentException("the swarm was checkpointed without a restart policy, set one with setRestartPolicy instead");
+			swarm.restartPolicy = restartPolicy;
+			swarm.diversity = checkpoint.diversity;
+		}
+		return swarm;
+	}
+
+	/**
+	 * write everything needed to carry on this swarm to a file, atomically replacing any earlier checkpoint in it.
+	 * must not be called while an update cycle is running
+	 *
+	 * @param path the file to write to
+	 * @throws UnsupportedOperationException if the swarm draws from a random source that cannot be checkpointed
+	 */
+	public void checkpoint(Path path) throws IOException {
+		if (!random.canCheckpoint())
+			throw new UnsupportedOperationException("the swarm's random source cannot be checkpointed, only the default one can");
+		int particleCount = state.particleCount;
+		double[] cPersonal = new double[particleCount];
+		double[] cNeighbourhood = new double[particleCount];
+		double[] weight = new double[particleCount];
+		long[] particleRandomStates = new long[particleCount];
+		for (int particleNumber = 0; particleNumber < particleCount; particleNumber++) {
+			Particle particle = particles.get(particleNumber);
+			cPersonal[particleNumber] = particle.getCPersonal();
+			cNeighbourhood[particleNumber] = particle.getCNeighbourhood();
+			weight[particleNumber] = particle.getWeight();
+			particleRandomStates[particleNumber] = particle.getRandom().getState();
+		}
+		new SwarmCheckpoint(state, cPersonal, cNeighbourhood, weight, bestPosition, bestFitness, iterationsSinceImprovement, iterations,
+				evaluations, random.getState(), particleRandomStates,
+				neighbourhoods == null ? null : neighbourhoods.getInformed(),
+				neighbourhoods == null ? null : neighbourhoods.getBest(), restarts, lastRestartIteration, diversity).write(path);
+	}
+
+	/**
+	 * checkpoint the swarm automatically at the end of an update cycle, after a number of cycles or a length of time since
+	 * the last checkpoint, whichever comes first
+	 *
+	 * @param path            the file to write to, or null to stop checkpointing
+	 * @param everyIterations checkpoint every this many update cycles, 0 to not checkpoint on a count of cycles
+	 * @param everyMillis     checkpoint once this many milliseconds have passed since the last checkpoint, 0 to not checkpoint on time
+	 * @throws UnsupportedOperationException if the swarm draws from a random source that cannot be checkpointed
+	 */
+	public void setCheckpointing(Path path, int everyIterations, long everyMillis) {
+		if (path != null && !random.canCheckpoint())
+			throw new UnsupportedOperationException("the swarm's random source cannot be checkpointed, only the default one can");
+		this.checkpointPath = path;
+		this.checkpointEveryIterations = everyIterations;
+		this.checkpointEveryNanos = TimeUnit.MILLISECONDS.toNanos(everyMillis);
+		this.lastCheckpointNanos = System.nanoTime();
+	}
+
+	/**
+	 * set how particles are updated in each update cycle
+	 *
+	 * @param updateMode the update mode
+	 * @param executor   the executor that parallel modes evaluate particles on, null for the common fork join pool
+	 */
+	public void setUpdateMode(UpdateMode updateMode, ExecutorService executor) {
+		this.updateMode = updateMode;
+		this.executor = executor;
+	}
+
+	/**
+	 * set the social network of the swarm, which decides where each particle's neighbourhood best comes from
+	 *
+	 * @param topology the topology
+	 */
+	public void setTopology(Topology topology) {
+		this.topology = topology;
+		this.neighbourhoods = topology.isGlobal() ? null : new Neighbourhoods(topology, state, objectiveFunction, random);
+	}
+
+	/**
+	 * set a recorder to stream the state of the swarm to after each update cycle, the initial state is recorded immediately
+	 *
+	 * @param trajectoryRecorder the recorder, made for this swarm's particle count and dimensions, or null to stop recording
+	 */
+	public void setTrajectoryRecorder(TrajectoryRecorder trajectoryRecorder) {
+		if (trajectoryRecorder != null && (trajectoryRecorder.getParticleCount() != state.particleCount || trajectoryRecorder.getDimensions() != state.dimensions))
+			throw new IllegalArgumentException("the recorder is for " + trajectoryRecorder.getParticleCount() + " particles in "
+					+ trajectoryRecorder.getDimensions() + " dimensions, the swarm has " + state.particleCount + " in " + state.dimensions);
+		this.trajectoryRecorder = trajectoryRecorder;
+		if (trajectoryRecorder != null)
+			trajectoryRecorder.record(iterations, state, bestPosition, bestFitness);
+	}
+
+	/**
+	 * add a listener to be called back as the swarm runs
+	 *
+	 * @param listener the listener
+	 */
+	public void addListener(SwarmListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * stop calling back a listener
+	 *
+	 * @param listener the listener
+	 */
+	public void removeListener(SwarmListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * set the metrics to count and time the swarm's work in, measuring has a small cost so it is off until this is set
+	 *
+	 * @param metrics the metrics, or null to stop measuring
+	 */
+	public void setMetrics(SwarmMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * restart part of the swarm whenever it collapses, which also keeps the swarm's diversity up to date as it moves.
+	 * must not be called while the swarm is optimising
+	 *
+	 * @param restartPolicy the policy, or null to never restart
+	 */
+	public void setRestartPolicy(RestartPolicy restartPolicy) {
+		this.restartPolicy = restartPolicy;
+		this.diversity = restartPolicy == null ? null : new SwarmDiversity(state);
+		this.lastRestartIteration = iterations;
+	}
+
+	/**
+	 * change the particles' search parameters as the swarm runs, replacing the w, c1 and c2 it was built with by whatever
+	 * the control sets. must not be called while the swarm is optimising. to carry on a checkpointed swarm's control, pass
+	 * it to restore instead
+	 *
+	 * @param parameterControl the control, or null to keep the parameters as they are now
+	 */
+	public void setParameterControl(ParameterControl parameterControl) {
+		this.parameterControl = parameterControl;
+		if (parameterControl != null)
+			parameterControl.start(this, random);
+	}
+
+	/**
+	 * get the spread of the swarm, the root mean square distance of the positions from their centroid. kept up to date at
+	 * the end of each update cycle while a restart policy is set, otherwise computed over the whole swarm
+	 */
+	public double getDiversity() {
+		return diversity != null ? diversity.get() : SwarmDiversity.compute(state);
+	}
+
+	/**
+	 * get the number of times part of the swarm has been restarted
+	 */
+	public int getRestarts() {
+		return restarts;
+	}
+
+	/**
+	 * get the number of update cycles since the global best last improved
+	 */
+	public int getIterationsSinceImprovement() {
+		return iterationsSinceImprovement;
+	}
+
+	/**
+	 * get the number of update cycles run thus far
+	 */
+	public long getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * get the number of positions scored thus far, including the initial population
+	 */
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * get the number of particles in the swarm
+	 */
+	public int getParticleCount() {
+		return state.particleCount;
+	}
+
 	/**
 	 * optimise based on the maxIterationsWithoutImprovement stopping criterion
 	 *
 	 * @param maxIterationsWithoutImprovement int max number of iterations we will permit without improvement before stopping
 	 */
 	public void optimise(int maxIterationsWithoutImprovement) {
-		while (iterationsSinceImprovement <= maxIterationsWithoutImprovement)
+		optimise(StoppingCriterion.maxIterationsWithoutImprovement(maxIterationsWithoutImprovement));
+	}
+
+	/**
+	 * run update cycles until any of the stopping criteria fires, each is checked before the first cycle and after every cycle
+	 *
+	 * @param criteria the stopping criteria
+	 * @return the criterion that stopped the run, the first listed if several fired at once
+	 */
+	public StoppingCriterion optimise(StoppingCriterion... criteria) {
+		if (criteria.length == 0)
+			throw new IllegalArgumentException("at least one stopping criterion is needed");
+		for (StoppingCriterion criterion : criteria) {
+			criterion.start(this);
+		}
+		while (true) {
+			for (StoppingCriterion criterion : criteria) {
+				if (criterion.shouldStop(this))
+					return criterion;
+			}
 			update();
+		}
+	}
+
+	/**
+	 * run the swarm without update cycles until any of the stopping criteria fires. concurrency worker threads, virtual
+	 * threads where the jvm has them, each take the particle that has waited longest, move and score it, reading the
+	 * newest neighbourhood or global best when it moves and publishing its personal best as soon as it is found, then
+	 * put it back, so a slow evaluation holds up only the worker running it and a large swarm needs no more threads.
+	 * every particle count evaluations are counted as one update cycle, which is what iterations, iterations without
+	 * improvement and the stopping criteria see. listeners are called back from the worker threads, and trajectory
+	 * frames and checkpoints taken meanwhile are not exact snapshots, as other particles keep moving while they are taken.
+	 * interrupting the calling thread stops the run once the evaluations under way finish if the interrupted criterion is
+	 * among the criteria, which is then returned with the interrupt left set, and otherwise throws IllegalStateException.
+	 * there is no point between cycles where no particle moves, so a swarm with a restart policy, a parameter control or a
+	 * dynamic topology, whose neighbourhoods are drawn again between cycles, cannot run in steady state
+	 *
+	 * @param concurrency the most evaluations that may run at once, the number of worker threads unless the swarm is smaller
+	 * @param criteria    the stopping criteria, checked before the first evaluation and after every cycle's worth
+	 * @return the criterion that stopped the run, the first listed if several fired at once, or null if a worker thread was interrupted
+	 * @throws IllegalStateException if a restart policy, parameter control or dynamic topology is set
+	 */
+	public StoppingCriterion optimiseSteadyState(int concurrency, StoppingCriterion... criteria) {
+		if (criteria.length == 0)
+			throw new IllegalArgumentException("at least one stopping criterion is needed");
+		if (concurrency < 1)
+			throw new IllegalArgumentException("at least one evaluation must be allowed to run at once");
+		if (restartPolicy != null || parameterControl != null)
+			throw new IllegalStateException("a swarm with a restart policy or a parameter control cannot run in steady state");
+		if (topology.isDynamic())
+			throw new IllegalStateException("a swarm with a dynamic topology cannot run in steady state");
+		StoppingCriterion interrupted = null;
+		for (StoppingCriterion criterion : criteria) {
+			criterion.start(this);
+			if (interrupted == null && criterion instanceof StoppingCriterion.Interrupted)
+				interrupted = criterion;
+		}
+		SteadyState run = new SteadyState(criteria);
+		synchronized (run) {
+			run.checkCriteria();
+		}
+		if (run.stoppedBy != null)
+			return run.stoppedBy;
+		if (neighbourhoods != null && neighbourhoodBestCopies == null)
+			neighbourhoodBestCopies = new double[state.positions.length];
+
+		ThreadFactory threadFactory = ParallelLoop.virtualThreadFactory();
+		if (threadFactory == null)
+			threadFactory = Executors.defaultThreadFactory();
+		Thread[] threads = new Thread[Math.min(concurrency, particles.size())];
+		for (int worker = 0; worker < threads.length; worker++) {
+			threads[worker] = threadFactory.newThread(run::runWorker);
+			threads[worker].start();
+		}
+		boolean callerInterrupted = false;
+		for (Thread thread : threads) {
+			while (true) {
+				try {
+					thread.join();
+					break;
+				} catch (InterruptedException e) {
+					if (interrupted == null) {
+						run.stop(null);
+						for (Thread worker : threads) {
+							worker.interrupt();
+						}
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException("interrupted while waiting for the particles to stop", e);
+					}
+					//the caller asked to be stopped by an interrupt, let the evaluations under way finish and keep waiting
+					callerInterrupted = true;
+					run.stop(interrupted);
+				}
+			}
+		}
+		if (callerInterrupted)
+			Thread.currentThread().interrupt();
+		if (run.failure instanceof RuntimeException)
+			throw (RuntimeException) run.failure;
+		if (run.failure instanceof Error)
+			throw (Error) run.failure;
+		return run.stoppedBy;
 	}
 
 	/**
@@ -119,30 +687,474 @@ public class Swarm {
 	 * updates best fitness if we find a new best fitness
 	 * keeps track of number of iterations since improvement
 	 */
-	private void update() {
-		boolean resetImprovement = false;
-		for (Particle particle : particles) {
-
-			// we use g best here to find the best position in this particle's neighbourhood
-			ArrayList<Double> particleNeighbourhoodBest = bestPosition;
-
-			//call the update function for each particle. Returns true if it finds a new best fitness for the particle
-			if (particle.update(particleNeighbourhoodBest)) {
+	void update() {
+		boolean resetImprovement;
+		switch (updateMode) {
+			case Synchronous:
+				resetImprovement = updateSynchronous();
+				break;
+			case Asynchronous:
+				resetImprovement = updateAsynchronous();
+				break;
+			default:
+				resetImprovement = updateSequential();
+		}
+		completeCycle(resetImprovement);
+	}
 
-				//check if the new particle best fitness is also a global best
-				if (objectiveFunction.compareFitnesses(particle.getBestFitness(), bestFitness) == 1) {
-					bestFitness = particle.getBestFitness();
-					bestPosition = particle.getBestPosition();
-					resetImprovement = true;
-				}
+	/**
+	 * move the particles the restart policy chooses to fresh positions, scored as a batch, with fresh velocities
+	 */
+	private void restart() {
+		int[] chosen = restartPolicy.select(state, rankParticles());
+		int count = chosen.length;
+		if (count == 0)
+			return;
+		double[] positions = new double[count * state.dimensions];
+		double[] fitnesses = new double[count];
+		restartPolicy.getInitialiser().fill(positions, count, state.minConstraints, state.maxConstraints, random);
+		objectiveFunction.getFitnesses(positions, state.dimensions, 0, count, fitnesses);
+		for (int particleNumber : chosen) {
+			int offset = state.offset(particleNumber);
+			for (int dimensionNumber = 0; dimensionNumber < state.dimensions; dimensionNumber++) {
+				state.velocities[offset + dimensionNumber] = random.nextDouble(state.minConstraints[dimensionNumber], state.maxConstraints[dimensionNumber]) * restartPolicy.getVelocityFactor();
 			}
 		}
+		replaceParticles(chosen, positions, fitnesses, count);
+		evaluations += count;
+		++restarts;
+		lastRestartIteration = iterations;
+	}
 
+	/**
+	 * the bookkeeping at the end of an update cycle, or of a cycle's worth of evaluations in steady state
+	 *
+	 * @param resetImprovement true if the global best improved during the cycle
+	 */
+	private void completeCycle(boolean resetImprovement) {
 		//if we see an improvement, reset the counter, else increase the count since last improved
 		if (resetImprovement) {
 			iterationsSinceImprovement = 0;
 		} else {
 			++iterationsSinceImprovement;
+
+			//a dynamic topology draws new neighbourhoods after every cycle without improvement
+			if (topology.isDynamic())
+				neighbourhoods.rebuild();
+		}
+
+		++iterations;
+		evaluations += state.particleCount;
+
+		//parameter controls and restarts need a point where no particle moves, so they are never set on a swarm running in
+		//steady state. they come before the recorders and checkpoints so that those see the swarm as the next cycle will
+		if (parameterControl != null)
+			parameterControl.adapt(this, random);
+		if (restartPolicy != null) {
+			diversity.endCycle();
+			if (restartPolicy.shouldRestart(diversity.get(), SwarmDiversity.diagonal(state), iterations - lastRestartIteration))
+				restart();
+		}
+		if (trajectoryRecorder != null)
+			trajectoryRecorder.record(iterations, state, bestPosition, bestFitness);
+		if (metrics != null)
+			metrics.recordIteration(resetImprovement);
+		for (SwarmListener listener : listeners) {
+			listener.onIteration(this, iterations, resetImprovement);
+		}
+		if (checkpointPath != null)
+			checkpointIfDue();
+	}
+
+	/**
+	 * write a checkpoint if enough update cycles or time have passed since the last one
+	 */
+	private void checkpointIfDue() {
+		long now = System.nanoTime();
+		if ((checkpointEveryIterations > 0 && iterations % checkpointEveryIterations == 0) ||
+				(checkpointEveryNanos > 0 && now - lastCheckpointNanos >= checkpointEveryNanos)) {
+			try {
+				checkpoint(checkpointPath);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			lastCheckpointNanos = now;
+		}
+	}
+
+	/**
+	 * update the particles one after another on the calling thread, each seeing any best found earlier in the cycle
+	 *
+	 * @return true if a new global best was found
+	 */
+	private boolean updateSequential() {
+		boolean resetImprovement = false;
+		for (int particleNumber = 0; particleNumber < particles.size(); particleNumber++) {
+			//call the update function for each particle with the best position in its neighbourhood, g best if the topology is global.
+			//returns true if it finds a new best fitness for the particle, in which case pass it on to its neighbours
+			//and check if it is also a global best
+			boolean particleImproved = neighbourhoods == null ?
+					updateParticle(particleNumber, bestPosition, 0) :
+					updateParticle(particleNumber, state.bestPositions, state.offset(neighbourhoods.best(particleNumber)));
+			if (particleImproved && improvedParticle(particleNumber)) {
+				resetImprovement = true;
+			}
+		}
+		return resetImprovement;
+	}
+
+	/**
+	 * update all particles in parallel against the bests from the start of the cycle,
+	 * then reduce their new personal bests into the neighbourhood and global bests in particle order.
+	 * the particles are split into one contiguous chunk per thread, every chunk moves before any is scored
+	 * so that no particle reads a neighbour's best while it is being written, then each chunk is scored as a batch
+	 *
+	 * @return true if a new global best was found
+	 */
+	private boolean updateSynchronous() {
+		final double[] cycleBestPosition = bestPosition;
+		ExecutorService service = parallelExecutor();
+		final int chunks = Math.min(particles.size(), parallelism(service));
+		ParallelLoop.forEach(service, chunks, chunk -> {
+			long start = metrics == null ? 0 : System.nanoTime();
+			for (int particleNumber = chunkStart(chunk, chunks); particleNumber < chunkStart(chunk + 1, chunks); particleNumber++) {
+				if (neighbourhoods == null)
+					particles.get(particleNumber).move(cycleBestPosition, 0);
+				else
+					particles.get(particleNumber).move(state.bestPositions, state.offset(neighbourhoods.best(particleNumber)));
+				if (diversity != null)
+					diversity.moved(particleNumber);
+			}
+			if (metrics != null)
+				metrics.recordMove(System.nanoTime() - start);
+		});
+		ParallelLoop.forEach(service, chunks, chunk -> {
+			int from = chunkStart(chunk, chunks);
+			int to = chunkStart(chunk + 1, chunks);
+			long start = metrics == null ? 0 : System.nanoTime();
+			objectiveFunction.getFitnesses(state.positions, state.dimensions, from, to, state.fitnesses);
+			if (metrics != null)
+				metrics.recordEvaluations(to - from, System.nanoTime() - start);
+			for (int particleNumber = from; particleNumber < to; particleNumber++) {
+				improved[particleNumber] = particles.get(particleNumber).acceptFitness(state.fitnesses[particleNumber]);
+			}
+		});
+
+		boolean resetImprovement = false;
+		for (int particleNumber = 0; particleNumber < particles.size(); particleNumber++) {
+			if (improved[particleNumber] && improvedParticle(particleNumber)) {
+				resetImprovement = true;
+			}
 		}
+		return resetImprovement;
+	}
+
+	/**
+	 * update all particles in parallel, each reading the newest neighbourhood or global best when it moves and publishing
+	 * its own personal best as soon as it is found
+	 *
+	 * @return true if a new global best was found
+	 */
+	private boolean updateAsynchronous() {
+		if (neighbourhoods == null) {
+			ParallelLoop.forEach(parallelExecutor(), particles.size(),
+					particleNumber -> improved[particleNumber] = updateParticle(particleNumber, bestPosition, 0) && improvedParticle(particleNumber));
+		} else {
+			if (neighbourhoodBestCopies == null)
+				neighbourhoodBestCopies = new double[state.positions.length];
+			ParallelLoop.forEach(parallelExecutor(), particles.size(), particleNumber -> {
+				Particle particle = particles.get(particleNumber);
+				int offset = state.offset(particleNumber);
+
+				//copy the neighbourhood best while holding its particle, which it also holds while accepting a new best
+				int neighbourhoodBest = neighbourhoods.best(particleNumber);
+				synchronized (particles.get(neighbourhoodBest)) {
+					System.arraycopy(state.bestPositions, state.offset(neighbourhoodBest), neighbourhoodBestCopies, offset, state.dimensions);
+				}
+				double fitness = moveAndEvaluate(particleNumber, neighbourhoodBestCopies, offset);
+				boolean particleImproved;
+				synchronized (particle) {
+					particleImproved = particle.acceptFitness(fitness);
+				}
+				improved[particleNumber] = particleImproved && improvedParticle(particleNumber);
+			});
+		}
+
+		boolean resetImprovement = false;
+		for (boolean particleImproved : improved) {
+			resetImprovement |= particleImproved;
+		}
+		return resetImprovement;
+	}
+
+	/**
+	 * update a single particle, return true if the particle finds a new best position
+	 *
+	 * @param particleNumber            the index of the particle
+	 * @param neighbourhoodBestPosition an array holding the best position in the particle's neighbourhood
+	 * @param neighbourhoodOffset       the index of the first dimension of the neighbourhood best within that array
+	 */
+	private boolean updateParticle(int particleNumber, double[] neighbourhoodBestPosition, int neighbourhoodOffset) {
+		Particle particle = particles.get(particleNumber);
+		if (metrics == null && diversity == null)
+			return particle.update(neighbourhoodBestPosition, neighbourhoodOffset);
+		return particle.acceptFitness(moveAndEvaluate(particleNumber, neighbourhoodBestPosition, neighbourhoodOffset));
+	}
+
+	/**
+	 * move a particle and get the fitness of its new position, timing both if measuring and tracking the diversity if
+	 * restarting
+	 *
+	 * @param particleNumber            the index of the particle
+	 * @param neighbourhoodBestPosition an array holding the best position in the particle's neighbourhood
+	 * @param neighbourhoodOffset       the index of the first dimension of the neighbourhood best within that array
+	 */
+	private double moveAndEvaluate(int particleNumber, double[] neighbourhoodBestPosition, int neighbourhoodOffset) {
+		Particle particle = particles.get(particleNumber);
+		if (metrics == null) {
+			particle.move(neighbourhoodBestPosition, neighbourhoodOffset);
+			if (diversity != null)
+				diversity.moved(particleNumber);
+			return particle.evaluate();
+		}
+		long start = System.nanoTime();
+		particle.move(neighbourhoodBestPosition, neighbourhoodOffset);
+		long moved = System.nanoTime();
+		if (diversity != null)
+			diversity.moved(particleNumber);
+		double fitness = particle.evaluate();
+		metrics.recordMove(moved - start);
+		metrics.recordEvaluations(1, System.nanoTime() - moved);
+		return fitness;
+	}
+
+	/**
+	 * get a particle of the swarm
+	 *
+	 * @param particleNumber the index of the particle
+	 */
+	Particle getParticle(int particleNumber) {
+		return particles.get(particleNumber);
+	}
+
+	/**
+	 * get the indices of the particles ordered from the best personal best to the worst
+	 */
+	int[] rankParticles() {
+		return IntStream.range(0, state.particleCount).boxed()
+				.sorted((a, b) -> objectiveFunction.compareFitnesses(state.bestFitnesses[b], state.bestFitnesses[a]))
+				.mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * move particles to given positions, which become their personal bests whether or not they are better.
+	 * velocities are kept, and the neighbourhood and global bests take in the new positions.
+	 * must not be called while an update cycle is running
+	 *
+	 * @param particleNumbers the indices of the particles to replace
+	 * @param positions       the new positions, one after another
+	 * @param fitnesses       the fitnesses of the new positions
+	 * @param count           the number of particles to replace
+	 */
+	void replaceParticles(int[] particleNumbers, double[] positions, double[] fitnesses, int count) {
+		for (int i = 0; i < count; i++) {
+			int offset = state.offset(particleNumbers[i]);
+			System.arraycopy(positions, i * state.dimensions, state.positions, offset, state.dimensions);
+			particles.get(particleNumbers[i]).reset(fitnesses[i]);
+		}
+		if (neighbourhoods != null)
+			neighbourhoods.rescan();
+		if (diversity != null)
+			diversity.recompute();
+		for (int i = 0; i < count; i++) {
+			if (offerBest(particleNumbers[i]))
+				iterationsSinceImprovement = 0;
+		}
+	}
+
+	/**
+	 * pass a particle's newly improved personal best on to the particles it informs, and to the global best
+	 *
+	 * @param particleNumber the index of the particle
+	 * @return true if the particle's best became the global best
+	 */
+	private boolean improvedParticle(int particleNumber) {
+		if (neighbourhoods != null)
+			neighbourhoods.improved(particleNumber);
+		return offerBest(particleNumber);
+	}
+
+	/**
+	 * the index of the first particle in a chunk, when the swarm is split into a number of near equal chunks
+	 */
+	private int chunkStart(int chunk, int chunks) {
+		return (int) ((long) chunk * particles.size() / chunks);
+	}
+
+	/**
+	 * replace the global best with a particle's personal best if it is better
+	 *
+	 * @param particleNumber the index of the particle
+	 * @return true if the particle's best became the global best
+	 */
+	private synchronized boolean offerBest(int particleNumber) {
+		Particle particle = particles.get(particleNumber);
+		if (objectiveFunction.compareFitnesses(particle.getBestFitness(), bestFitness) == 1) {
+			double[] newBestPosition = new double[state.dimensions];
+			System.arraycopy(state.bestPositions, state.offset(particleNumber), newBestPosition, 0, state.dimensions);
+			bestFitness = particle.getBestFitness();
+			bestPosition = newBestPosition;
+			for (SwarmListener listener : listeners) {
+				listener.onImprovement(this, iterations, bestFitness);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * the executor to run parallel update cycles on
+	 */
+	private ExecutorService parallelExecutor() {
+		return executor != null ? executor : ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * the number of threads an executor can run tasks on at once
+	 */
+	static int parallelism(ExecutorService service) {
+		if (service instanceof ForkJoinPool)
+			return ((ForkJoinPool) service).getParallelism();
+		if (service instanceof ThreadPoolExecutor)
+			return ((ThreadPoolExecutor) service).getMaximumPoolSize();
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * the shared state of a steady state run, the particle threads synchronize on it to count evaluations into cycles
+	 */
+	private final class SteadyState {
+		/**
+		 * the particles waiting for a worker to move them, each is taken by one worker at a time and put back after its move
+		 */
+		private final BlockingQueue<Integer> ready;
+		private final StoppingCriterion[] criteria;
+
+		/**
+		 * the evaluations completed in the current cycle, and whether any of them improved the global best
+		 */
+		private int cycleEvaluations;
+		private boolean cycleImproved;
+
+		/**
+		 * set once the run should stop, the criterion that fired or null if stopped by an error or interrupt
+		 */
+		private volatile boolean stopped;
+		private StoppingCriterion stoppedBy;
+		private Throwable failure;
+
+		SteadyState(StoppingCriterion[] criteria) {
+			this.ready = new ArrayBlockingQueue<>(particles.size());
+			this.criteria = criteria;
+			for (int particleNumber = 0; particleNumber < particles.size(); particleNumber++) {
+				ready.add(particleNumber);
+			}
+		}
+
+		/**
+		 * the loop of a single worker, moving whichever particle has waited longest, one after another.
+		 * there are never more workers than particles, so one is always waiting
+		 */
+		void runWorker() {
+			try {
+				while (!stopped) {
+					int particleNumber = ready.take();
+					try {
+						step(particleNumber);
+					} finally {
+						ready.add(particleNumber);
+					}
+				}
+			} catch (InterruptedException e) {
+				stop(null);
+			} catch (Throwable e) {
+				synchronized (this) {
+					if (failure == null)
+						failure = e;
+				}
+				stop(null);
+			}
+		}
+
+		/**
+		 * move and score one particle, and complete the cycle if that was its last evaluation
+		 */
+		private void step(int particleNumber) {
+			if (stopped)
+				return;
+			double fitness;
+			if (neighbourhoods == null) {
+				fitness = moveAndEvaluate(particleNumber, bestPosition, 0);
+			} else {
+				int offset = state.offset(particleNumber);
+				int neighbourhoodBest = neighbourhoods.best(particleNumber);
+				synchronized (particles.get(neighbourhoodBest)) {
+					System.arraycopy(state.bestPositions, state.offset(neighbourhoodBest), neighbourhoodBestCopies, offset, state.dimensions);
+				}
+				fitness = moveAndEvaluate(particleNumber, neighbourhoodBestCopies, offset);
+			}
+			Particle particle = particles.get(particleNumber);
+			boolean particleImproved;
+			synchronized (particle) {
+				particleImproved = particle.acceptFitness(fitness);
+			}
+			boolean globalImproved = particleImproved && improvedParticle(particleNumber);
+			synchronized (this) {
+				cycleImproved |= globalImproved;
+				if (++cycleEvaluations == particles.size() && !stopped) {
+					completeCycle(cycleImproved);
+					cycleEvaluations = 0;
+					cycleImproved = false;
+					checkCriteria();
+				}
+			}
+		}
+
+		/**
+		 * stop the run if any criterion fires, must hold the lock
+		 */
+		void checkCriteria() {
+			for (StoppingCriterion criterion : criteria) {
+				if (criterion.shouldStop(Swarm.this)) {
+					stop(criterion);
+					return;
+				}
+			}
+		}
+
+		synchronized void stop(StoppingCriterion criterion) {
+			if (!stopped)
+				stoppedBy = criterion;
+			stopped = true;
+		}
+	}
+
+	/**
+	 * how the particles of a swarm are updated in each update cycle
+	 */
+	public enum UpdateMode {
+		/**
+		 * one particle after another on the calling thread
+		 */
+		Sequential,
+		/**
+		 * all particles in parallel against the best from the start of the cycle, scored a chunk of the generation at a time
+		 * through the batch evaluation of the objective function, followed by a single reduction
+		 */
+		Synchronous,
+		/**
+		 * all particles in parallel, each using and publishing the newest global best as soon as it exists
+		 */
+		Asynchronous
 	}
 }
@@ -0,0 +1,335 @@
+package com.parker.david;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * everything needed to carry on a swarm exactly where it left off, and the binary file format it is saved in.
+ * <p>
+ * the file is little endian. it holds the magic number, format version, particle count and dimensions as ints, then the
+ * constraints, each particle's coefficients, positions, velocities, best positions, fitnesses and best fitnesses as doubles,
+ * the global best, the iteration and evaluation counters, the state of the swarm's and every particle's random numbers,
+ * the neighbourhoods if the topology is not global, the restart count and the update cycle of the last restart, and last
+ * of all the running sums of the diversity if the swarm had a restart policy.
+ * a checkpoint is written to a temporary file next to the target and renamed over it once it is on disk, so the target
+ * always holds either the previous checkpoint or the new one, never a partly written one
+ */
+class SwarmCheckpoint {
+	/**
+	 * the first 4 bytes of a checkpoint file
+	 */
+	static final int MAGIC = 0x50534F43;
+
+	/**
+	 * the version of the file format
+	 */
+	static final int VERSION = 3;
+
+	/**
+	 * the size of the buffer the file is written and read through
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	final SwarmState state;
+	final double[] cPersonal;
+	final double[] cNeighbourhood;
+	final double[] weight;
+	final double[] bestPosition;
+	final double bestFitness;
+	final int iterationsSinceImprovement;
+	final long iterations;
+	final long evaluations;
+	final long randomState;
+	final long[] particleRandomStates;
+
+	/**
+	 * for each particle, the particles that it informs, null if the topology is global
+	 */
+	final int[][] informed;
+
+	/**
+	 * for each particle, the index of its best informant, null if the topology is global
+	 */
+	final int[] neighbourhoodBest;
+
+	final int restarts;
+	final long lastRestartIteration;
+
+	/**
+	 * the diversity kept up to date for the restart policy, null if the swarm had none
+	 */
+	final SwarmDiversity diversity;
+
+	SwarmCheckpoint(SwarmState state, double[] cPersonal, double[] cNeighbourhood, double[] weight, double[] bestPosition, double bestFitness,
+					int iterationsSinceImprovement, long iterations, long evaluations, long randomState, long[] particleRandomStates, int[][] informed, int[] neighbourhoodBest,
+					int restarts, long lastRestartIteration, SwarmDiversity diversity) {
+		this.state = state;
+		this.cPersonal = cPersonal;
+		this.cNeighbourhood = cNeighbourhood;
+		this.weight = weight;
+		this.bestPosition = bestPosition;
+		this.bestFitness = bestFitness;
+		this.iterationsSinceImprovement = iterationsSinceImprovement;
+		this.iterations = iterations;
+		this.evaluations = evaluations;
+		this.randomState = randomState;
+		this.particleRandomStates = particleRandomStates;
+		this.informed = informed;
+		this.neighbourhoodBest = neighbourhoodBest;
+		this.restarts = restarts;
+		this.lastRestartIteration = lastRestartIteration;
+		this.diversity = diversity;
+	}
+
+	/**
+	 * write the checkpoint to a temporary file, force it to disk, then atomically replace the target with it
+	 *
+	 * @param path the file to write to
+	 */
+	void write(Path path) throws IOException {
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			Output output = new Output(channel);
+			int particleCount = state.particleCount;
+			int dimensions = state.dimensions;
+			output.putInt(MAGIC);
+			output.putInt(VERSION);
+			output.putInt(particleCount);
+			output.putInt(dimensions);
+			output.putDoubles(state.minConstraints, dimensions);
+			output.putDoubles(state.maxConstraints, dimensions);
+			output.putDoubles(cPersonal, particleCount);
+			output.putDoubles(cNeighbourhood, particleCount);
+			output.putDoubles(weight, particleCount);
+			output.putDoubles(state.positions, particleCount * dimensions);
+			output.putDoubles(state.velocities, particleCount * dimensions);
+			output.putDoubles(state.bestPositions, particleCount * dimensions);
+			output.putDoubles(state.fitnesses, particleCount);
+			output.putDoubles(state.bestFitnesses, particleCount);
+			output.putDoubles(bestPosition, dimensions);
+			output.putDouble(bestFitness);
+			output.putInt(iterationsSinceImprovement);
+			output.putLong(iterations);
+			output.putLong(evaluations);
+			output.putLong(randomState);
+			for (long particleRandomState : particleRandomStates) {
+				output.putLong(particleRandomState);
+			}
+			output.putInt(informed == null ? 0 : 1);
+			if (informed != null) {
+				for (int particle = 0; particle < particleCount; particle++) {
+					output.putInt(informed[particle].length);
+					output.putInts(informed[particle]);
+				}
+				output.putInts(neighbourhoodBest);
+			}
+			output.putInt(restarts);
+			output.putLong(lastRestartIteration);
+			output.putInt(diversity == null ? 0 : 1);
+			if (diversity != null) {
+				output.putDoubles(diversity.getOrigin(), dimensions);
+				output.putDoubles(diversity.getSums(), dimensions);
+				output.putDouble(diversity.getSumSquares());
+				output.putInt(diversity.getCyclesSinceRecompute());
+			}
+			output.flush();
+			channel.force(true);
+		}
+		try {
+			Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * read a checkpoint written by write
+	 *
+	 * @param path the file to read
+	 */
+	static SwarmCheckpoint read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			Input input = new Input(channel);
+			if (input.getInt() != MAGIC || input.getInt() != VERSION)
+				throw new IOException(path + " is not a version " + VERSION + " checkpoint file");
+			int particleCount = input.getInt();
+			int dimensions = input.getInt();
+			SwarmState state = new SwarmState(particleCount, input.getDoubles(dimensions), input.getDoubles(dimensions));
+			double[] cPersonal = input.getDoubles(particleCount);
+			double[] cNeighbourhood = input.getDoubles(particleCount);
+			double[] weight = input.getDoubles(particleCount);
+			input.getDoubles(state.positions);
+			input.getDoubles(state.velocities);
+			input.getDoubles(state.bestPositions);
+			input.getDoubles(state.fitnesses);
+			input.getDoubles(state.bestFitnesses);
+			double[] bestPosition = input.getDoubles(dimensions);
+			double bestFitness = input.getDouble();
+			int iterationsSinceImprovement = input.getInt();
+			long iterations = input.getLong();
+			long evaluations = input.getLong();
+			long randomState = input.getLong();
+			long[] particleRandomStates = new long[particleCount];
+			for (int particle = 0; particle < particleCount; particle++) {
+				particleRandomStates[particle] = input.getLong();
+			}
+			int[][] informed = null;
+			int[] neighbourhoodBest = null;
+			if (input.getInt() != 0) {
+				informed = new int[particleCount][];
+				for (int particle = 0; particle < particleCount; particle++) {
+					informed[particle] = input.getInts(input.getInt());
+				}
+				neighbourhoodBest = input.getInts(particleCount);
+			}
+			int restarts = input.getInt();
+			long lastRestartIteration = input.getLong();
+			SwarmDiversity diversity = null;
+			if (input.getInt() != 0)
+				diversity = new SwarmDiversity(state, input.getDoubles(dimensions), input.getDoubles(dimensions), input.getDouble(), input.getInt());
+			return new SwarmCheckpoint(state, cPersonal, cNeighbourhood, weight, bestPosition, bestFitness,
+					iterationsSinceImprovement, iterations, evaluations, randomState, particleRandomStates, informed, neighbourhoodBest,
+					restarts, lastRestartIteration, diversity);
+		}
+	}
+
+	/**
+	 * writes values to a channel through a fixed size buffer, arrays go in as bulk copies
+	 */
+	private static final class Output {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+		Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void putInt(int value) throws IOException {
+			ensure(4);
+			buffer.putInt(value);
+		}
+
+		void putLong(long value) throws IOException {
+			ensure(8);
+			buffer.putLong(value);
+		}
+
+		void putDouble(double value) throws IOException {
+			ensure(8);
+			buffer.putDouble(value);
+		}
+
+		void putDoubles(double[] values, int length) throws IOException {
+			for (int from = 0; from < length; ) {
+				ensure(8);
+				int count = Math.min(length - from, buffer.remaining() / 8);
+				buffer.asDoubleBuffer().put(values, from, count);
+				buffer.position(buffer.position() + 8 * count);
+				from += count;
+			}
+		}
+
+		void putInts(int[] values) throws IOException {
+			for (int from = 0; from < values.length; ) {
+				ensure(4);
+				int count = Math.min(values.length - from, buffer.remaining() / 4);
+				buffer.asIntBuffer().put(values, from, count);
+				buffer.position(buffer.position() + 4 * count);
+				from += count;
+			}
+		}
+
+		/**
+		 * write out the buffer if it has less than the given number of bytes free
+		 */
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes)
+				flush();
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * reads values from a channel through a fixed size buffer, arrays come out as bulk copies
+	 */
+	private static final class Input {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+		Input(FileChannel channel) {
+			this.channel = channel;
+			buffer.limit(0);
+		}
+
+		int getInt() throws IOException {
+			ensure(4);
+			return buffer.getInt();
+		}
+
+		long getLong() throws IOException {
+			ensure(8);
+			return buffer.getLong();
+		}
+
+		double getDouble() throws IOException {
+			ensure(8);
+			return buffer.getDouble();
+		}
+
+		double[] getDoubles(int length) throws IOException {
+			double[] values = new double[length];
+			getDoubles(values);
+			return values;
+		}
+
+		void getDoubles(double[] values) throws IOException {
+			for (int from = 0; from < values.length; ) {
+				ensure(8);
+				int count = Math.min(values.length - from, buffer.remaining() / 8);
+				buffer.asDoubleBuffer().get(values, from, count);
+				buffer.position(buffer.position() + 8 * count);
+				from += count;
+			}
+		}
+
+		int[] getInts(int length) throws IOException {
+			int[] values = new int[length];
+			for (int from = 0; from < length; ) {
+				ensure(4);
+				int count = Math.min(length - from, buffer.remaining() / 4);
+				buffer.asIntBuffer().get(values, from, count);
+				buffer.position(buffer.position() + 4 * count);
+				from += count;
+			}
+			return values;
+		}
+
+		/**
+		 * read more of the file into the buffer until it holds at least the given number of bytes
+		 */
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() >= bytes)
+				return;
+			buffer.compact();
+			while (buffer.position() < bytes) {
+				if (channel.read(buffer) < 0)
+					throw new IOException("unexpected end of checkpoint file");
+			}
+			buffer.flip();
+		}
+	}
+}
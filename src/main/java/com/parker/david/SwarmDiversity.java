@@ -0,0 +1,203 @@
+package com.parker.david;
+
+import java.util.Arrays;
+
+/**
+ * the spread of a swarm, the root mean square distance of its particles' positions from their centroid. it is kept up to
+ * date from each particle's move rather than recomputed over the whole swarm, from running sums of the positions and of
+ * their squares. the sums are taken relative to the centroid at the last exact recompute, which keeps the cancellation in
+ * the mean square small once the swarm has gathered far from the origin, and are recomputed exactly every so many cycles
+ * to throw away the rounding they pick up.
+ * each move is first taken into the moving particle's own changes, so particles moving on many threads never contend, and
+ * the changes are merged into the sums in particle order at the end of the cycle, which also makes the sums the same
+ * however many threads the swarm runs on
+ */
+final class SwarmDiversity {
+	/**
+	 * the number of update cycles between exact recomputes
+	 */
+	static final int RECOMPUTE_EVERY = 50;
+
+	private final SwarmState state;
+
+	/**
+	 * the point the sums are taken relative to
+	 */
+	private final double[] origin;
+
+	/**
+	 * the sum of the positions relative to the origin in each dimension
+	 */
+	private final double[] sums;
+
+	/**
+	 * the sum of the squares of every coordinate relative to the origin
+	 */
+	private double sumSquares;
+
+	/**
+	 * the update cycles since the last exact recompute
+	 */
+	private int cyclesSinceRecompute;
+
+	/**
+	 * the change to the sums from each particle's moves since the end of the last cycle, a block per particle
+	 */
+	private final double[] sumChanges;
+
+	/**
+	 * the change to the sum of the squares from each particle's moves since the end of the last cycle
+	 */
+	private final double[] squareChanges;
+
+	/**
+	 * constructor, computes the sums for the state's current positions
+	 *
+	 * @param state the state holding the particles
+	 */
+	SwarmDiversity(SwarmState state) {
+		this.state = state;
+		this.origin = new double[state.dimensions];
+		this.sums = new double[state.dimensions];
+		this.sumChanges = new double[state.positions.length];
+		this.squareChanges = new double[state.particleCount];
+		recompute();
+	}
+
+	/**
+	 * constructor, carries on sums saved from another swarm's diversity rather than computing them afresh
+	 *
+	 * @param state                the state holding the particles
+	 * @param origin               the point the sums were taken relative to
+	 * @param sums                 the sum of the positions relative to the origin in each dimension
+	 * @param sumSquares           the sum of the squares of every coordinate relative to the origin
+	 * @param cyclesSinceRecompute the update cycles since the last exact recompute
+	 */
+	SwarmDiversity(SwarmState state, double[] origin, double[] sums, double sumSquares, int cyclesSinceRecompute) {
+		this.state = state;
+		this.origin = origin;
+		this.sums = sums;
+		this.sumSquares = sumSquares;
+		this.cyclesSinceRecompute = cyclesSinceRecompute;
+		this.sumChanges = new double[state.positions.length];
+		this.squareChanges = new double[state.particleCount];
+	}
+
+	/**
+	 * take in a particle's move, using its velocity, which is the step from its old position to its new one. it only
+	 * reaches the sums at the end of the cycle. may be called from many threads at once, for different particles
+	 *
+	 * @param particle the index of the particle
+	 */
+	void moved(int particle) {
+		double[] positions = state.positions;
+		double[] velocities = state.velocities;
+		int offset = state.offset(particle);
+		double squareChange = 0;
+		for (int d = 0; d < state.dimensions; d++) {
+			double now = positions[offset + d] - origin[d];
+			double before = now - velocities[offset + d];
+			sumChanges[offset + d] += velocities[offset + d];
+			squareChange += now * now - before * before;
+		}
+		squareChanges[particle] += squareChange;
+	}
+
+	/**
+	 * the end of an update cycle, merges the particles' changes into the sums and recomputes them exactly if they are due.
+	 * must be called while no particle moves
+	 */
+	synchronized void endCycle() {
+		int dimensions = state.dimensions;
+		for (int p = 0; p < state.particleCount; p++) {
+			int offset = state.offset(p);
+			for (int d = 0; d < dimensions; d++) {
+				sums[d] += sumChanges[offset + d];
+			}
+			sumSquares += squareChanges[p];
+		}
+		Arrays.fill(sumChanges, 0);
+		Arrays.fill(squareChanges, 0);
+		if (++cyclesSinceRecompute >= RECOMPUTE_EVERY)
+			recompute();
+	}
+
+	/**
+	 * recompute the sums from the positions, about the current centroid, dropping any changes not yet merged.
+	 * must be called while no particle moves
+	 */
+	synchronized void recompute() {
+		int dimensions = state.dimensions;
+		double[] positions = state.positions;
+		Arrays.fill(sumChanges, 0);
+		Arrays.fill(squareChanges, 0);
+		for (int d = 0; d < dimensions; d++) {
+			origin[d] += sums[d] / state.particleCount;
+			sums[d] = 0;
+		}
+		sumSquares = 0;
+		for (int p = 0; p < state.particleCount; p++) {
+			int offset = state.offset(p);
+			for (int d = 0; d < dimensions; d++) {
+				double relative = positions[offset + d] - origin[d];
+				sums[d] += relative;
+				sumSquares += relative * relative;
+			}
+		}
+		cyclesSinceRecompute = 0;
+	}
+
+	/**
+	 * get the root mean square distance of the positions from their centroid, as of the end of the last cycle
+	 */
+	synchronized double get() {
+		double centroidSquares = 0;
+		for (double sum : sums) {
+			double mean = sum / state.particleCount;
+			centroidSquares += mean * mean;
+		}
+		return Math.sqrt(Math.max(0, sumSquares / state.particleCount - centroidSquares));
+	}
+
+	double[] getOrigin() {
+		return origin;
+	}
+
+	/**
+	 * get the sums as of the end of the last cycle, for checkpoints, which are only written between cycles
+	 */
+	double[] getSums() {
+		return sums;
+	}
+
+	synchronized double getSumSquares() {
+		return sumSquares;
+	}
+
+	synchronized int getCyclesSinceRecompute() {
+		return cyclesSinceRecompute;
+	}
+
+	/**
+	 * compute the root mean square distance of the positions from their centroid from scratch
+	 *
+	 * @param state the state holding the particles
+	 */
+	static double compute(SwarmState state) {
+		return new SwarmDiversity(state).get();
+	}
+
+	/**
+	 * the length of the diagonal of the search space, the scale diversity is compared against
+	 *
+	 * @param state the state holding the particles
+	 */
+	static double diagonal(SwarmState state) {
+		double squares = 0;
+		for (int d = 0; d < state.dimensions; d++) {
+			double range = state.maxConstraints[d] - state.minConstraints[d];
+			squares += range * range;
+		}
+		return Math.sqrt(squares);
+	}
+}
@@ -0,0 +1,28 @@
+package com.parker.david;
+
+/**
+ * receives callbacks as a swarm runs. every method does nothing by default, so implement only those of interest.
+ * in parallel update modes improvements may be reported from worker threads, though never two at once for the same swarm
+ */
+public interface SwarmListener {
+
+	/**
+	 * called at the end of every update cycle
+	 *
+	 * @param swarm     the swarm that ran the cycle
+	 * @param iteration the number of update cycles the swarm has run, including this one
+	 * @param improved  true if the cycle found a new global best
+	 */
+	default void onIteration(Swarm swarm, long iteration, boolean improved) {
+	}
+
+	/**
+	 * called whenever the swarm finds a new global best
+	 *
+	 * @param swarm       the swarm that improved
+	 * @param iteration   the number of update cycles the swarm had run before the cycle that found the improvement
+	 * @param bestFitness the new global best fitness
+	 */
+	default void onImprovement(Swarm swarm, long iteration, double bestFitness) {
+	}
+}
@@ -0,0 +1,212 @@
+package com.parker.david;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * counts and times the work a swarm does, objective function evaluations against particle moves.
+ * a swarm only measures itself while metrics are set on it, and one set of metrics may be shared by many swarms
+ */
+public class SwarmMetrics {
+	/**
+	 * the number of objective function evaluations
+	 */
+	private final LongAdder evaluations = new LongAdder();
+
+	/**
+	 * the total time spent evaluating the objective function, in nanoseconds
+	 */
+	private final LongAdder evaluationNanos = new LongAdder();
+
+	/**
+	 * the total time spent moving particles, in nanoseconds
+	 */
+	private final LongAdder moveNanos = new LongAdder();
+
+	/**
+	 * the number of update cycles
+	 */
+	private final LongAdder iterations = new LongAdder();
+
+	/**
+	 * the number of update cycles that found a new global best
+	 */
+	private final LongAdder improvements = new LongAdder();
+
+	/**
+	 * the distribution of the time taken by single evaluations
+	 */
+	private final LatencyHistogram evaluationLatency = new LatencyHistogram();
+
+	/**
+	 * prints a summary periodically, null if not reporting
+	 */
+	private ScheduledExecutorService reporter;
+
+	/**
+	 * record evaluations, when scored as a batch each is counted as taking an equal share of the batch's time
+	 *
+	 * @param count the number of points evaluated
+	 * @param nanos the time taken to evaluate all of them
+	 */
+	void recordEvaluations(int count, long nanos) {
+		if (count == 0)
+			return;
+		evaluations.add(count);
+		evaluationNanos.add(nanos);
+		evaluationLatency.record(nanos / count, count);
+	}
+
+	/**
+	 * record the time taken to move one or more particles
+	 *
+	 * @param nanos the time taken
+	 */
+	void recordMove(long nanos) {
+		moveNanos.add(nanos);
+	}
+
+	/**
+	 * record the end of an update cycle
+	 *
+	 * @param improved true if the cycle found a new global best
+	 */
+	void recordIteration(boolean improved) {
+		iterations.increment();
+		if (improved)
+			improvements.increment();
+	}
+
+	/**
+	 * get the number of objective function evaluations
+	 */
+	public long getEvaluations() {
+		return evaluations.sum();
+	}
+
+	/**
+	 * get the total time spent evaluating the objective function, in nanoseconds
+	 */
+	public long getEvaluationNanos() {
+		return evaluationNanos.sum();
+	}
+
+	/**
+	 * get the total time spent moving particles, in nanoseconds
+	 */
+	public long getMoveNanos() {
+		return moveNanos.sum();
+	}
+
+	/**
+	 * get the number of update cycles
+	 */
+	public long getIterations() {
+		return iterations.sum();
+	}
+
+	/**
+	 * get the number of update cycles that found a new global best
+	 */
+	public long getImprovements() {
+		return improvements.sum();
+	}
+
+	/**
+	 * get an estimate of a percentile of the time taken by single evaluations, in nanoseconds
+	 *
+	 * @param percentile the percentile, between 0 and 100
+	 */
+	public long getEvaluationLatencyPercentile(double percentile) {
+		return evaluationLatency.percentile(percentile);
+	}
+
+	/**
+	 * start printing a summary at a fixed rate on a background thread, replacing any previous reporting
+	 *
+	 * @param period the time between summaries
+	 * @param unit   the unit of the period
+	 * @param output where to print the summaries
+	 */
+	public synchronized void reportEvery(long period, TimeUnit unit, PrintStream output) {
+		stopReporting();
+		reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "swarm-metrics-reporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		reporter.scheduleAtFixedRate(() -> output.println(this), period, period, unit);
+	}
+
+	/**
+	 * stop printing periodic summaries
+	 */
+	public synchronized void stopReporting() {
+		if (reporter != null) {
+			reporter.shutdownNow();
+			reporter = null;
+		}
+	}
+
+	/**
+	 * a summary of the metrics
+	 */
+	@Override
+	public String toString() {
+		long evaluationCount = getEvaluations();
+		return "iterations = " + getIterations() +
+				", improvements = " + getImprovements() +
+				", evaluations = " + evaluationCount +
+				", evaluation ms = " + getEvaluationNanos() / 1_000_000 +
+				", move ms = " + getMoveNanos() / 1_000_000 +
+				", evaluation us p50/p99/max = " + getEvaluationLatencyPercentile(50) / 1000 +
+				"/" + getEvaluationLatencyPercentile(99) / 1000 +
+				"/" + getEvaluationLatencyPercentile(100) / 1000;
+	}
+
+	/**
+	 * a histogram of durations with a bucket per power of two nanoseconds, so recording is a couple of atomic adds
+	 */
+	static class LatencyHistogram {
+		/**
+		 * bucket b counts durations of at least 2^(b-1) and less than 2^b nanoseconds, bucket 0 counts zero
+		 */
+		private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+		/**
+		 * record a number of durations of the same length
+		 *
+		 * @param nanos the duration
+		 * @param count the number of times it occurred
+		 */
+		void record(long nanos, long count) {
+			buckets.addAndGet(64 - Long.numberOfLeadingZeros(Math.max(0, nanos)), count);
+		}
+
+		/**
+		 * estimate a percentile as the upper bound of the bucket it falls in
+		 *
+		 * @param percentile the percentile, between 0 and 100
+		 */
+		long percentile(double percentile) {
+			long total = 0;
+			for (int b = 0; b < 64; b++) {
+				total += buckets.get(b);
+			}
+			if (total == 0)
+				return 0;
+			long rank = (long) Math.ceil(percentile / 100 * total);
+			long seen = 0;
+			for (int b = 0; b < 64; b++) {
+				seen += buckets.get(b);
+				if (seen >= Math.max(1, rank))
+					return b == 0 ? 0 : (1L << b) - 1;
+			}
+			return Long.MAX_VALUE;
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package com.parker.david;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * picks the best low level parameters by racing them, successive halving: every candidate first runs on a small budget,
+ * the worst are dropped, and the survivors run again on a larger budget and with more seeds, until one is left.
+ * candidates are ranked on the mean of their runs at the same budget, never on a single lucky run, and every candidate
+ * runs on the same seeds at each rung so they are compared on the same draws. poor parameters are dropped after a few cheap
+ * runs, so far fewer evaluations go into them than if every candidate ran its low level swarm to completion
+ */
+public class SwarmRace {
+	/**
+	 * runs the low level swarms
+	 */
+	private final SwarmTuner tuner;
+
+	/**
+	 * the fraction of the candidates that survive each rung
+	 */
+	private final double keepFraction;
+
+	/**
+	 * the most positions each low level swarm may score at the first rung
+	 */
+	private final long firstBudget;
+
+	/**
+	 * the number of seeds each candidate runs on at the first rung
+	 */
+	private final int firstRepeats;
+
+	/**
+	 * the factor the budget grows by at each rung
+	 */
+	private double budgetGrowth;
+
+	/**
+	 * the seeds added at each rung
+	 */
+	private int extraRepeats = 1;
+
+	/**
+	 * every candidate of the last race
+	 */
+	private final List<Candidate> candidates = new ArrayList<>();
+
+	/**
+	 * the total number of low level positions scored by the last race
+	 */
+	private long evaluations;
+
+	/**
+	 * constructor
+	 *
+	 * @param tuner        runs the low level swarms, on its pool and with its low level objective and search space
+	 * @param keepFraction the fraction of the candidates that survive each rung, such as 0.5
+	 * @param firstBudget  the most positions each low level swarm may score at the first rung
+	 * @param firstRepeats the number of seeds each candidate runs on at the first rung
+	 */
+	public SwarmRace(SwarmTuner tuner, double keepFraction, long firstBudget, int firstRepeats) {
+		if (!(keepFraction > 0 && keepFraction < 1))
+			throw new IllegalArgumentException("the keep fraction must be between 0 and 1");
+		if (firstBudget < 1)
+			throw new IllegalArgumentException("the first budget must allow at least one evaluation");
+		if (firstRepeats < 1)
+			throw new IllegalArgumentException("every candidate must run on at least one seed");
+		this.tuner = tuner;
+		this.keepFraction = keepFraction;
+		this.firstBudget = firstBudget;
+		this.firstRepeats = firstRepeats;
+		this.budgetGrowth = 1 / keepFraction;
+	}
+
+	/**
+	 * set how the work per candidate grows at each rung, by default the budget grows by the inverse of the keep fraction,
+	 * so each rung costs about the same, and one seed is added
+	 *
+	 * @param budgetGrowth the factor the budget grows by, at least 1
+	 * @param extraRepeats the seeds added, at least 0
+	 */
+	public void setGrowth(double budgetGrowth, int extraRepeats) {
+		if (!(budgetGrowth >= 1) || Double.isInfinite(budgetGrowth))
+			throw new IllegalArgumentException("the budget growth must be finite and at least 1");
+		if (extraRepeats < 0)
+			throw new IllegalArgumentException("the seeds added must not be negative");
+		this.budgetGrowth = budgetGrowth;
+		this.extraRepeats = extraRepeats;
+	}
+
+	/**
+	 * race candidates spread over the parameter space
+	 *
+	 * @param candidateCount the number of candidates
+	 * @param minConstraints the minimum w, c1, c2, and max iterations
+	 * @param maxConstraints the maximum w, c1, c2, and max iterations
+	 * @param initialiser    how the candidates are spread over the parameter space
+	 * @param seed           the seed of the candidates and of the low level swarms
+	 * @return the winner
+	 */
+	public Candidate race(int candidateCount, double[] minConstraints, double[] maxConstraints, Initialiser initialiser, long seed) {
+		if (candidateCount < 1)
+			throw new IllegalArgumentException("a race needs at least one candidate");
+		RandomSource random = new RandomSource(seed);
+		double[] positions = new double[candidateCount * minConstraints.length];
+		initialiser.fill(positions, candidateCount, minConstraints, maxConstraints, random);
+		double[][] parameterSets = new double[candidateCount][];
+		for (int i = 0; i < candidateCount; i++) {
+			parameterSets[i] = new double[minConstraints.length];
+			System.arraycopy(positions, i * minConstraints.length, parameterSets[i], 0, minConstraints.length);
+		}
+		return race(parameterSets, random.nextLong());
+	}
+
+	/**
+	 * race the given candidates
+	 *
+	 * @param parameterSets the w, c1, c2, and max iterations without improvement of each candidate
+	 * @param seed          the seed of the low level swarms
+	 * @return the winner
+	 */
+	public Candidate race(double[][] parameterSets, long seed) {
+		if (parameterSets.length == 0)
+			throw new IllegalArgumentException("a race needs at least one candidate");
+		for (double[] parameters : parameterSets) {
+			if (parameters.length != 4)
+				throw new IllegalArgumentException("each candidate must give w, c1, c2, and max iterations without improvement");
+		}
+		candidates.clear();
+		evaluations = 0;
+		for (double[] parameters : parameterSets) {
+			candidates.add(new Candidate(parameters.clone()));
+		}
+
+		List<Candidate> alive = new ArrayList<>(candidates);
+		long budget = firstBudget;
+		int repeats = firstRepeats;
+		for (int rung = 0; ; rung++) {
+			runRung(alive, rung, budget, repeats, seed);
+			alive.sort(byRung(rung));
+			int survivors = (int) Math.floor(alive.size() * keepFraction);
+			if (survivors <= 1)
+				return alive.get(0);
+			alive = new ArrayList<>(alive.subList(0, survivors));
+			budget = (long) Math.ceil(budget * budgetGrowth);
+			repeats += extraRepeats;
+		}
+	}
+
+	/**
+	 * run every live candidate on every seed of a rung, in parallel on the tuner's pool
+	 */
+	private void runRung(List<Candidate> alive, int rung, long budget, int repeats, long seed) {
+		int runs = alive.size() * repeats;
+		double[] fitnesses = new double[runs];
+		long[] runEvaluations = new long[runs];
+		ParallelLoop.forEach(tuner.getPool(), runs, run -> {
+			Candidate candidate = alive.get(run / repeats);
+			int repeat = run % repeats;
+			//the same seeds for every candidate at a rung
+			Swarm swarm = tuner.runLowLevelSwarm(candidate.parameters, RandomSource.derive(RandomSource.derive(seed, rung), repeat), budget);
+			fitnesses[run] = swarm.getBestFitness();
+			runEvaluations[run] = swarm.getEvaluations();
+		});
+		for (int i = 0; i < alive.size(); i++) {
+			Candidate candidate = alive.get(i);
+			double[] candidateFitnesses = new double[repeats];
+			System.arraycopy(fitnesses, i * repeats, candidateFitnesses, 0, repeats);
+			long candidateEvaluations = 0;
+			for (int repeat = 0; repeat < repeats; repeat++) {
+				candidateEvaluations += runEvaluations[i * repeats + repeat];
+			}
+			candidate.rungs.add(new Rung(budget, candidateFitnesses, tuner.objectiveType));
+			candidate.evaluations += candidateEvaluations;
+			evaluations += candidateEvaluations;
+		}
+	}
+
+	/**
+	 * orders candidates from best to worst on their mean at a rung, breaking ties on the spread of their runs
+	 */
+	private Comparator<Candidate> byRung(int rung) {
+		return (a, b) -> {
+			int compare = tuner.compareFitnesses(b.rungs.get(rung).mean, a.rungs.get(rung).mean);
+			return compare != 0 ? compare : Double.compare(a.rungs.get(rung).standardDeviation, b.rungs.get(rung).standardDeviation);
+		};
+	}
+
+	/**
+	 * get every candidate of the last race, in the order they were given
+	 */
+	public List<Candidate> getCandidates() {
+		return Collections.unmodifiableList(candidates);
+	}
+
+	/**
+	 * get the total number of low level positions scored by the last race
+	 */
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * a set of low level parameters and how its runs went at each rung it reached
+	 */
+	public static final class Candidate {
+		private final double[] parameters;
+		private final List<Rung> rungs = new ArrayList<>();
+		private long evaluations;
+
+		Candidate(double[] parameters) {
+			this.parameters = parameters;
+		}
+
+		/**
+		 * get the w, c1, c2, and max iterations without improvement
+		 */
+		public double[] getParameters() {
+			return parameters.clone();
+		}
+
+		/**
+		 * get the number of rungs this candidate ran at
+		 */
+		public int getRungsReached() {
+			return rungs.size();
+		}
+
+		/**
+		 * get the mean of the best fitnesses of its runs at a rung
+		 */
+		public double getMean(int rung) {
+			return rungs.get(rung).mean;
+		}
+
+		/**
+		 * get the sample standard deviation of the best fitnesses of its runs at a rung
+		 */
+		public double getStandardDeviation(int rung) {
+			return rungs.get(rung).standardDeviation;
+		}
+
+		/**
+		 * get the best of the best fitnesses of its runs at a rung
+		 */
+		public double getBest(int rung) {
+			return rungs.get(rung).best;
+		}
+
+		/**
+		 * get the number of low level positions scored by all of its runs
+		 */
+		public long getEvaluations() {
+			return evaluations;
+		}
+
+		/**
+		 * the parameters and the statistics of the last rung reached
+		 */
+		@Override
+		public String toString() {
+			Rung last = rungs.get(rungs.size() - 1);
+			return String.format(Locale.ROOT, "w = %s, c1 = %s, c2 = %s, iterations = %s, rungs = %d, budget = %d, runs = %d, mean = %s, std = %s, best = %s",
+					parameters[0], parameters[1], parameters[2], parameters[3], rungs.size(), last.budget, last.runs, last.mean, last.standardDeviation, last.best);
+		}
+	}
+
+	/**
+	 * the statistics of a candidate's runs at one rung
+	 */
+	private static final class Rung {
+		final long budget;
+		final int runs;
+		final double mean;
+		final double standardDeviation;
+		final double best;
+
+		Rung(long budget, double[] fitnesses, ObjectiveFunction.Type objectiveType) {
+			this.budget = budget;
+			this.runs = fitnesses.length;
+			double sum = 0;
+			double best = fitnesses[0];
+			for (double fitness : fitnesses) {
+				sum += fitness;
+				best = objectiveType == ObjectiveFunction.Type.Minimisation ? Math.min(best, fitness) : Math.max(best, fitness);
+			}
+			this.mean = sum / runs;
+			double squares = 0;
+			for (double fitness : fitnesses) {
+				squares += (fitness - mean) * (fitness - mean);
+			}
+			this.standardDeviation = runs > 1 ? Math.sqrt(squares / (runs - 1)) : 0;
+			this.best = best;
+		}
+	}
+}
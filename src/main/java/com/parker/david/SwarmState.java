@@ -0,0 +1,80 @@
+package com.parker.david;
+
+/**
+ * the state of every particle in a swarm, kept in contiguous primitive blocks rather than a list per particle.
+ * the value of dimension d for particle p lives at index [p * dimensions + d] of each position sized block
+ */
+class SwarmState {
+	/**
+	 * the number of particles stored
+	 */
+	final int particleCount;
+
+	/**
+	 * the number of dimensions of each particle
+	 */
+	final int dimensions;
+
+	/**
+	 * the current positions of all particles
+	 */
+	final double[] positions;
+
+	/**
+	 * the current velocities of all particles
+	 */
+	final double[] velocities;
+
+	/**
+	 * the best position each particle has seen
+	 */
+	final double[] bestPositions;
+
+	/**
+	 * the current fitness of each particle
+	 */
+	final double[] fitnesses;
+
+	/**
+	 * the best fitness each particle has seen
+	 */
+	final double[] bestFitnesses;
+
+	/**
+	 * a vector correlating to the position vector, detailing the min for each respective index's value
+	 */
+	final double[] minConstraints;
+
+	/**
+	 * a vector correlating to the position vector, detailing the max for each respective index's value
+	 */
+	final double[] maxConstraints;
+
+	/**
+	 * constructor, allocates zeroed blocks for the given number of particles
+	 *
+	 * @param particleCount  the number of particles to store
+	 * @param minConstraints the constraint on the minimum values for each dimension
+	 * @param maxConstraints the constraint on the maximum values for each dimension
+	 */
+	SwarmState(int particleCount, double[] minConstraints, double[] maxConstraints) {
+		this.particleCount = particleCount;
+		this.dimensions = maxConstraints.length;
+		this.minConstraints = minConstraints;
+		this.maxConstraints = maxConstraints;
+		positions = new double[particleCount * dimensions];
+		velocities = new double[particleCount * dimensions];
+		bestPositions = new double[particleCount * dimensions];
+		fitnesses = new double[particleCount];
+		bestFitnesses = new double[particleCount];
+	}
+
+	/**
+	 * the index of the first dimension of a particle within the position sized blocks
+	 *
+	 * @param particle the index of the particle
+	 */
+	int offset(int particle) {
+		return particle * dimensions;
+	}
+}
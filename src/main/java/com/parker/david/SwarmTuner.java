@@ -0,0 +1,287 @@
+package com.parker.david;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * a high level objective function that tunes the parameters of a low level swarm.
+ * the parameters it expects are the w, c1, c2, and max iterations without improvement of the low level swarm, the fitness
+ * of a set of parameters is the best fitness a low level swarm using them finds.
+ * safe to evaluate from many threads at once, all levels of the search share a single bounded fork join pool
+ */
+public class SwarmTuner extends ObjectiveFunction {
+	/**
+	 * the objective function the low level swarms optimise
+	 */
+	private final ObjectiveFunction lowLevelObjective;
+
+	/**
+	 * the number of particles in each low level swarm
+	 */
+	private final int lowLevelParticleCount;
+
+	/**
+	 * the constraint on the minimum values for the low level search space
+	 */
+	private final double[] lowLevelMinConstraints;
+
+	/**
+	 * the constraint on the maximum values for the low level search space
+	 */
+	private final double[] lowLevelMaxConstraints;
+
+	/**
+	 * initial velocity factor for the low level swarms
+	 */
+	private final double lowLevelInitialVelocityFactor;
+
+	/**
+	 * the pool that both the high level and the low level swarms run their parallel work on
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * how the low level swarms update their particles
+	 */
+	private volatile Swarm.UpdateMode lowLevelUpdateMode = Swarm.UpdateMode.Sequential;
+
+	/**
+	 * the most low level swarms the high level swarm runs at once in steady state, 0 to run it in synchronous update cycles
+	 */
+	private volatile int highLevelConcurrency;
+
+	/**
+	 * how the high level swarm's initial parameter sets are spread, every one of which costs a whole low level swarm
+	 */
+	private volatile Initialiser highLevelInitialiser = Initialiser.uniform();
+
+	/**
+	 * the fraction of high level parameter sets that run a real low level swarm, the rest are predicted by a surrogate
+	 * model. 0 to run every one
+	 */
+	private volatile double highLevelSurrogateExposure;
+
+	/**
+	 * the most positions a low level swarm may score, 0 for no limit
+	 */
+	private volatile long lowLevelMaxEvaluations;
+
+	/**
+	 * the longest a low level swarm may run for in milliseconds, 0 for no limit
+	 */
+	private volatile long lowLevelTimeoutMillis;
+
+	/**
+	 * the master seed of the whole search, and whether one was set
+	 */
+	private volatile long seed;
+	private volatile boolean seeded;
+
+	/**
+	 * the best low level swarm found thus far
+	 */
+	private final AtomicReference<Swarm> bestLowLevelSwarm = new AtomicReference<>();
+
+	/**
+	 * constructor
+	 *
+	 * @param lowLevelObjective             the objective function the low level swarms optimise
+	 * @param lowLevelParticleCount         the number of particles in each low level swarm
+	 * @param lowLevelMinConstraints        the constraint on the minimum values for the low level search space
+	 * @param lowLevelMaxConstraints        the constraint on the maximum values for the low level search space
+	 * @param lowLevelInitialVelocityFactor initial velocity factor for the low level swarms
+	 * @param threads                       the maximum number of threads the whole search may use
+	 */
+	public SwarmTuner(ObjectiveFunction lowLevelObjective, int lowLevelParticleCount, double[] lowLevelMinConstraints, double[] lowLevelMaxConstraints, double lowLevelInitialVelocityFactor, int threads) {
+		super(lowLevelObjective.objectiveType);
+		this.lowLevelObjective = lowLevelObjective;
+		this.lowLevelParticleCount = lowLevelParticleCount;
+		this.lowLevelMinConstraints = lowLevelMinConstraints.clone();
+		this.lowLevelMaxConstraints = lowLevelMaxConstraints.clone();
+		this.lowLevelInitialVelocityFactor = lowLevelInitialVelocityFactor;
+		this.pool = new ForkJoinPool(threads);
+	}
+
+	/**
+	 * set how the low level swarms update their particles. parallel modes share the tuner's pool, so cores left idle
+	 * by a small high level swarm are used without starting any extra threads
+	 *
+	 * @param lowLevelUpdateMode the update mode of the low level swarms
+	 */
+	public void setLowLevelUpdateMode(Swarm.UpdateMode lowLevelUpdateMode) {
+		this.lowLevelUpdateMode = lowLevelUpdateMode;
+	}
+
+	/**
+	 * run the high level swarm in steady state rather than in update cycles, so a parameter set whose low level swarm runs
+	 * for a long time does not hold up the others. see Swarm.optimiseSteadyState
+	 *
+	 * @param concurrency the most low level swarms to run at once, 0 to go back to synchronous update cycles
+	 */
+	public void setHighLevelSteadyState(int concurrency) {
+		this.highLevelConcurrency = concurrency;
+	}
+
+	/**
+	 * set how the high level swarm's initial parameter sets are spread over the parameter space
+	 *
+	 * @param highLevelInitialiser the initialiser
+	 */
+	public void setHighLevelInitialiser(Initialiser highLevelInitialiser) {
+		this.highLevelInitialiser = highLevelInitialiser;
+	}
+
+	/**
+	 * screen the high level swarm's parameter sets with a surrogate model, so only the promising or uncertain ones run a
+	 * low level swarm. see SurrogateObjectiveFunction
+	 *
+	 * @param exposure the fraction of each high level batch that runs a real low level swarm, 0 to run every one
+	 */
+	public void setHighLevelSurrogate(double exposure) {
+		this.highLevelSurrogateExposure = exposure;
+	}
+
+	/**
+	 * bound the work of each low level swarm, on top of its own max iterations without improvement, so that a poor set
+	 * of parameters cannot keep a low level swarm running for a long time
+	 *
+	 * @param maxEvaluations the most positions a low level swarm may score, 0 for no limit
+	 * @param timeoutMillis  the longest a low level swarm may run for in milliseconds, 0 for no limit
+	 */
+	public void setLowLevelBudget(long maxEvaluations, long timeoutMillis) {
+		this.lowLevelMaxEvaluations = maxEvaluations;
+		this.lowLevelTimeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * seed the whole search, the high level swarm and every low level swarm. a low level swarm's seed is derived from its
+	 * parameters, so the same parameters always run the same low level swarm whichever thread and order they run in, and a
+	 * high level swarm in synchronous update cycles gives the same result on any number of threads
+	 *
+	 * @param seed the master seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+		this.seeded = true;
+	}
+
+	/**
+	 * create and optimise a low level swarm with the given parameters, and record it if it is the best thus far
+	 *
+	 * @param parameters the w, c1, c2, and max iterations without improvement of the low level swarm
+	 */
+	@Override
+	public double getFitness(double[] parameters) {
+		Swarm lowLevelSwarm = runLowLevelSwarm(parameters, seeded ? lowLevelSeed(parameters) : ThreadLocalRandom.current().nextLong(), lowLevelMaxEvaluations);
+
+		//if we observe an improvement in the swarm, save the swarm
+		Swarm currentBest;
+		do {
+			currentBest = bestLowLevelSwarm.get();
+			if (currentBest != null && compareFitnesses(lowLevelSwarm.getBestFitness(), currentBest.getBestFitness()) != 1)
+				break;
+		} while (!bestLowLevelSwarm.compareAndSet(currentBest, lowLevelSwarm));
+
+		return lowLevelSwarm.getBestFitness();
+	}
+
+	/**
+	 * the seed of the low level swarm for a set of parameters, derived from the master seed and the parameters' bits
+	 */
+	private long lowLevelSeed(double[] parameters) {
+		long hash = 0;
+		for (double parameter : parameters) {
+			hash = RandomSource.mix64(hash + Double.doubleToLongBits(parameter));
+		}
+		return RandomSource.derive(RandomSource.derive(seed, 1), hash);
+	}
+
+	/**
+	 * create and optimise a low level swarm with the given parameters
+	 *
+	 * @param parameters     the w, c1, c2, and max iterations without improvement of the low level swarm
+	 * @param seed           the seed of the low level swarm's random numbers
+	 * @param maxEvaluations the most positions the low level swarm may score, 0 for no limit
+	 * @return the optimised low level swarm
+	 */
+	Swarm runLowLevelSwarm(double[] parameters, long seed, long maxEvaluations) {
+		//get the parameters for this swarm
+		double weight = parameters[0];
+		double cPersonal = parameters[1];
+		double cNeighbour = parameters[2];
+		double completionIterations = parameters[3];
+
+		//create and optimise the low level swarm
+		Swarm lowLevelSwarm = new Swarm(lowLevelObjective, lowLevelParticleCount, cNeighbour, cPersonal, weight, lowLevelMinConstraints, lowLevelMaxConstraints,
+				lowLevelInitialVelocityFactor, Initialiser.uniform(), seed);
+		lowLevelSwarm.setUpdateMode(lowLevelUpdateMode, pool);
+		ArrayList<StoppingCriterion> criteria = new ArrayList<>();
+		criteria.add(StoppingCriterion.maxIterationsWithoutImprovement((int) completionIterations));
+		if (maxEvaluations > 0)
+			criteria.add(StoppingCriterion.maxEvaluations(maxEvaluations));
+		if (lowLevelTimeoutMillis > 0)
+			criteria.add(StoppingCriterion.deadline(lowLevelTimeoutMillis, TimeUnit.MILLISECONDS));
+		lowLevelSwarm.optimise(criteria.toArray(new StoppingCriterion[0]));
+		return lowLevelSwarm;
+	}
+
+	/**
+	 * get the pool the tuner runs its work on
+	 */
+	ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * score a population of parameter sets, running their low level swarms concurrently on the tuner's pool
+	 */
+	@Override
+	public void getFitnesses(double[] population, int dimensions, int from, int to, double[] fitnesses) {
+		ParallelLoop.forEach(pool, to - from, point -> {
+			double[] parameters = new double[dimensions];
+			System.arraycopy(population, (from + point) * dimensions, parameters, 0, dimensions);
+			fitnesses[from + point] = getFitness(parameters);
+		});
+	}
+
+	/**
+	 * create and optimise a high level swarm over the low level parameters, evaluating its particles in parallel
+	 *
+	 * @param particleCount                   the number of particles in the high level swarm
+	 * @param minConstraints                  the minimum w, c1, c2, and max iterations
+	 * @param maxConstraints                  the maximum w, c1, c2, and max iterations
+	 * @param initialVelocityFactor           initial velocity factor for the high level swarm
+	 * @param maxIterationsWithoutImprovement stopping criterion for the high level swarm
+	 * @return the optimised high level swarm, whose best position is the best set of parameters
+	 */
+	public Swarm tune(int particleCount, double[] minConstraints, double[] maxConstraints, double initialVelocityFactor, int maxIterationsWithoutImprovement) {
+		ObjectiveFunction highLevelObjective = highLevelSurrogateExposure > 0 ? new SurrogateObjectiveFunction(this, highLevelSurrogateExposure, 2, 200) : this;
+		Swarm highLevelSwarm = seeded ?
+				new Swarm(highLevelObjective, particleCount, 1, 1, 1, minConstraints, maxConstraints, initialVelocityFactor, highLevelInitialiser, RandomSource.derive(seed, 0)) :
+				new Swarm(highLevelObjective, particleCount, 1, 1, 1, minConstraints, maxConstraints, initialVelocityFactor, highLevelInitialiser);
+		if (highLevelConcurrency > 0) {
+			highLevelSwarm.optimiseSteadyState(highLevelConcurrency, StoppingCriterion.maxIterationsWithoutImprovement(maxIterationsWithoutImprovement));
+		} else {
+			highLevelSwarm.setUpdateMode(Swarm.UpdateMode.Synchronous, pool);
+			highLevelSwarm.optimise(maxIterationsWithoutImprovement);
+		}
+		return highLevelSwarm;
+	}
+
+	/**
+	 * get the best low level swarm found thus far
+	 */
+	public Swarm getBestLowLevelSwarm() {
+		return bestLowLevelSwarm.get();
+	}
+
+	/**
+	 * stop the threads of the tuner's pool once any work in progress completes
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+}
@@ -0,0 +1,147 @@
+package com.parker.david;
+
+/**
+ * the shape of the social network of a swarm, which particles each particle takes its neighbourhood best from.
+ * subclass this to define a new topology, or use one of the factory methods for the common ones
+ */
+public abstract class Topology {
+
+	/**
+	 * get the informants of every particle, the particles whose personal bests a particle may take as its neighbourhood best.
+	 * a particle is always treated as one of its own informants, whether or not it is listed
+	 *
+	 * @param particleCount the number of particles in the swarm
+	 * @param random        the swarm's stream of random numbers, for topologies that are drawn at random
+	 * @return an array holding the indices of the informants of each particle, each in [0, particleCount)
+	 */
+	protected abstract int[][] informants(int particleCount, RandomSource random);
+
+	/**
+	 * whether every particle is informed by every other, in which case the swarm uses its global best directly
+	 */
+	protected boolean isGlobal() {
+		return false;
+	}
+
+	/**
+	 * whether the informants should be drawn again after an update cycle that did not improve the global best.
+	 * a swarm with a dynamic topology cannot run in steady state
+	 */
+	protected boolean isDynamic() {
+		return false;
+	}
+
+	/**
+	 * the g best topology, every particle is informed by the whole swarm
+	 */
+	public static Topology global() {
+		return new Topology() {
+			@Override
+			protected int[][] informants(int particleCount, RandomSource random) {
+				int[] everyone = new int[particleCount];
+				for (int i = 0; i < particleCount; i++) {
+					everyone[i] = i;
+				}
+				int[][] informants = new int[particleCount][];
+				for (int i = 0; i < particleCount; i++) {
+					informants[i] = everyone;
+				}
+				return informants;
+			}
+
+			@Override
+			protected boolean isGlobal() {
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * the l best topology, the particles form a ring and each is informed by the particles either side of it
+	 *
+	 * @param k the number of informants on each side of a particle, at least 1
+	 */
+	public static Topology ring(int k) {
+		if (k < 1)
+			throw new IllegalArgumentException("a ring needs at least one informant on each side");
+		return new Topology() {
+			@Override
+			protected int[][] informants(int particleCount, RandomSource random) {
+				int size = Math.min(2 * k, particleCount - 1);
+				int[][] informants = new int[particleCount][size];
+				for (int i = 0; i < particleCount; i++) {
+					for (int j = 0; j < size; j++) {
+						//alternate sides, 1 to the right, 1 to the left, 2 to the right, ...
+						int step = j / 2 + 1;
+						informants[i][j] = Math.floorMod(j % 2 == 0 ? i + step : i - step, particleCount);
+					}
+				}
+				return informants;
+			}
+		};
+	}
+
+	/**
+	 * the von neumann topology, the particles are laid out on a torus with as many columns as the square root of the
+	 * swarm size, and each is informed by the particles above, below, left and right of it.
+	 * when the swarm size is not a square the rows wrap into each other, so the lattice stays regular
+	 */
+	public static Topology vonNeumann() {
+		return new Topology() {
+			@Override
+			protected int[][] informants(int particleCount, RandomSource random) {
+				int columns = Math.max(1, (int) Math.round(Math.sqrt(particleCount)));
+				int[][] informants = new int[particleCount][];
+				for (int i = 0; i < particleCount; i++) {
+					informants[i] = new int[]{
+							Math.floorMod(i - 1, particleCount),
+							Math.floorMod(i + 1, particleCount),
+							Math.floorMod(i - columns, particleCount),
+							Math.floorMod(i + columns, particleCount)};
+				}
+				return informants;
+			}
+		};
+	}
+
+	/**
+	 * the adaptive random topology, each particle informs k particles chosen at random, and the choice is made again
+	 * whenever an update cycle fails to improve the global best
+	 *
+	 * @param k the number of particles each particle informs, at least 1
+	 */
+	public static Topology random(int k) {
+		if (k < 1)
+			throw new IllegalArgumentException("each particle must inform at least one particle");
+		return new Topology() {
+			@Override
+			protected int[][] informants(int particleCount, RandomSource random) {
+				//draw who each particle informs, then invert that into who informs each particle
+				int[][] informs = new int[particleCount][k];
+				int[] counts = new int[particleCount];
+				for (int i = 0; i < particleCount; i++) {
+					for (int j = 0; j < k; j++) {
+						informs[i][j] = random.nextInt(particleCount);
+						counts[informs[i][j]]++;
+					}
+				}
+				int[][] informants = new int[particleCount][];
+				for (int i = 0; i < particleCount; i++) {
+					informants[i] = new int[counts[i]];
+					counts[i] = 0;
+				}
+				for (int i = 0; i < particleCount; i++) {
+					for (int informed : informs[i]) {
+						informants[informed][counts[informed]++] = i;
+					}
+				}
+				return informants;
+			}
+
+			@Override
+			protected boolean isDynamic() {
+				return true;
+			}
+		};
+	}
+}
@@ -0,0 +1,218 @@
+package com.parker.david;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * converts a trajectory file written by the trajectory recorder into a csv file, or a set of numpy .npy arrays
+ */
+public class TrajectoryExport {
+
+	/**
+	 * the entry point
+	 * usage: TrajectoryExport trajectory-file csv output.csv
+	 * or:    TrajectoryExport trajectory-file npy output-prefix
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3 || !(args[1].equals("csv") || args[1].equals("npy"))) {
+			System.err.println("usage: TrajectoryExport trajectory-file (csv output.csv | npy output-prefix)");
+			System.exit(1);
+		}
+		try (Reader reader = new Reader(Paths.get(args[0]))) {
+			if (args[1].equals("csv"))
+				toCsv(reader, Paths.get(args[2]));
+			else
+				toNumpy(reader, args[2]);
+		}
+	}
+
+	/**
+	 * write one line per particle per frame, holding the iteration, particle index, position, velocity and fitness
+	 *
+	 * @param reader the trajectory to export
+	 * @param output the csv file to write
+	 */
+	static void toCsv(Reader reader, Path output) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			StringBuilder header = new StringBuilder("iteration, particle");
+			for (int d = 0; d < reader.dimensions; d++) {
+				header.append(", p").append(d);
+			}
+			for (int d = 0; d < reader.dimensions; d++) {
+				header.append(", v").append(d);
+			}
+			writer.append(header).append(", fitness\n");
+
+			for (long frame = 0; frame < reader.frameCount; frame++) {
+				DoubleBuffer doubles = reader.read(frame);
+				long iteration = reader.iteration();
+				int positions = 2 + reader.dimensions;
+				int velocities = positions + reader.particleCount * reader.dimensions;
+				int fitnesses = velocities + reader.particleCount * reader.dimensions;
+				for (int particle = 0; particle < reader.particleCount; particle++) {
+					writer.append(Long.toString(iteration)).append(", ").append(Integer.toString(particle));
+					for (int d = 0; d < reader.dimensions; d++) {
+						writer.append(", ").append(Double.toString(doubles.get(positions + particle * reader.dimensions + d)));
+					}
+					for (int d = 0; d < reader.dimensions; d++) {
+						writer.append(", ").append(Double.toString(doubles.get(velocities + particle * reader.dimensions + d)));
+					}
+					writer.append(", ").append(Double.toString(doubles.get(fitnesses + particle))).append('\n');
+				}
+			}
+		}
+	}
+
+	/**
+	 * write the trajectory as numpy arrays, one file per quantity, each with the frame as its first axis:
+	 * prefix_iteration.npy (frames), prefix_best_fitness.npy (frames), prefix_best_position.npy (frames, dimensions),
+	 * prefix_positions.npy and prefix_velocities.npy (frames, particles, dimensions), prefix_fitnesses.npy (frames, particles)
+	 *
+	 * @param reader the trajectory to export
+	 * @param prefix the path prefix of the files to write
+	 */
+	static void toNumpy(Reader reader, String prefix) throws IOException {
+		long frames = reader.frameCount;
+		int n = reader.particleCount;
+		int d = reader.dimensions;
+		try (FileChannel iterations = npy(prefix + "_iteration.npy", "(" + frames + ",)");
+			 FileChannel bestFitness = npy(prefix + "_best_fitness.npy", "(" + frames + ",)");
+			 FileChannel bestPosition = npy(prefix + "_best_position.npy", "(" + frames + ", " + d + ")");
+			 FileChannel positions = npy(prefix + "_positions.npy", "(" + frames + ", " + n + ", " + d + ")");
+			 FileChannel velocities = npy(prefix + "_velocities.npy", "(" + frames + ", " + n + ", " + d + ")");
+			 FileChannel fitnesses = npy(prefix + "_fitnesses.npy", "(" + frames + ", " + n + ")")) {
+			ByteBuffer iteration = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			for (long frame = 0; frame < frames; frame++) {
+				reader.read(frame);
+				iteration.clear();
+				iteration.putDouble(0, reader.iteration());
+				writeFully(iterations, iteration);
+
+				//the frame is already little endian doubles, so each quantity is a straight slice of it
+				writeFully(bestFitness, reader.slice(1, 1));
+				writeFully(bestPosition, reader.slice(2, d));
+				writeFully(positions, reader.slice(2 + d, n * d));
+				writeFully(velocities, reader.slice(2 + d + n * d, n * d));
+				writeFully(fitnesses, reader.slice(2 + d + 2 * n * d, n));
+			}
+		}
+	}
+
+	/**
+	 * create a .npy file of little endian doubles and write its header
+	 *
+	 * @param path  the file to create
+	 * @param shape the shape of the array as a python tuple
+	 */
+	private static FileChannel npy(String path, String shape) throws IOException {
+		String dictionary = "{'descr': '<f8', 'fortran_order': False, 'shape': " + shape + ", }";
+
+		//the magic, version and header length take 10 bytes, and the header is padded so the data starts on a multiple of 64
+		int headerLength = dictionary.length() + 1;
+		int padding = (64 - (10 + headerLength) % 64) % 64;
+		StringBuilder header = new StringBuilder(dictionary);
+		for (int i = 0; i < padding; i++) {
+			header.append(' ');
+		}
+		header.append('\n');
+
+		ByteBuffer buffer = ByteBuffer.allocate(10 + header.length()).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put((byte) 0x93).put("NUMPY".getBytes(StandardCharsets.US_ASCII)).put((byte) 1).put((byte) 0);
+		buffer.putShort((short) header.length()).put(header.toString().getBytes(StandardCharsets.US_ASCII));
+		buffer.flip();
+
+		FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		writeFully(channel, buffer);
+		return channel;
+	}
+
+	/**
+	 * write the whole of a buffer to a channel
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * reads the frames of a trajectory file one at a time
+	 */
+	static class Reader implements AutoCloseable {
+		private final FileChannel channel;
+		private final ByteBuffer frame;
+		final int particleCount;
+		final int dimensions;
+		final int sampleEvery;
+		final long frameCount;
+
+		Reader(Path path) throws IOException {
+			channel = FileChannel.open(path, StandardOpenOption.READ);
+			ByteBuffer header = ByteBuffer.allocate(TrajectoryRecorder.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(header, 0);
+			if (header.getInt(0) != TrajectoryRecorder.MAGIC || header.getInt(4) != TrajectoryRecorder.VERSION)
+				throw new IOException(path + " is not a version " + TrajectoryRecorder.VERSION + " trajectory file");
+			particleCount = header.getInt(8);
+			dimensions = header.getInt(12);
+			sampleEvery = header.getInt(16);
+			long frameSize = TrajectoryRecorder.frameSize(particleCount, dimensions);
+			long headerFrameCount = header.getLong(TrajectoryRecorder.FRAME_COUNT_POSITION);
+			//a recording that was never closed still says 0, count the whole frames that made it to disk instead
+			frameCount = headerFrameCount != 0 ? headerFrameCount : (channel.size() - TrajectoryRecorder.HEADER_SIZE) / frameSize;
+			frame = ByteBuffer.allocateDirect((int) frameSize).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		/**
+		 * read a frame into the frame buffer
+		 *
+		 * @param index the index of the frame
+		 * @return a view of the frame as doubles, where index 0 holds the bits of the iteration
+		 */
+		DoubleBuffer read(long index) throws IOException {
+			frame.clear();
+			readFully(frame, TrajectoryRecorder.HEADER_SIZE + index * frame.capacity());
+			frame.clear();
+			return frame.asDoubleBuffer();
+		}
+
+		/**
+		 * the iteration of the frame last read
+		 */
+		long iteration() {
+			return frame.getLong(0);
+		}
+
+		/**
+		 * a view of a range of doubles of the frame last read
+		 *
+		 * @param from   the index of the first double
+		 * @param length the number of doubles
+		 */
+		ByteBuffer slice(int from, int length) {
+			ByteBuffer slice = frame.duplicate();
+			slice.limit(8 * (from + length)).position(8 * from);
+			return slice;
+		}
+
+		private void readFully(ByteBuffer buffer, long position) throws IOException {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0)
+					throw new IOException("unexpected end of trajectory file");
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package com.parker.david;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * streams the state of a swarm at every sampled iteration into a compact binary file, on a writer thread of its own.
+ * the swarm copies each sample into a free frame buffer and carries on, if the writer has fallen behind and there is no
+ * free buffer the sample is dropped rather than making the swarm wait.
+ * <p>
+ * the file is little endian. a fixed 32 byte header holds the magic number, format version, particle count, dimensions,
+ * sample interval, a reserved int and the number of frames written. each frame that follows is the same size and holds the
+ * iteration as a long, then as doubles the best fitness, the best position, every position, every velocity and every fitness.
+ * the frame count is filled in on close, a file left by a run that crashed says 0 and is read up to its last whole frame
+ */
+public class TrajectoryRecorder implements AutoCloseable {
+	/**
+	 * the first 4 bytes of a trajectory file
+	 */
+	static final int MAGIC = 0x50534F54;
+
+	/**
+	 * the version of the file format
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * the size of the header in bytes
+	 */
+	static final int HEADER_SIZE = 32;
+
+	/**
+	 * the position of the frame count within the header
+	 */
+	static final int FRAME_COUNT_POSITION = 24;
+
+	/**
+	 * the file being written
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * the number of particles in each frame
+	 */
+	private final int particleCount;
+
+	/**
+	 * the number of dimensions of each particle
+	 */
+	private final int dimensions;
+
+	/**
+	 * only every sampleEvery'th iteration is recorded
+	 */
+	private final int sampleEvery;
+
+	/**
+	 * frame buffers ready to be filled by the swarm
+	 */
+	private final BlockingQueue<Frame> free;
+
+	/**
+	 * frame buffers filled by the swarm and waiting to be written
+	 */
+	private final BlockingQueue<Frame> filled;
+
+	/**
+	 * the thread writing filled frames to the file
+	 */
+	private final Thread writer;
+
+	/**
+	 * the number of frames written to the file
+	 */
+	private final AtomicLong writtenFrames = new AtomicLong();
+
+	/**
+	 * the number of samples dropped because there was no free frame buffer
+	 */
+	private final AtomicLong droppedFrames = new AtomicLong();
+
+	/**
+	 * set once no more frames will be recorded
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * the error the writer thread stopped on, if any
+	 */
+	private volatile IOException writeError;
+
+	/**
+	 * constructor, creates or truncates the file, writes the header and starts the writer thread
+	 *
+	 * @param path           the file to write to
+	 * @param particleCount  the number of particles in the swarm being recorded
+	 * @param dimensions     the number of dimensions of each particle
+	 * @param sampleEvery    record only every sampleEvery'th iteration, at least 1
+	 * @param bufferedFrames the number of frames that may wait to be written before samples are dropped, at least 1
+	 */
+	public TrajectoryRecorder(Path path, int particleCount, int dimensions, int sampleEvery, int bufferedFrames) throws IOException {
+		if (particleCount < 1 || dimensions < 1)
+			throw new IllegalArgumentException("a trajectory needs at least one particle and one dimension");
+		if (sampleEvery < 1)
+			throw new IllegalArgumentException("the sample interval must be at least 1");
+		if (bufferedFrames < 1)
+			throw new IllegalArgumentException("at least one frame must be buffered");
+		this.particleCount = particleCount;
+		this.dimensions = dimensions;
+		this.sampleEvery = sampleEvery;
+
+		long frameSize = frameSize(particleCount, dimensions);
+		if (frameSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("a frame of " + frameSize + " bytes is too large to buffer");
+
+		free = new ArrayBlockingQueue<>(bufferedFrames);
+		filled = new ArrayBlockingQueue<>(bufferedFrames);
+		for (int i = 0; i < bufferedFrames; i++) {
+			free.add(new Frame((int) frameSize));
+		}
+
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(particleCount).putInt(dimensions).putInt(sampleEvery).putInt(0).putLong(0);
+		header.flip();
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+
+		writer = new Thread(this::writeFrames, "trajectory-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * the size in bytes of a single frame
+	 */
+	static long frameSize(int particleCount, int dimensions) {
+		return 8 * (2 + dimensions + 2L * particleCount * dimensions + particleCount);
+	}
+
+	/**
+	 * get the number of particles in each frame
+	 */
+	public int getParticleCount() {
+		return particleCount;
+	}
+
+	/**
+	 * get the number of dimensions of each particle
+	 */
+	public int getDimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * record the state of a swarm if this iteration is sampled. never blocks, drops the sample if the writer has fallen behind
+	 *
+	 * @param iteration    the number of update cycles the swarm has run
+	 * @param state        the state of the swarm's particles
+	 * @param bestPosition the global best position
+	 * @param bestFitness  the global best fitness
+	 */
+	void record(long iteration, SwarmState state, double[] bestPosition, double bestFitness) {
+		if (closed || iteration % sampleEvery != 0)
+			return;
+
+		Frame frame = free.poll();
+		if (frame == null) {
+			droppedFrames.incrementAndGet();
+			return;
+		}
+
+		frame.bytes.clear();
+		frame.bytes.putLong(0, iteration);
+		frame.doubles.clear();
+		frame.doubles.position(1);
+		frame.doubles.put(bestFitness);
+		frame.doubles.put(bestPosition, 0, dimensions);
+		frame.doubles.put(state.positions, 0, particleCount * dimensions);
+		frame.doubles.put(state.velocities, 0, particleCount * dimensions);
+		frame.doubles.put(state.fitnesses, 0, particleCount);
+		filled.add(frame);
+	}
+
+	/**
+	 * the body of the writer thread, writes filled frames until closed and every filled frame is written
+	 */
+	private void writeFrames() {
+		try {
+			while (!closed || !filled.isEmpty()) {
+				Frame frame = filled.poll(100, TimeUnit.MILLISECONDS);
+				if (frame == null)
+					continue;
+				frame.bytes.clear();
+				while (frame.bytes.hasRemaining()) {
+					channel.write(frame.bytes);
+				}
+				writtenFrames.incrementAndGet();
+				free.add(frame);
+			}
+		} catch (IOException e) {
+			writeError = e;
+			closed = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * get the number of frames written to the file
+	 */
+	public long getWrittenFrames() {
+		return writtenFrames.get();
+	}
+
+	/**
+	 * get the number of samples dropped because the writer had fallen behind
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames.get();
+	}
+
+	/**
+	 * stop recording, wait for every recorded frame to be written, fill in the frame count and close the file.
+	 * does nothing if already closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!channel.isOpen())
+			return;
+		closed = true;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			if (writeError != null)
+				throw writeError;
+			ByteBuffer frameCount = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, writtenFrames.get());
+			channel.write(frameCount, FRAME_COUNT_POSITION);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * a frame sized direct buffer, along with a view of it as doubles
+	 */
+	private static final class Frame {
+		private final ByteBuffer bytes;
+		private final DoubleBuffer doubles;
+
+		Frame(int size) {
+			bytes = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+			doubles = bytes.asDoubleBuffer();
+		}
+	}
+}
@@ -1,7 +1,6 @@
 package com.parker.david;
 
 import java.util.ArrayList;
-import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -9,11 +8,6 @@ import java.util.concurrent.ThreadLocalRandom;
  */
 public class Utilities {
 
-	/**
-	 * a random number generator
-	 */
-	private static final Random randomNumberGenerator = ThreadLocalRandom.current();
-
 	/**
 	 * make a deep copy of an arraylist, that is, the elements in this array are the same, but the array itself occupies a new space in memory,
 	 * so removing an element from this array will not affect the source array
@@ -30,10 +24,41 @@ public class Utilities {
 	}
 
 	/**
-	 * wrapper around the random number generator to make code more readable
+	 * unbox a list of doubles into a new primitive array
+	 *
+	 * @param source the list which we wish to unbox
+	 */
+	public static double[] toArray(ArrayList<Double> source) {
+		double[] array = new double[source.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = source.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * box a range of a primitive array into a new list of doubles
+	 *
+	 * @param source the array holding the values
+	 * @param offset the index of the first value to copy
+	 * @param length the number of values to copy
+	 */
+	public static ArrayList<Double> toList(double[] source, int offset, int length) {
+		ArrayList<Double> list = new ArrayList<>(length);
+		for (int i = offset; i < offset + length; i++) {
+			list.add(source[i]);
+		}
+		return list;
+	}
+
+	/**
+	 * wrapper around the calling thread's random number generator to make code more readable
+	 *
+	 * @deprecated draws that cannot be seeded, use a {@link RandomSource} handed down from the swarm's seed
 	 */
+	@Deprecated
 	public static double getRandom0To1() {
-		return randomNumberGenerator.nextDouble();
+		return ThreadLocalRandom.current().nextDouble();
 	}
 
 	/**
@@ -41,9 +66,11 @@ public class Utilities {
 	 *
 	 * @param min the minimum value
 	 * @param max the maximum value
+	 * @deprecated draws that cannot be seeded, use {@link RandomSource#nextDouble(double, double)}
 	 */
+	@Deprecated
 	public static double constrainedRandom(double min, double max) {
-		return min + randomNumberGenerator.nextDouble() * (max - min);
+		return min + ThreadLocalRandom.current().nextDouble() * (max - min);
 	}
 
 	/**
@@ -0,0 +1,22 @@
+package com.parker.david;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * a campaign must give every objective its own row in the summary
+ */
+class CampaignTest {
+
+	@Test
+	void refusesTwoObjectivesWithTheSameName() {
+		Campaign campaign = new Campaign(1);
+		double[] min = {-5, -5};
+		double[] max = {5, 5};
+		campaign.addObjective("rastrigin", StandardObjectives.byName("rastrigin"), min, max, 0, 1e-3);
+		campaign.addObjective("sphere", StandardObjectives.byName("sphere"), min, max, 0, 1e-3);
+		assertThrows(IllegalArgumentException.class,
+				() -> campaign.addObjective("rastrigin", ExpressionObjective.minimise("x[0] ^ 2 + x[1] ^ 2"), min, max, 0, 1e-3));
+	}
+}
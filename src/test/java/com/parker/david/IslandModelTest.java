@@ -0,0 +1,86 @@
+package com.parker.david;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * the coordinator must run islands to the end, and hold up against connections that break the protocol
+ */
+class IslandModelTest {
+
+	/**
+	 * open a connection to the coordinator side of a loopback socket, send an opening and accept it
+	 *
+	 * @return the coordinator's end, with the worker's end open behind it until the server is closed
+	 */
+	private static Socket connect(ServerSocket server, Socket worker, int island, int dimensions) throws IOException {
+		DataOutputStream output = new DataOutputStream(worker.getOutputStream());
+		output.writeInt(island);
+		output.writeInt(dimensions);
+		output.flush();
+		return server.accept();
+	}
+
+	@Test
+	void runsEveryIslandToTheEnd() throws IOException, InterruptedException {
+		IslandModel model = new IslandModel("sphere", 3, 2, 10);
+		model.setMigration(5, 2, IslandModel.MigrationPolicy.ReplaceWorst);
+		model.setBudget(20, 3000, 60000);
+		model.setSeed(1);
+		model.run();
+		assertEquals(0, model.getCrashedIslands());
+		assertTrue(model.getBestFitness() < 1, "best fitness " + model.getBestFitness());
+	}
+
+	@Test
+	void turnsAwayIslandsThatDoNotExistOrAreAlreadyConnected() throws IOException {
+		IslandModel model = new IslandModel("sphere", 3, 2, 10);
+		try (ServerSocket server = new ServerSocket(0, 4, InetAddress.getLoopbackAddress());
+			 Socket first = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+			 Socket again = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+			 Socket missing = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+			 Socket negative = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+			 Socket wrongDimensions = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort())) {
+			assertEquals(1, model.admit(connect(server, first, 1, 3)));
+			assertThrows(IOException.class, () -> model.admit(connect(server, again, 1, 3)));
+			assertThrows(IOException.class, () -> model.admit(connect(server, missing, 2, 3)));
+			assertThrows(IOException.class, () -> model.admit(connect(server, negative, -1, 3)));
+			assertThrows(IOException.class, () -> model.admit(connect(server, wrongDimensions, 0, 4)));
+		}
+	}
+
+	@Test
+	void refusesMoreParticlesThanAnIslandHas() {
+		IslandModel model = new IslandModel("sphere", 3, 2, 10);
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(new byte[0]));
+		assertThrows(IOException.class, () -> model.readParticles(input, 11));
+		assertThrows(IOException.class, () -> model.readParticles(input, -1));
+		assertThrows(IOException.class, () -> model.readParticles(input, Integer.MAX_VALUE));
+	}
+
+	@Test
+	void treatsASilentIslandAsCrashed() throws IOException {
+		IslandModel model = new IslandModel("sphere", 3, 2, 10);
+		model.setReadTimeout(200);
+		try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+			 Socket worker = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort())) {
+			Socket coordinator = connect(server, worker, 0, 3);
+			int island = model.admit(coordinator);
+			assertTimeoutPreemptively(Duration.ofSeconds(10), () -> model.serve(coordinator, island));
+			assertEquals(1, model.getCrashedIslands());
+		}
+	}
+}
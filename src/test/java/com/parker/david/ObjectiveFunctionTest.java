@@ -0,0 +1,41 @@
+package com.parker.david;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * an objective written against either getFitness must be scored the same through both
+ */
+class ObjectiveFunctionTest {
+
+	@Test
+	void anObjectiveOnTheListStillWorks() {
+		ObjectiveFunction list = new ObjectiveFunction(ObjectiveFunction.Type.Minimisation) {
+			@Override
+			public double getFitness(ArrayList<Double> parameters) {
+				return parameters.get(0) * parameters.get(0) + parameters.get(1);
+			}
+		};
+		assertEquals(7, list.getFitness(new double[]{2, 3}));
+		Swarm swarm = new Swarm(list, 10, 1.5, 1.5, 0.7, new double[]{-1, -1}, new double[]{1, 1}, 0.3, Initialiser.uniform(), 5);
+		swarm.optimise(StoppingCriterion.maxIterations(5));
+		assertEquals(list.getFitness(swarm.getBestPositionArray()), swarm.getBestFitness());
+	}
+
+	@Test
+	void anObjectiveOnTheArrayIsScoredThroughTheList() {
+		ObjectiveFunction array = new ObjectiveFunction(ObjectiveFunction.Type.Minimisation) {
+			@Override
+			public double getFitness(double[] parameters) {
+				return parameters[0] - parameters[1];
+			}
+		};
+		ArrayList<Double> parameters = new ArrayList<>();
+		parameters.add(5.0);
+		parameters.add(2.0);
+		assertEquals(3, array.getFitness(parameters));
+	}
+}
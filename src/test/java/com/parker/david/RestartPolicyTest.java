@@ -0,0 +1,79 @@
+package com.parker.david;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * a restart policy must refuse settings that make no sense, and the diversity it watches must follow the swarm exactly
+ * and identically however many threads move the particles
+ */
+class RestartPolicyTest {
+	private static final ObjectiveFunction OBJECTIVE = StandardObjectives.byName("rastrigin");
+	private static final double[] MIN = {-5.12, -5.12, -5.12, -5.12, -5.12};
+	private static final double[] MAX = {5.12, 5.12, 5.12, 5.12, 5.12};
+
+	@Test
+	void refusesSettingsOutOfRange() {
+		assertThrows(IllegalArgumentException.class, () -> new RestartPolicy(-0.1, 1, 0.5, RestartPolicy.Selection.Worst));
+		assertThrows(IllegalArgumentException.class, () -> new RestartPolicy(Double.NaN, 1, 0.5, RestartPolicy.Selection.Worst));
+		assertThrows(IllegalArgumentException.class, () -> new RestartPolicy(0.1, 0, 0.5, RestartPolicy.Selection.Worst));
+		assertThrows(IllegalArgumentException.class, () -> new RestartPolicy(0.1, 1, -0.5, RestartPolicy.Selection.Worst));
+		assertThrows(IllegalArgumentException.class, () -> new RestartPolicy(0.1, 1, 1.5, RestartPolicy.Selection.Worst));
+		assertThrows(IllegalArgumentException.class, () -> new RestartPolicy(0.1, 1, 0.5, null));
+		RestartPolicy policy = new RestartPolicy(0, 1, 1, RestartPolicy.Selection.Crowded);
+		policy.setCooldown(0);
+		assertThrows(IllegalArgumentException.class, () -> policy.setCooldown(-1));
+	}
+
+	@Test
+	void tracksTheDiversityOfASwarmMovingOnManyThreads() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			//a threshold of 0 never restarts, so the untracked twin moves identically and computes its diversity afresh
+			Swarm swarm = new Swarm(OBJECTIVE, 40, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), new RandomSource(3));
+			Swarm twin = new Swarm(OBJECTIVE, 40, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), new RandomSource(3));
+			swarm.setUpdateMode(Swarm.UpdateMode.Synchronous, pool);
+			twin.setUpdateMode(Swarm.UpdateMode.Synchronous, pool);
+			swarm.setRestartPolicy(new RestartPolicy(0, 1, 0.5, RestartPolicy.Selection.Worst));
+			for (int cycle = 0; cycle < SwarmDiversity.RECOMPUTE_EVERY - 1; cycle++) {
+				swarm.update();
+				twin.update();
+				double exact = twin.getDiversity();
+				assertEquals(exact, swarm.getDiversity(), 1e-9 * (1 + exact), "cycle " + cycle);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void restartsIdenticallyOnAnyThreadCount() {
+		Swarm expected = null;
+		for (int threads : new int[]{1, 2, 4, 8}) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				Swarm swarm = new Swarm(OBJECTIVE, 40, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), new RandomSource(5));
+				swarm.setUpdateMode(Swarm.UpdateMode.Synchronous, pool);
+				RestartPolicy policy = new RestartPolicy(0.05, 3, 0.7, RestartPolicy.Selection.Crowded);
+				policy.setCooldown(5);
+				swarm.setRestartPolicy(policy);
+				swarm.optimise(StoppingCriterion.maxIterations(300));
+				if (expected == null) {
+					expected = swarm;
+					assertTrue(swarm.getRestarts() > 0, "the swarm never restarted");
+				} else {
+					assertEquals(expected.getRestarts(), swarm.getRestarts(), threads + " threads");
+					assertEquals(expected.getDiversity(), swarm.getDiversity(), threads + " threads");
+					assertEquals(expected.toString(), swarm.toString(), threads + " threads");
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.parker.david;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * a swarm carried on from a checkpoint must search exactly as the checkpointed swarm went on to
+ */
+class SwarmCheckpointTest {
+	private static final ObjectiveFunction OBJECTIVE = StandardObjectives.byName("rastrigin");
+	private static final double[] MIN = {-5.12, -5.12, -5.12, -5.12};
+	private static final double[] MAX = {5.12, 5.12, 5.12, 5.12};
+
+	@TempDir
+	Path directory;
+
+	private static Swarm newSwarm(Topology topology) {
+		Swarm swarm = new Swarm(OBJECTIVE, 30, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), 11);
+		swarm.setTopology(topology);
+		return swarm;
+	}
+
+	private static void assertSameSearch(Swarm expected, Swarm actual) {
+		assertEquals(expected.getBestFitness(), actual.getBestFitness());
+		assertArrayEquals(expected.getBestPositionArray(), actual.getBestPositionArray());
+		assertEquals(expected.getIterations(), actual.getIterations());
+		assertEquals(expected.getEvaluations(), actual.getEvaluations());
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	private void assertExactResume(Topology topology, Swarm.UpdateMode updateMode) throws IOException {
+		Path file = directory.resolve("swarm.checkpoint");
+		Swarm reference = newSwarm(topology);
+		reference.setUpdateMode(updateMode, null);
+		reference.optimise(StoppingCriterion.maxIterations(20));
+		reference.checkpoint(file);
+		reference.optimise(StoppingCriterion.maxIterations(50));
+
+		Swarm resumed = Swarm.restore(file, OBJECTIVE, topology);
+		resumed.setUpdateMode(updateMode, null);
+		assertEquals(20, resumed.getIterations());
+		resumed.optimise(StoppingCriterion.maxIterations(50));
+		assertSameSearch(reference, resumed);
+	}
+
+	@Test
+	void resumesExactlyWithTheGlobalTopology() throws IOException {
+		assertExactResume(Topology.global(), Swarm.UpdateMode.Sequential);
+	}
+
+	@Test
+	void resumesExactlyWithARingTopology() throws IOException {
+		assertExactResume(Topology.ring(1), Swarm.UpdateMode.Sequential);
+	}
+
+	@Test
+	void resumesExactlyInSynchronousCycles() throws IOException {
+		assertExactResume(Topology.global(), Swarm.UpdateMode.Synchronous);
+	}
+
+	@Test
+	void resumesExactlyUnderAParameterControl() throws IOException {
+		Path file = directory.resolve("swarm.checkpoint");
+		Swarm reference = newSwarm(Topology.global());
+		reference.setParameterControl(ParameterControl.selfAdaptive(0.4, 0.9, 0.5, 2.5, 0.1));
+		reference.optimise(StoppingCriterion.maxIterations(20));
+		reference.checkpoint(file);
+		reference.optimise(StoppingCriterion.maxIterations(50));
+
+		Swarm resumed = Swarm.restore(file, OBJECTIVE, Topology.global(), ParameterControl.selfAdaptive(0.4, 0.9, 0.5, 2.5, 0.1));
+		resumed.optimise(StoppingCriterion.maxIterations(50));
+		assertSameSearch(reference, resumed);
+	}
+
+	@Test
+	void resumesExactlyFromAnAutomaticCheckpointUnderAParameterControl() throws IOException {
+		Path file = directory.resolve("swarm.checkpoint");
+		Swarm reference = newSwarm(Topology.global());
+		reference.setParameterControl(ParameterControl.successRate(0, 1));
+		reference.setCheckpointing(file, 20, 0);
+		reference.optimise(StoppingCriterion.maxIterations(30));
+		reference.setCheckpointing(null, 0, 0);
+		reference.optimise(StoppingCriterion.maxIterations(50));
+
+		Swarm resumed = Swarm.restore(file, OBJECTIVE, Topology.global(), ParameterControl.successRate(0, 1));
+		assertEquals(20, resumed.getIterations());
+		resumed.optimise(StoppingCriterion.maxIterations(50));
+		assertSameSearch(reference, resumed);
+	}
+
+	@Test
+	void resumesExactlyUnderARestartPolicy() throws IOException {
+		Path file = directory.resolve("swarm.checkpoint");
+		Swarm reference = newSwarm(Topology.global());
+		reference.setRestartPolicy(new RestartPolicy(0.05, 3, 0.7, RestartPolicy.Selection.Worst));
+		reference.optimise(StoppingCriterion.maxIterations(60));
+		reference.checkpoint(file);
+		int restartsAtCheckpoint = reference.getRestarts();
+		reference.optimise(StoppingCriterion.maxIterations(200));
+		assertTrue(restartsAtCheckpoint > 0 && reference.getRestarts() > restartsAtCheckpoint, "the swarm restarts on both sides of the checkpoint");
+
+		Swarm resumed = Swarm.restore(file, OBJECTIVE, Topology.global(), null, new RestartPolicy(0.05, 3, 0.7, RestartPolicy.Selection.Worst));
+		assertEquals(restartsAtCheckpoint, resumed.getRestarts());
+		resumed.optimise(StoppingCriterion.maxIterations(200));
+		assertSameSearch(reference, resumed);
+		assertEquals(reference.getRestarts(), resumed.getRestarts());
+		assertEquals(reference.getDiversity(), resumed.getDiversity());
+	}
+
+	@Test
+	void rejectsATopologyThatDoesNotMatch() throws IOException {
+		Path file = directory.resolve("swarm.checkpoint");
+		newSwarm(Topology.ring(1)).checkpoint(file);
+		assertThrows(IllegalArgumentException.class, () -> Swarm.restore(file, OBJECTIVE, Topology.global()));
+	}
+
+	@Test
+	void rejectsCheckpointingASourceWithoutASingleLongState() {
+		Swarm swarm = new Swarm(OBJECTIVE, 10, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), RandomSource.splittableRandom(11));
+		assertThrows(UnsupportedOperationException.class, () -> swarm.setCheckpointing(directory.resolve("swarm.checkpoint"), 10, 0));
+		assertThrows(UnsupportedOperationException.class, () -> swarm.checkpoint(directory.resolve("swarm.checkpoint")));
+	}
+}
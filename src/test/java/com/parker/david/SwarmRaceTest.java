@@ -0,0 +1,37 @@
+package com.parker.david;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * a race must refuse settings that would never finish or never run a candidate
+ */
+class SwarmRaceTest {
+
+	@Test
+	void refusesSettingsOutOfRange() {
+		SwarmTuner tuner = new SwarmTuner(StandardObjectives.byName("sphere"), 10, new double[]{-5, -5}, new double[]{5, 5}, 0.3, 1);
+		try {
+			assertThrows(IllegalArgumentException.class, () -> new SwarmRace(tuner, 0, 500, 2));
+			assertThrows(IllegalArgumentException.class, () -> new SwarmRace(tuner, 1, 500, 2));
+			assertThrows(IllegalArgumentException.class, () -> new SwarmRace(tuner, Double.NaN, 500, 2));
+			assertThrows(IllegalArgumentException.class, () -> new SwarmRace(tuner, 0.5, 0, 2));
+			assertThrows(IllegalArgumentException.class, () -> new SwarmRace(tuner, 0.5, 500, 0));
+
+			SwarmRace race = new SwarmRace(tuner, 0.5, 500, 2);
+			assertThrows(IllegalArgumentException.class, () -> race.setGrowth(0.5, 1));
+			assertThrows(IllegalArgumentException.class, () -> race.setGrowth(Double.NaN, 1));
+			assertThrows(IllegalArgumentException.class, () -> race.setGrowth(Double.POSITIVE_INFINITY, 1));
+			assertThrows(IllegalArgumentException.class, () -> race.setGrowth(2, -1));
+			race.setGrowth(1, 0);
+
+			assertThrows(IllegalArgumentException.class, () -> race.race(new double[0][], 1));
+			assertThrows(IllegalArgumentException.class, () -> race.race(new double[][]{{0.7, 1.5, 1.5}}, 1));
+			assertThrows(IllegalArgumentException.class,
+					() -> race.race(0, new double[]{0, 0, 0, 1}, new double[]{1, 2, 2, 50}, Initialiser.uniform(), 1));
+		} finally {
+			tuner.shutdown();
+		}
+	}
+}
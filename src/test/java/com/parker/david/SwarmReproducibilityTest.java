@@ -0,0 +1,71 @@
+package com.parker.david;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * a seeded swarm in synchronous update cycles must search identically whatever the number of threads it runs on
+ */
+class SwarmReproducibilityTest {
+	private static final ObjectiveFunction OBJECTIVE = StandardObjectives.byName("rastrigin");
+	private static final double[] MIN = {-5.12, -5.12, -5.12, -5.12, -5.12};
+	private static final double[] MAX = {5.12, 5.12, 5.12, 5.12, 5.12};
+
+	/**
+	 * run a swarm for a number of cycles on a pool of each size, and check every run matches the single threaded one
+	 */
+	private static void assertSameOnAnyThreadCount(Supplier<RandomSource> random) {
+		Swarm expected = null;
+		for (int threads : new int[]{1, 2, 4, 8}) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				Swarm swarm = new Swarm(OBJECTIVE, 40, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), random.get());
+				swarm.setUpdateMode(Swarm.UpdateMode.Synchronous, pool);
+				swarm.optimise(StoppingCriterion.maxIterations(60));
+				if (expected == null) {
+					expected = swarm;
+				} else {
+					assertEquals(expected.getBestFitness(), swarm.getBestFitness(), threads + " threads");
+					assertArrayEquals(expected.getBestPositionArray(), swarm.getBestPositionArray(), threads + " threads");
+					assertEquals(expected.toString(), swarm.toString(), threads + " threads");
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	@Test
+	void splitMixIsIndependentOfThreadCount() {
+		assertSameOnAnyThreadCount(() -> new RandomSource(42));
+	}
+
+	@Test
+	void splittableRandomIsIndependentOfThreadCount() {
+		assertSameOnAnyThreadCount(() -> RandomSource.splittableRandom(42));
+	}
+
+	@Test
+	void sameSeedSameSearch() {
+		Swarm first = new Swarm(OBJECTIVE, 20, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), 7);
+		Swarm second = new Swarm(OBJECTIVE, 20, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), 7);
+		first.optimise(StoppingCriterion.maxIterations(40));
+		second.optimise(StoppingCriterion.maxIterations(40));
+		assertEquals(first.toString(), second.toString());
+		assertEquals(first.getBestFitness(), second.getBestFitness());
+	}
+
+	@Test
+	void derivedSeedsDiffer() {
+		assertEquals(RandomSource.derive(1, 0), RandomSource.derive(1, 0));
+		for (long stream = 1; stream < 100; stream++) {
+			if (RandomSource.derive(1, stream) == RandomSource.derive(1, 0))
+				throw new AssertionError("stream " + stream + " repeats stream 0");
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.parker.david;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * a steady state run must honour the same stopping contracts as one in update cycles
+ */
+class SwarmSteadyStateTest {
+	private static final double[] MIN = {-5.12, -5.12};
+	private static final double[] MAX = {5.12, 5.12};
+
+	/**
+	 * the sphere, slowed down so the run is still going when it is interrupted
+	 */
+	private static final ObjectiveFunction SLOW = new ObjectiveFunction(ObjectiveFunction.Type.Minimisation) {
+		@Override
+		public double getFitness(double[] parameters) {
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return parameters[0] * parameters[0] + parameters[1] * parameters[1];
+		}
+	};
+
+	@AfterEach
+	void clearInterrupt() {
+		Thread.interrupted();
+	}
+
+	@Test
+	void interruptingTheCallerStopsWithTheInterruptedCriterion() {
+		Swarm swarm = new Swarm(SLOW, 8, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), 3);
+		Thread caller = Thread.currentThread();
+		Thread interrupter = new Thread(() -> {
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException ignored) {
+			}
+			caller.interrupt();
+		});
+		interrupter.start();
+		StoppingCriterion interrupted = StoppingCriterion.interrupted();
+		StoppingCriterion stoppedBy = swarm.optimiseSteadyState(4, StoppingCriterion.maxIterations(1_000_000), interrupted);
+		assertSame(interrupted, stoppedBy);
+		assertTrue(Thread.currentThread().isInterrupted(), "the interrupt is left set for the caller");
+	}
+
+	@Test
+	void rejectsARestartPolicy() {
+		Swarm swarm = new Swarm(StandardObjectives.byName("sphere"), 8, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), 3);
+		swarm.setRestartPolicy(new RestartPolicy(0.01, 1, 0.5, RestartPolicy.Selection.Worst));
+		assertThrows(IllegalStateException.class, () -> swarm.optimiseSteadyState(2, StoppingCriterion.maxIterations(5)));
+	}
+
+	@Test
+	void rejectsAParameterControl() {
+		Swarm swarm = new Swarm(StandardObjectives.byName("sphere"), 8, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), 3);
+		swarm.setParameterControl(ParameterControl.linearInertia(0.9, 0.4, 100));
+		assertThrows(IllegalStateException.class, () -> swarm.optimiseSteadyState(2, StoppingCriterion.maxIterations(5)));
+	}
+
+	@Test
+	void rejectsADynamicTopology() {
+		Swarm swarm = new Swarm(StandardObjectives.byName("sphere"), 8, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), 3);
+		swarm.setTopology(Topology.random(3));
+		assertThrows(IllegalStateException.class, () -> swarm.optimiseSteadyState(2, StoppingCriterion.maxIterations(5)));
+	}
+
+	@Test
+	void aLargeSwarmRunsOnNoMoreThreadsThanItsConcurrency() {
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger mostRunning = new AtomicInteger();
+		ObjectiveFunction counting = new ObjectiveFunction(ObjectiveFunction.Type.Minimisation) {
+			@Override
+			public double getFitness(double[] parameters) {
+				mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				threads.add(Thread.currentThread());
+				running.decrementAndGet();
+				return parameters[0] * parameters[0] + parameters[1] * parameters[1];
+			}
+		};
+		Swarm swarm = new Swarm(counting, 5000, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), 3);
+		threads.clear();
+		swarm.optimiseSteadyState(3, StoppingCriterion.maxIterations(4));
+		assertEquals(4, swarm.getIterations());
+		assertTrue(threads.size() <= 3, threads.size() + " threads evaluated");
+		assertTrue(mostRunning.get() <= 3, mostRunning.get() + " evaluations ran at once");
+	}
+}
@@ -0,0 +1,59 @@
+package com.parker.david;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * a topology defined outside the factory methods must drive a swarm, and a broken one must be refused
+ */
+class TopologyTest {
+	private static final double[] MIN = {-5.12, -5.12};
+	private static final double[] MAX = {5.12, 5.12};
+
+	private static Swarm newSwarm() {
+		return new Swarm(StandardObjectives.byName("sphere"), 12, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), 9);
+	}
+
+	@Test
+	void aSubclassBehavesLikeTheFactoryItCopies() {
+		Swarm custom = newSwarm();
+		custom.setTopology(new Topology() {
+			@Override
+			protected int[][] informants(int particleCount, RandomSource random) {
+				int[][] informants = new int[particleCount][];
+				for (int i = 0; i < particleCount; i++) {
+					informants[i] = new int[]{(i + 1) % particleCount, (i + particleCount - 1) % particleCount};
+				}
+				return informants;
+			}
+		});
+		Swarm ring = newSwarm();
+		ring.setTopology(Topology.ring(1));
+		custom.optimise(StoppingCriterion.maxIterations(30));
+		ring.optimise(StoppingCriterion.maxIterations(30));
+		assertEquals(ring.getBestFitness(), custom.getBestFitness());
+	}
+
+	@Test
+	void rejectsInformantsOutsideTheSwarm() {
+		Swarm swarm = newSwarm();
+		assertThrows(IllegalStateException.class, () -> swarm.setTopology(new Topology() {
+			@Override
+			protected int[][] informants(int particleCount, RandomSource random) {
+				int[][] informants = new int[particleCount][];
+				for (int i = 0; i < particleCount; i++) {
+					informants[i] = new int[]{i + 1};
+				}
+				return informants;
+			}
+		}));
+	}
+
+	@Test
+	void rejectsARingWithoutInformants() {
+		assertThrows(IllegalArgumentException.class, () -> Topology.ring(0));
+		assertThrows(IllegalArgumentException.class, () -> Topology.random(0));
+	}
+}
@@ -0,0 +1,61 @@
+package com.parker.david;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * a trajectory file must be readable whether or not its recorder was closed, and only hold frames of the swarm it was made for
+ */
+class TrajectoryRecorderTest {
+	private static final double[] MIN = {-5.12, -5.12, -5.12};
+	private static final double[] MAX = {5.12, 5.12, 5.12};
+
+	@TempDir
+	Path directory;
+
+	private static Swarm newSwarm(int particleCount) {
+		return new Swarm(StandardObjectives.byName("sphere"), particleCount, 1.5, 1.5, 0.7, MIN, MAX, 0.3, Initialiser.uniform(), 4);
+	}
+
+	@Test
+	void readsTheFramesOfARecordingThatWasNeverClosed() throws IOException, InterruptedException {
+		Path file = directory.resolve("run.trj");
+		TrajectoryRecorder recorder = new TrajectoryRecorder(file, 10, 3, 2, 64);
+		try {
+			Swarm swarm = newSwarm(10);
+			swarm.setTrajectoryRecorder(recorder);
+			swarm.optimise(StoppingCriterion.maxIterations(20));
+			while (recorder.getWrittenFrames() + recorder.getDroppedFrames() < 11) {
+				Thread.sleep(10);
+			}
+			try (TrajectoryExport.Reader reader = new TrajectoryExport.Reader(file)) {
+				assertEquals(recorder.getWrittenFrames(), reader.frameCount);
+				reader.read(reader.frameCount - 1);
+				assertEquals(20, reader.iteration());
+			}
+		} finally {
+			recorder.close();
+		}
+		try (TrajectoryExport.Reader reader = new TrajectoryExport.Reader(file)) {
+			assertEquals(recorder.getWrittenFrames(), reader.frameCount);
+		}
+	}
+
+	@Test
+	void rejectsARecorderForAnotherSwarm() throws IOException {
+		try (TrajectoryRecorder recorder = new TrajectoryRecorder(directory.resolve("run.trj"), 10, 3, 1, 4)) {
+			assertThrows(IllegalArgumentException.class, () -> newSwarm(12).setTrajectoryRecorder(recorder));
+		}
+	}
+
+	@Test
+	void rejectsASampleIntervalBelowOne() {
+		assertThrows(IllegalArgumentException.class, () -> new TrajectoryRecorder(directory.resolve("run.trj"), 10, 3, 0, 4));
+	}
+}
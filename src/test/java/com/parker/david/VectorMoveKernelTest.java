@@ -0,0 +1,89 @@
+package com.parker.david;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * the vector kernel must move every lane exactly as the scalar kernel does, bit for bit, including lanes thrown so far
+ * out of the search space that they are bounced back one at a time
+ */
+class VectorMoveKernelTest {
+
+	/**
+	 * the vector kernel, or null if it was not built or the jvm was started without the incubating vector module
+	 */
+	private static MoveKernel vectorKernel() {
+		try {
+			return (MoveKernel) Class.forName("com.parker.david.VectorMoveKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	@Test
+	void movesEveryLaneAsTheScalarKernelDoes() {
+		MoveKernel kernel = vectorKernel();
+		assumeTrue(kernel != null, "the vector kernel is not available");
+		RandomSource random = new RandomSource(1);
+		int farLanes = 0;
+		for (int trial = 0; trial < 2000; trial++) {
+			//odd sizes leave a scalar tail after the vector loop
+			int dimensions = 1 + random.nextInt(37);
+			int particles = 3;
+			int offset = dimensions * random.nextInt(particles);
+			double[] minConstraints = new double[dimensions];
+			double[] maxConstraints = new double[dimensions];
+			for (int d = 0; d < dimensions; d++) {
+				//bounds both about zero and well away from it, so some lanes pass the remainder and some do not
+				double centre = random.nextInt(3) == 0 ? 0 : random.nextDouble(-1000, 1000);
+				double range = random.nextDouble(0.01, 100);
+				minConstraints[d] = centre - range / 2;
+				maxConstraints[d] = centre + range / 2;
+			}
+			double[] position = new double[particles * dimensions];
+			double[] velocity = new double[particles * dimensions];
+			double[] bestPosition = new double[particles * dimensions];
+			double[] neighbourhoodBest = new double[particles * dimensions];
+			for (int p = 0; p < particles; p++) {
+				for (int d = 0; d < dimensions; d++) {
+					int i = p * dimensions + d;
+					double range = maxConstraints[d] - minConstraints[d];
+					position[i] = random.nextDouble(minConstraints[d], maxConstraints[d]);
+					bestPosition[i] = random.nextDouble(minConstraints[d], maxConstraints[d]);
+					neighbourhoodBest[i] = random.nextDouble(minConstraints[d], maxConstraints[d]);
+					//mostly small steps, some escaping by up to 10 times the range
+					velocity[i] = random.nextInt(4) == 0 ? random.nextDouble(-10 * range, 10 * range) : random.nextDouble(-range, range) / 4;
+				}
+			}
+			int neighbourhoodOffset = dimensions * random.nextInt(particles);
+			double weight = random.nextDouble(0, 1.2);
+			double rhoPersonal = random.nextDouble();
+			double cPersonal = random.nextDouble(0, 2.5);
+			double rhoNeighbour = random.nextDouble();
+			double cNeighbourhood = random.nextDouble(0, 2.5);
+
+			for (int d = 0; d < dimensions; d++) {
+				int i = offset + d;
+				double theoreticalNewPosition = position[i] + velocity[i] * weight
+						+ (bestPosition[i] - position[i]) * rhoPersonal * cPersonal
+						+ (neighbourhoodBest[neighbourhoodOffset + d] - position[i]) * rhoNeighbour * cNeighbourhood;
+				double range = maxConstraints[d] - minConstraints[d];
+				if ((theoreticalNewPosition < minConstraints[d] || theoreticalNewPosition > maxConstraints[d]) && Math.abs(theoreticalNewPosition) >= 2 * range)
+					farLanes++;
+			}
+
+			double[] scalarPosition = position.clone();
+			double[] scalarVelocity = velocity.clone();
+			MoveKernel.moveScalar(scalarPosition, scalarVelocity, bestPosition, offset, neighbourhoodBest, neighbourhoodOffset, minConstraints, maxConstraints,
+					0, dimensions, weight, rhoPersonal, cPersonal, rhoNeighbour, cNeighbourhood);
+			kernel.move(position, velocity, bestPosition, offset, neighbourhoodBest, neighbourhoodOffset, minConstraints, maxConstraints,
+					dimensions, weight, rhoPersonal, cPersonal, rhoNeighbour, cNeighbourhood);
+			assertArrayEquals(scalarPosition, position, "positions of trial " + trial);
+			assertArrayEquals(scalarVelocity, velocity, "velocities of trial " + trial);
+		}
+		assertTrue(farLanes > 100, "only " + farLanes + " lanes were bounced back one at a time");
+	}
+}